@@ -21,10 +21,25 @@
 
 package org.dbunit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.dbunit.assertion.DefaultFailureHandler;
 import org.dbunit.assertion.SimpleAssert;
+import org.dbunit.database.DatabaseSequenceFilter;
+import org.dbunit.database.DirtyTableTrackingConnection;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.search.TablesDependencyHelper;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
 import org.dbunit.operation.DatabaseOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,6 +87,7 @@ public abstract class AbstractDatabaseTester extends SimpleAssert implements IDa
     private DatabaseOperation setUpOperation = DatabaseOperation.CLEAN_INSERT;
     private DatabaseOperation tearDownOperation = DatabaseOperation.NONE;
     private IOperationListener operationListener;
+    private DirtyTableTrackingConnection trackingConnection;
 
     public AbstractDatabaseTester()
     {
@@ -108,14 +124,140 @@ public abstract class AbstractDatabaseTester extends SimpleAssert implements IDa
         logger.debug("onSetup() - start");
         org.dbunit.operation.DatabaseOperation setUpOperation1 = getSetUpOperation();
         executeOperation(setUpOperation1, OperationType.SET_UP);
+        if (trackingConnection != null)
+        {
+            trackingConnection.clearDirtyTables();
+        }
     }
 
     public void onTearDown() throws Exception
     {
         logger.debug("onTearDown() - start");
+        if (trackingConnection != null)
+        {
+            cleanupDirtyTables();
+        }
         executeOperation(getTearDownOperation(), OperationType.TEAR_DOWN);
     }
 
+    /**
+     * Returns a connection recording the tables written through it, to be
+     * used by the code under test. Once it has been requested,
+     * {@link #onTearDown()} resets the tables written since the last
+     * {@link #onSetup()} with {@link #cleanupDirtyTables()}, so the tear
+     * down operation can be {@link DatabaseOperation#NONE}.
+     * <p>
+     * The connection is kept until it is closed, for example with
+     * {@link #closeConnection(IDatabaseConnection)}.
+     *
+     * @return The tracking connection wrapping {@link #getConnection()}
+     * @since 2.7.5
+     */
+    public DirtyTableTrackingConnection getTrackingConnection() throws Exception
+    {
+        logger.debug("getTrackingConnection() - start");
+
+        if (trackingConnection == null
+                || trackingConnection.getDelegate().getConnection().isClosed())
+        {
+            trackingConnection = new DirtyTableTrackingConnection(getConnection());
+        }
+        return trackingConnection;
+    }
+
+    /**
+     * Resets the tables written through the {@link #getTrackingConnection()
+     * tracking connection} and the tables referencing them by foreign keys
+     * to the contents of the test dataset. The tables are emptied and the
+     * rows of the dataset are inserted again with
+     * {@link DatabaseOperation#CLEAN_INSERT}. Tables that are not part of the
+     * dataset are left empty. Does nothing if no table has been written.
+     *
+     * @since 2.7.5
+     */
+    public void cleanupDirtyTables() throws Exception
+    {
+        logger.debug("cleanupDirtyTables() - start");
+
+        if (trackingConnection == null)
+        {
+            return;
+        }
+        String[] dirtyTables = trackingConnection.getDirtyTables();
+        if (dirtyTables.length == 0)
+        {
+            return;
+        }
+
+        IDatabaseConnection connection = trackingConnection.getDelegate();
+        IDataSet databaseDataSet = connection.createDataSet();
+        List rootTables = new ArrayList(dirtyTables.length);
+        for (int i = 0; i < dirtyTables.length; i++)
+        {
+            try
+            {
+                databaseDataSet.getTableMetaData(dirtyTables[i]);
+                rootTables.add(dirtyTables[i]);
+            }
+            catch (NoSuchTableException e)
+            {
+                logger.debug("Ignoring written table {} unknown to the database",
+                        dirtyTables[i]);
+            }
+        }
+        if (rootTables.isEmpty())
+        {
+            trackingConnection.clearDirtyTables();
+            return;
+        }
+
+        // the dirty tables and the tables referencing them, whose rows may
+        // have been deleted by cascades or would block the deletion
+        Set resetTables = new LinkedHashSet();
+        for (Iterator i = rootTables.iterator(); i.hasNext();)
+        {
+            resetTables.addAll(Arrays.asList(TablesDependencyHelper.getDependsOnTables(
+                    connection, (String)i.next())));
+        }
+        // in insert order
+        String[] tableNames = new DatabaseSequenceFilter(connection,
+                (String[])resetTables.toArray(new String[0])).getTableNames(databaseDataSet);
+        logger.debug("Resetting dirty tables {}", Arrays.asList(tableNames));
+
+        IDataSet dataSet = getDataSet();
+        List fixtureTables = dataSet == null ? new ArrayList()
+                : Arrays.asList(dataSet.getTableNames());
+        ITable[] tables = new ITable[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++)
+        {
+            if (containsIgnoreCase(fixtureTables, tableNames[i]))
+            {
+                tables[i] = dataSet.getTable(tableNames[i]);
+            }
+            else
+            {
+                ITableMetaData metaData =
+                        databaseDataSet.getTableMetaData(tableNames[i]);
+                tables[i] = new DefaultTable(metaData);
+            }
+        }
+
+        DatabaseOperation.CLEAN_INSERT.execute(connection, new DefaultDataSet(tables));
+        trackingConnection.clearDirtyTables();
+    }
+
+    private static boolean containsIgnoreCase(List names, String name)
+    {
+        for (int i = 0; i < names.size(); i++)
+        {
+            if (name.equalsIgnoreCase((String)names.get(i)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void setDataSet(IDataSet dataSet)
     {
         logger.debug("setDataSet(dataSet={}) - start", dataSet);
@@ -233,6 +375,7 @@ public abstract class AbstractDatabaseTester extends SimpleAssert implements IDa
         sb.append(", setUpOperation=").append(setUpOperation);
         sb.append(", tearDownOperation=").append(tearDownOperation);
         sb.append(", operationListener=").append(operationListener);
+        sb.append(", trackingConnection=").append(trackingConnection);
         sb.append("]");
         return sb.toString();
     }
@@ -11,7 +11,9 @@ import org.dbunit.assertion.comparer.value.ValueComparerDefaults;
 import org.dbunit.dataset.Column;
 import org.dbunit.dataset.Columns;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.IIndexedTable;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableMetaData;
 import org.dbunit.dataset.datatype.DataType;
@@ -542,16 +544,44 @@ public class DbUnitAssertBase
                 determineValidColumnValueComparers(columnValueComparers,
                         expectedTableName);
 
+        final int rowCount = expectedTable.getRowCount();
+        if (rowCount == 0)
+        {
+            return;
+        }
+
+        // resolve the column positions once for all rows
+        final int columnCount = comparisonCols.length;
+        final IIndexedTable expectedIndexedTable =
+                DataSetUtils.getIndexedTable(expectedTable);
+        final IIndexedTable actualIndexedTable =
+                DataSetUtils.getIndexedTable(actualTable);
+        final int[] expectedColumnIndexes = new int[columnCount];
+        final int[] actualColumnIndexes = new int[columnCount];
+        for (int columnNum = 0; columnNum < columnCount; columnNum++)
+        {
+            final String columnName =
+                    comparisonCols[columnNum].getColumnName();
+            expectedColumnIndexes[columnNum] = expectedTable.getTableMetaData()
+                    .getColumnIndex(columnName);
+            actualColumnIndexes[columnNum] = actualTable.getTableMetaData()
+                    .getColumnIndex(columnName);
+        }
+
         // iterate over all rows
-        for (int rowNum = 0; rowNum < expectedTable.getRowCount(); rowNum++)
+        for (int rowNum = 0; rowNum < rowCount; rowNum++)
         {
             // iterate over all columns of the current row
-            final int columnCount = comparisonCols.length;
             for (int columnNum = 0; columnNum < columnCount; columnNum++)
             {
+                final Object expectedValue = expectedIndexedTable
+                        .getValue(rowNum, expectedColumnIndexes[columnNum]);
+                final Object actualValue = actualIndexedTable
+                        .getValue(rowNum, actualColumnIndexes[columnNum]);
                 compareData(expectedTable, actualTable, comparisonCols,
                         failureHandler, validDefaultValueComparer,
-                        validColumnValueComparers, rowNum, columnNum);
+                        validColumnValueComparers, rowNum, columnNum,
+                        expectedValue, actualValue);
             }
         }
     }
@@ -562,15 +592,35 @@ public class DbUnitAssertBase
             final ValueComparer defaultValueComparer,
             final Map<String, ValueComparer> columnValueComparers,
             final int rowNum, final int columnNum) throws DatabaseUnitException
+    {
+        final String columnName = comparisonCols[columnNum].getColumnName();
+
+        final Object expectedValue = expectedTable.getValue(rowNum, columnName);
+        final Object actualValue = actualTable.getValue(rowNum, columnName);
+
+        compareData(expectedTable, actualTable, comparisonCols, failureHandler,
+                defaultValueComparer, columnValueComparers, rowNum, columnNum,
+                expectedValue, actualValue);
+    }
+
+    /**
+     * Compares the values of one cell, already read from the tables.
+     *
+     * @since 2.7.5
+     */
+    protected void compareData(final ITable expectedTable,
+            final ITable actualTable, final ComparisonColumn[] comparisonCols,
+            final FailureHandler failureHandler,
+            final ValueComparer defaultValueComparer,
+            final Map<String, ValueComparer> columnValueComparers,
+            final int rowNum, final int columnNum, final Object expectedValue,
+            final Object actualValue) throws DatabaseUnitException
     {
         final ComparisonColumn compareColumn = comparisonCols[columnNum];
 
         final String columnName = compareColumn.getColumnName();
         final DataType dataType = compareColumn.getDataType();
 
-        final Object expectedValue = expectedTable.getValue(rowNum, columnName);
-        final Object actualValue = actualTable.getValue(rowNum, columnName);
-
         // Compare the values
         if (skipCompare(columnName, expectedValue, actualValue))
         {
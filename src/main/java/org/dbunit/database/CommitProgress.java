@@ -0,0 +1,162 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how many rows of each table each batch operation has committed
+ * when a commit interval is configured by
+ * {@link DatabaseConfig#PROPERTY_COMMIT_INTERVAL} or
+ * {@link DatabaseConfig#PROPERTY_COMMIT_BYTE_INTERVAL}. Register it with
+ * {@link DatabaseConfig#PROPERTY_COMMIT_PROGRESS}.
+ * <p>
+ * If created with <code>resume</code> set, an operation executed again
+ * after a failure skips the rows of each table that have already been
+ * committed, so the load continues after the last commit. This requires
+ * the same dataset with every table appearing once. The rows are counted
+ * per operation, so the steps of a composite operation such as
+ * {@link org.dbunit.operation.DatabaseOperation#CLEAN_INSERT} do not skip
+ * each other's rows, and a table is forgotten once an operation completed
+ * it.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class CommitProgress
+{
+    private final boolean _resume;
+    /** Committed rows of the incomplete tables by operation and table */
+    private final Map _committedRows = new LinkedHashMap();
+    private long _totalCommittedRows;
+
+    /**
+     * Creates a progress that only reports the committed rows.
+     */
+    public CommitProgress()
+    {
+        this(false);
+    }
+
+    /**
+     * @param resume Whether operations skip the rows committed before
+     */
+    public CommitProgress(boolean resume)
+    {
+        _resume = resume;
+    }
+
+    /**
+     * @return Whether operations skip the rows committed before
+     */
+    public boolean isResume()
+    {
+        return _resume;
+    }
+
+    /**
+     * Adds rows of a table that have been committed by an operation.
+     *
+     * @param operation The name of the operation, so the steps of a
+     * composite operation are kept apart
+     * @param tableName The table name as in the dataset
+     * @param rowCount The number of rows committed
+     */
+    public synchronized void addCommittedRows(String operation, String tableName,
+            int rowCount)
+    {
+        String key = getKey(operation, tableName);
+        Integer count = (Integer)_committedRows.get(key);
+        _committedRows.put(key, new Integer(
+                (count == null ? 0 : count.intValue()) + rowCount));
+        _totalCommittedRows += rowCount;
+    }
+
+    /**
+     * Forgets the committed rows of a table once the operation has
+     * completed it, so executing the operation again loads the table again.
+     *
+     * @param operation The name of the operation
+     * @param tableName The table name as in the dataset
+     */
+    public synchronized void tableCompleted(String operation, String tableName)
+    {
+        _committedRows.remove(getKey(operation, tableName));
+    }
+
+    /**
+     * @param operation The name of the operation
+     * @param tableName The table name as in the dataset
+     * @return The number of rows of the table committed by the operation,
+     * <code>0</code> once the table has been completed
+     */
+    public synchronized int getCommittedRowCount(String operation, String tableName)
+    {
+        Integer count = (Integer)_committedRows.get(getKey(operation, tableName));
+        return count == null ? 0 : count.intValue();
+    }
+
+    /**
+     * @return The number of rows committed for all tables, including the
+     * completed ones
+     */
+    public synchronized long getTotalCommittedRowCount()
+    {
+        return _totalCommittedRows;
+    }
+
+    /**
+     * @return The <code>operation:table</code> names of the tables that
+     * have been committed partially, in the order they were committed first
+     */
+    public synchronized String[] getIncompleteTables()
+    {
+        return (String[])_committedRows.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Forgets all committed rows, for example after a failed load is
+     * abandoned.
+     */
+    public synchronized void clear()
+    {
+        _committedRows.clear();
+        _totalCommittedRows = 0;
+    }
+
+    private static String getKey(String operation, String tableName)
+    {
+        return operation + ":" + tableName;
+    }
+
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_resume=").append(_resume);
+        sb.append(", _committedRows=").append(_committedRows);
+        sb.append(", _totalCommittedRows=").append(_totalCommittedRows);
+        sb.append("]");
+        return sb.toString();
+    }
+}
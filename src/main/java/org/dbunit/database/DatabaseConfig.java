@@ -69,6 +69,22 @@ public class DatabaseConfig
     		"http://www.dbunit.org/properties/batchSize";
 	public static final String PROPERTY_FETCH_SIZE = 
 			"http://www.dbunit.org/properties/fetchSize";
+    public static final String PROPERTY_KEY_CHUNK_SIZE =
+            "http://www.dbunit.org/properties/keyChunkSize";
+    public static final String PROPERTY_BATCH_BYTE_LIMIT =
+            "http://www.dbunit.org/properties/batchByteLimit";
+    public static final String PROPERTY_COMMIT_INTERVAL =
+            "http://www.dbunit.org/properties/commitInterval";
+    public static final String PROPERTY_COMMIT_BYTE_INTERVAL =
+            "http://www.dbunit.org/properties/commitByteInterval";
+    public static final String PROPERTY_COMMIT_PROGRESS =
+            "http://www.dbunit.org/properties/commitProgress";
+    public static final String PROPERTY_RAW_STRING_BINDING =
+            "http://www.dbunit.org/properties/rawStringBinding";
+    public static final String PROPERTY_METADATA_CACHE =
+            "http://www.dbunit.org/properties/metadataCache";
+    public static final String PROPERTY_SCHEMA_VERSION =
+            "http://www.dbunit.org/properties/schemaVersion";
 	public static final String PROPERTY_METADATA_HANDLER =
 	        "http://www.dbunit.org/properties/metadataHandler";
 	public static final String PROPERTY_ALLOW_VERIFYTABLEDEFINITION_EXPECTEDTABLE_COUNT_MISMATCH =
@@ -88,6 +104,14 @@ public class DatabaseConfig
         "http://www.dbunit.org/features/skipOracleRecycleBinTables";
     public static final String FEATURE_ALLOW_EMPTY_FIELDS =
             "http://www.dbunit.org/features/allowEmptyFields";
+    public static final String FEATURE_CHUNKED_DELETE =
+            "http://www.dbunit.org/features/chunkedDelete";
+    public static final String FEATURE_GROUP_BY_IGNORE_MAPPING =
+            "http://www.dbunit.org/features/groupByIgnoreMapping";
+    public static final String FEATURE_ADAPTIVE_BATCH_SIZE =
+            "http://www.dbunit.org/features/adaptiveBatchSize";
+    public static final String FEATURE_PIPELINED_LOADING =
+            "http://www.dbunit.org/features/pipelinedLoading";
 
     /**
      * A list of all properties as {@link ConfigProperty} objects. 
@@ -102,6 +126,14 @@ public class DatabaseConfig
         new ConfigProperty(PROPERTY_PRIMARY_KEY_FILTER, IColumnFilter.class, true),
         new ConfigProperty(PROPERTY_BATCH_SIZE, Integer.class, false),
         new ConfigProperty(PROPERTY_FETCH_SIZE, Integer.class, false),
+        new ConfigProperty(PROPERTY_KEY_CHUNK_SIZE, Integer.class, false),
+        new ConfigProperty(PROPERTY_BATCH_BYTE_LIMIT, Integer.class, false),
+        new ConfigProperty(PROPERTY_COMMIT_INTERVAL, Integer.class, false),
+        new ConfigProperty(PROPERTY_COMMIT_BYTE_INTERVAL, Integer.class, false),
+        new ConfigProperty(PROPERTY_COMMIT_PROGRESS, CommitProgress.class, true),
+        new ConfigProperty(PROPERTY_RAW_STRING_BINDING, String[].class, false),
+        new ConfigProperty(PROPERTY_METADATA_CACHE, MetadataCache.class, true),
+        new ConfigProperty(PROPERTY_SCHEMA_VERSION, String.class, true),
         new ConfigProperty(PROPERTY_METADATA_HANDLER, IMetadataHandler.class, false),
         new ConfigProperty(PROPERTY_IDENTITY_COLUMN_FILTER, IColumnFilter.class, true),
         new ConfigProperty(FEATURE_CASE_SENSITIVE_TABLE_NAMES, Boolean.class, false),
@@ -110,6 +142,10 @@ public class DatabaseConfig
         new ConfigProperty(FEATURE_DATATYPE_WARNING, Boolean.class, false),
         new ConfigProperty(FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES, Boolean.class, false),
         new ConfigProperty(FEATURE_ALLOW_EMPTY_FIELDS, Boolean.class, false),
+        new ConfigProperty(FEATURE_CHUNKED_DELETE, Boolean.class, false),
+        new ConfigProperty(FEATURE_GROUP_BY_IGNORE_MAPPING, Boolean.class, false),
+        new ConfigProperty(FEATURE_ADAPTIVE_BATCH_SIZE, Boolean.class, false),
+        new ConfigProperty(FEATURE_PIPELINED_LOADING, Boolean.class, false),
         new ConfigProperty(PROPERTY_ALLOW_VERIFYTABLEDEFINITION_EXPECTEDTABLE_COUNT_MISMATCH, Boolean.class, false),
     };
 
@@ -134,12 +170,20 @@ public class DatabaseConfig
             new CachedResultSetTableFactory();
     private static final String DEFAULT_ESCAPE_PATTERN = null;
     private static final String[] DEFAULT_TABLE_TYPE = {"TABLE"};
-    private static final Integer DEFAULT_BATCH_SIZE = new Integer(100);
-    private static final Integer DEFAULT_FETCH_SIZE = new Integer(100);
+    private static final Integer DEFAULT_BATCH_SIZE = Integer.valueOf(100);
+    private static final Integer DEFAULT_FETCH_SIZE = Integer.valueOf(100);
+    private static final Integer DEFAULT_KEY_CHUNK_SIZE = Integer.valueOf(500);
+    private static final Integer DEFAULT_BATCH_BYTE_LIMIT = Integer.valueOf(0);
+    private static final Integer DEFAULT_COMMIT_INTERVAL = Integer.valueOf(0);
+    private static final Integer DEFAULT_COMMIT_BYTE_INTERVAL = Integer.valueOf(0);
+    private static final String[] DEFAULT_RAW_STRING_BINDING = {};
 
 
 
-    private Map _propertyMap = new HashMap();
+    private Map<String, Object> _propertyMap = new HashMap<String, Object>();
+
+    /** The snapshot of the current properties, created on demand */
+    private volatile DatabaseConfigSnapshot _snapshot;
     
     private final Configurator configurator;
 
@@ -150,6 +194,10 @@ public class DatabaseConfig
         setFeature(FEATURE_CASE_SENSITIVE_TABLE_NAMES, false);
         setFeature(FEATURE_DATATYPE_WARNING, true);
         setFeature(FEATURE_ALLOW_EMPTY_FIELDS, false);
+        setFeature(FEATURE_CHUNKED_DELETE, false);
+        setFeature(FEATURE_GROUP_BY_IGNORE_MAPPING, false);
+        setFeature(FEATURE_ADAPTIVE_BATCH_SIZE, false);
+        setFeature(FEATURE_PIPELINED_LOADING, false);
 
         setProperty(PROPERTY_STATEMENT_FACTORY, PREPARED_STATEMENT_FACTORY);
         setProperty(PROPERTY_RESULTSET_TABLE_FACTORY, RESULT_SET_TABLE_FACTORY);
@@ -158,6 +206,11 @@ public class DatabaseConfig
         setProperty(PROPERTY_TABLE_TYPE, DEFAULT_TABLE_TYPE);
         setProperty(PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
         setProperty(PROPERTY_FETCH_SIZE, DEFAULT_FETCH_SIZE);
+        setProperty(PROPERTY_KEY_CHUNK_SIZE, DEFAULT_KEY_CHUNK_SIZE);
+        setProperty(PROPERTY_BATCH_BYTE_LIMIT, DEFAULT_BATCH_BYTE_LIMIT);
+        setProperty(PROPERTY_COMMIT_INTERVAL, DEFAULT_COMMIT_INTERVAL);
+        setProperty(PROPERTY_COMMIT_BYTE_INTERVAL, DEFAULT_COMMIT_BYTE_INTERVAL);
+        setProperty(PROPERTY_RAW_STRING_BINDING, DEFAULT_RAW_STRING_BINDING);
         setProperty(PROPERTY_METADATA_HANDLER, new DefaultMetadataHandler());
         setProperty(
                 PROPERTY_ALLOW_VERIFYTABLEDEFINITION_EXPECTEDTABLE_COUNT_MISMATCH,
@@ -233,7 +286,11 @@ public class DatabaseConfig
         checkObjectAllowed(name, value);
         
         // If we get here the type is allowed (no exception was thrown)
-        _propertyMap.put(name, value);
+        synchronized (this)
+        {
+            _propertyMap.put(name, value);
+            _snapshot = null;
+        }
     }
 
     /**
@@ -246,7 +303,36 @@ public class DatabaseConfig
     {
         logger.trace("getProperty(name={}) - start", name);
 
-        return _propertyMap.get(name);
+        synchronized (this)
+        {
+            return _propertyMap.get(name);
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the current properties. The same snapshot
+     * is returned until a property is changed, so operations can take it
+     * once when they start and read their settings as plain fields.
+     *
+     * @return The snapshot of this configuration
+     * @since 2.7.5
+     */
+    public DatabaseConfigSnapshot getSnapshot()
+    {
+        DatabaseConfigSnapshot snapshot = _snapshot;
+        if (snapshot == null)
+        {
+            synchronized (this)
+            {
+                snapshot = _snapshot;
+                if (snapshot == null)
+                {
+                    snapshot = new DatabaseConfigSnapshot(_propertyMap);
+                    _snapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
     }
 
     private Object convertIfNeeded(String property, Object value) 
@@ -383,7 +469,7 @@ public class DatabaseConfig
         }
         else if(targetClass == Integer.class)
         {
-            return new Integer(propValue);
+            return Integer.valueOf(propValue);
         }
         else
         {
@@ -585,8 +671,8 @@ public class DatabaseConfig
         void configureStatement(Statement stmt) throws SQLException 
         {
             logger.trace("configureStatement(stmt={}) - start", stmt);
-            Integer fetchSize = (Integer) config.getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE);
-            stmt.setFetchSize(fetchSize.intValue());
+            int fetchSize = config.getSnapshot().getFetchSize();
+            stmt.setFetchSize(fetchSize);
             logger.debug("Statement fetch size set to {}",fetchSize);
         }
         
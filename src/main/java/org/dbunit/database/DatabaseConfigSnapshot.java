@@ -0,0 +1,376 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.dbunit.DatabaseUnitRuntimeException;
+import org.dbunit.database.statement.IStatementFactory;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.filter.IColumnFilter;
+
+/**
+ * Immutable copy of the properties of a {@link DatabaseConfig} at one point
+ * in time, with typed accessors for the settings read while executing
+ * operations. Obtained by {@link DatabaseConfig#getSnapshot()}, which reuses
+ * the snapshot until the configuration is changed.
+ * <p>
+ * A snapshot is safe to share between threads. Changing the configuration
+ * afterwards does not affect snapshots already taken.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public final class DatabaseConfigSnapshot
+{
+    private final Map<String, Object> _propertyMap;
+
+    private final IStatementFactory _statementFactory;
+    private final IResultSetTableFactory _resultSetTableFactory;
+    private final Object _dataTypeFactory;
+    private final String _escapePattern;
+    private final String[] _tableType;
+    private final IColumnFilter _primaryKeyFilter;
+    private final IColumnFilter _identityColumnFilter;
+    private final IMetadataHandler _metadataHandler;
+    private final int _batchSize;
+    private final int _fetchSize;
+    private final int _keyChunkSize;
+    private final int _batchByteLimit;
+    private final int _commitInterval;
+    private final int _commitByteInterval;
+    private final CommitProgress _commitProgress;
+    private final String[] _rawStringBinding;
+    private final MetadataCache _metadataCache;
+    private final String _schemaVersion;
+
+    private final boolean _caseSensitiveTableNames;
+    private final boolean _qualifiedTableNames;
+    private final boolean _batchedStatements;
+    private final boolean _datatypeWarning;
+    private final boolean _skipOracleRecycleBinTables;
+    private final boolean _allowEmptyFields;
+    private final boolean _chunkedDelete;
+    private final boolean _groupByIgnoreMapping;
+    private final boolean _adaptiveBatchSize;
+    private final boolean _pipelinedLoading;
+
+    /** Connections the data type factory has already been validated for */
+    private final Map<Connection, Boolean> _validatedConnections =
+            new WeakHashMap<Connection, Boolean>();
+
+    DatabaseConfigSnapshot(Map<String, Object> propertyMap)
+    {
+        _propertyMap = Collections.unmodifiableMap(
+                new HashMap<String, Object>(propertyMap));
+
+        _statementFactory = (IStatementFactory)getProperty(
+                DatabaseConfig.PROPERTY_STATEMENT_FACTORY);
+        _resultSetTableFactory = (IResultSetTableFactory)getProperty(
+                DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY);
+        // Type checked on access to keep the error of the table metadata
+        _dataTypeFactory = getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+        _escapePattern = (String)getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        String[] tableType = (String[])getProperty(DatabaseConfig.PROPERTY_TABLE_TYPE);
+        _tableType = tableType == null ? null : tableType.clone();
+        _primaryKeyFilter = (IColumnFilter)getProperty(
+                DatabaseConfig.PROPERTY_PRIMARY_KEY_FILTER);
+        _identityColumnFilter = (IColumnFilter)getProperty(
+                DatabaseConfig.PROPERTY_IDENTITY_COLUMN_FILTER);
+        _metadataHandler = (IMetadataHandler)getProperty(
+                DatabaseConfig.PROPERTY_METADATA_HANDLER);
+        _batchSize = getInt(DatabaseConfig.PROPERTY_BATCH_SIZE);
+        _fetchSize = getInt(DatabaseConfig.PROPERTY_FETCH_SIZE);
+        _keyChunkSize = getInt(DatabaseConfig.PROPERTY_KEY_CHUNK_SIZE);
+        _batchByteLimit = getInt(DatabaseConfig.PROPERTY_BATCH_BYTE_LIMIT);
+        _commitInterval = getInt(DatabaseConfig.PROPERTY_COMMIT_INTERVAL);
+        _commitByteInterval = getInt(DatabaseConfig.PROPERTY_COMMIT_BYTE_INTERVAL);
+        _commitProgress = (CommitProgress)getProperty(
+                DatabaseConfig.PROPERTY_COMMIT_PROGRESS);
+        String[] rawStringBinding = (String[])getProperty(
+                DatabaseConfig.PROPERTY_RAW_STRING_BINDING);
+        _rawStringBinding = rawStringBinding == null
+                ? new String[0] : rawStringBinding.clone();
+        _metadataCache = (MetadataCache)getProperty(
+                DatabaseConfig.PROPERTY_METADATA_CACHE);
+        _schemaVersion = (String)getProperty(DatabaseConfig.PROPERTY_SCHEMA_VERSION);
+
+        _caseSensitiveTableNames = getFeature(
+                DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+        _qualifiedTableNames = getFeature(
+                DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES);
+        _batchedStatements = getFeature(DatabaseConfig.FEATURE_BATCHED_STATEMENTS);
+        _datatypeWarning = getFeature(DatabaseConfig.FEATURE_DATATYPE_WARNING);
+        _skipOracleRecycleBinTables = getFeature(
+                DatabaseConfig.FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES);
+        _allowEmptyFields = getFeature(DatabaseConfig.FEATURE_ALLOW_EMPTY_FIELDS);
+        _chunkedDelete = getFeature(DatabaseConfig.FEATURE_CHUNKED_DELETE);
+        _groupByIgnoreMapping = getFeature(
+                DatabaseConfig.FEATURE_GROUP_BY_IGNORE_MAPPING);
+        _adaptiveBatchSize = getFeature(DatabaseConfig.FEATURE_ADAPTIVE_BATCH_SIZE);
+        _pipelinedLoading = getFeature(DatabaseConfig.FEATURE_PIPELINED_LOADING);
+    }
+
+    /**
+     * Look up the value of a property as it was when this snapshot was taken.
+     *
+     * @param name the property id
+     * @return the property value
+     */
+    public Object getProperty(String name)
+    {
+        return _propertyMap.get(name);
+    }
+
+    /**
+     * Look up the value of a feature flag as it was when this snapshot was
+     * taken.
+     *
+     * @param name the feature id
+     * @return the feature status
+     */
+    public boolean getFeature(String name)
+    {
+        Object property = getProperty(name);
+        if (property == null)
+        {
+            return false;
+        }
+        else if (property instanceof Boolean)
+        {
+            return ((Boolean)property).booleanValue();
+        }
+        else
+        {
+            return Boolean.valueOf(String.valueOf(property)).booleanValue();
+        }
+    }
+
+    private int getInt(String name)
+    {
+        Integer value = (Integer)getProperty(name);
+        return value == null ? 0 : value.intValue();
+    }
+
+    public IStatementFactory getStatementFactory()
+    {
+        return _statementFactory;
+    }
+
+    public IResultSetTableFactory getResultSetTableFactory()
+    {
+        return _resultSetTableFactory;
+    }
+
+    /**
+     * @return The configured data type factory
+     * @throws DatabaseUnitRuntimeException if the configured object is not an
+     * {@link IDataTypeFactory}
+     */
+    public IDataTypeFactory getDataTypeFactory()
+    {
+        if (!(_dataTypeFactory instanceof IDataTypeFactory))
+        {
+            String msg = "Invalid datatype factory configured. Class '"
+                    + (_dataTypeFactory == null ? null : _dataTypeFactory.getClass())
+                    + "' does not implement '" + IDataTypeFactory.class + "'.";
+            if (_dataTypeFactory instanceof String)
+            {
+                msg += " Ensure not to specify the fully qualified class name as String but the concrete "
+                        + "instance of the datatype factory (for example 'new OracleDataTypeFactory()').";
+            }
+            throw new DatabaseUnitRuntimeException(msg);
+        }
+        return (IDataTypeFactory)_dataTypeFactory;
+    }
+
+    /**
+     * Registers that the data type factory has been validated against the
+     * given connection.
+     *
+     * @return <code>false</code> if it was registered before
+     */
+    public synchronized boolean markDataTypeFactoryValidated(Connection connection)
+    {
+        return _validatedConnections.put(connection, Boolean.TRUE) == null;
+    }
+
+    public String getEscapePattern()
+    {
+        return _escapePattern;
+    }
+
+    public String[] getTableType()
+    {
+        return _tableType == null ? null : _tableType.clone();
+    }
+
+    public IColumnFilter getPrimaryKeyFilter()
+    {
+        return _primaryKeyFilter;
+    }
+
+    public IColumnFilter getIdentityColumnFilter()
+    {
+        return _identityColumnFilter;
+    }
+
+    public IMetadataHandler getMetadataHandler()
+    {
+        return _metadataHandler;
+    }
+
+    public int getBatchSize()
+    {
+        return _batchSize;
+    }
+
+    public int getFetchSize()
+    {
+        return _fetchSize;
+    }
+
+    public int getKeyChunkSize()
+    {
+        return _keyChunkSize;
+    }
+
+    public int getBatchByteLimit()
+    {
+        return _batchByteLimit;
+    }
+
+    /**
+     * @return The number of rows after which batch operations commit or
+     * <code>0</code> to not commit by rows
+     */
+    public int getCommitInterval()
+    {
+        return _commitInterval;
+    }
+
+    /**
+     * @return The estimated number of bytes after which batch operations
+     * commit or <code>0</code> to not commit by bytes
+     */
+    public int getCommitByteInterval()
+    {
+        return _commitByteInterval;
+    }
+
+    /**
+     * @return The progress of committed rows or <code>null</code>
+     */
+    public CommitProgress getCommitProgress()
+    {
+        return _commitProgress;
+    }
+
+    /**
+     * @return The data type categories whose string values are bound as they
+     * are, see {@link org.dbunit.database.statement.ValueBinder}
+     */
+    public String[] getRawStringBinding()
+    {
+        return _rawStringBinding.clone();
+    }
+
+    /**
+     * @return The cache of the schema metadata or <code>null</code> to read
+     * it for each data set
+     */
+    public MetadataCache getMetadataCache()
+    {
+        return _metadataCache;
+    }
+
+    /**
+     * @return The schema version given by the user or <code>null</code>
+     */
+    public String getSchemaVersion()
+    {
+        return _schemaVersion;
+    }
+
+    public boolean isCaseSensitiveTableNames()
+    {
+        return _caseSensitiveTableNames;
+    }
+
+    public boolean isQualifiedTableNames()
+    {
+        return _qualifiedTableNames;
+    }
+
+    public boolean isBatchedStatements()
+    {
+        return _batchedStatements;
+    }
+
+    public boolean isDatatypeWarning()
+    {
+        return _datatypeWarning;
+    }
+
+    public boolean isSkipOracleRecycleBinTables()
+    {
+        return _skipOracleRecycleBinTables;
+    }
+
+    public boolean isAllowEmptyFields()
+    {
+        return _allowEmptyFields;
+    }
+
+    public boolean isChunkedDelete()
+    {
+        return _chunkedDelete;
+    }
+
+    public boolean isGroupByIgnoreMapping()
+    {
+        return _groupByIgnoreMapping;
+    }
+
+    public boolean isAdaptiveBatchSize()
+    {
+        return _adaptiveBatchSize;
+    }
+
+    public boolean isPipelinedLoading()
+    {
+        return _pipelinedLoading;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_propertyMap=").append(_propertyMap);
+        sb.append("]");
+        return sb.toString();
+    }
+}
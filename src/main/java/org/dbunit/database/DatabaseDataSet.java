@@ -25,7 +25,11 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.dbunit.DatabaseUnitRuntimeException;
 import org.dbunit.dataset.AbstractDataSet;
@@ -63,6 +67,8 @@ public class DatabaseDataSet extends AbstractDataSet
     private final IDatabaseConnection _connection;
     private OrderedTableNameMap _tableMap = null;
     private SchemaSet _schemaSet = new SchemaSet();
+    /** The metadata cache entries by schema, if a cache is configured */
+    private final Map _cacheEntries = new HashMap();
 
     private final ITableFilterSimple _tableFilter;
     private final ITableFilterSimple _oracleRecycleBinTableFilter;
@@ -148,14 +154,8 @@ public class DatabaseDataSet extends AbstractDataSet
         logger.debug("initialize() - start");
 
         DatabaseConfig config = _connection.getConfig();
-        boolean qualifiedTableNamesActive = Boolean.TRUE == config.getProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES);
-        
-        if(schema == null || !qualifiedTableNamesActive)
-    {
-      // If FEATURE_QUALIFIED_TABLE_NAMES is inactive or no schema did have been provided
-      schema = getDefaultSchema();
-    }
-        
+        schema = getSchema(schema);
+
         if (_tableMap != null && _schemaSet.contains(schema))
         {
             return;
@@ -176,50 +176,98 @@ public class DatabaseDataSet extends AbstractDataSet
 
             String[] tableType = (String[])config.getProperty(DatabaseConfig.PROPERTY_TABLE_TYPE);
             IMetadataHandler metadataHandler = (IMetadataHandler) config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+            DatabaseConfigSnapshot snapshot = config.getSnapshot();
 
-            ResultSet resultSet = metadataHandler.getTables(databaseMetaData, schema, tableType);
+            MetadataCache.Entry cacheEntry = null;
+            MetadataCache metadataCache = snapshot.getMetadataCache();
+            if (metadataCache != null)
+            {
+                cacheEntry = metadataCache.getEntry(_connection, schema);
+                _cacheEntries.put(schema, cacheEntry);
+            }
 
-            if(logger.isDebugEnabled())
+            Map bulkColumns = null;
+            Map bulkPrimaryKeys = null;
+            if (metadataHandler instanceof IBulkMetadataHandler
+                    && (cacheEntry == null || !cacheEntry.isBulkLoaded()))
             {
-                logger.debug(SQLHelper.getDatabaseInfo(jdbcConnection.getMetaData()));
-                logger.debug("metadata resultset={}", resultSet);
+                IBulkMetadataHandler bulkHandler = (IBulkMetadataHandler)metadataHandler;
+                bulkColumns = bulkHandler.getColumns(jdbcConnection, schema,
+                        snapshot.getDataTypeFactory(), snapshot.isDatatypeWarning());
+                bulkPrimaryKeys = bulkHandler.getPrimaryKeys(jdbcConnection, schema);
+                if (cacheEntry != null)
+                {
+                    cacheEntry.putBulk(bulkColumns, bulkPrimaryKeys);
+                }
             }
 
-            try
+            String[][] tables = cacheEntry == null ? null : cacheEntry.getTables();
+            if (tables == null)
             {
-        if (_tableMap == null) {
-          _tableMap = super.createTableNameMap();
-        }
-        _schemaSet.add(schema);
-                while (resultSet.next())
+                tables = getTables(databaseMetaData, metadataHandler, schema, tableType);
+                if (cacheEntry != null)
                 {
-                    String schemaName = metadataHandler.getSchema(resultSet);
-                    String tableName = resultSet.getString(3);
+                    cacheEntry.setTables(tables);
+                }
+            }
 
-                    if(_tableFilter != null && !_tableFilter.accept(tableName))
+            if (_tableMap == null) {
+              _tableMap = super.createTableNameMap();
+            }
+            _schemaSet.add(schema);
+            for (int i = 0; i < tables.length; i++)
+            {
+                String schemaName = tables[i][0];
+                String tableName = tables[i][1];
+
+                if(_tableFilter != null && !_tableFilter.accept(tableName))
+                {
+                    logger.debug("Skipping table '{}'", tableName);
+                    continue;
+                }
+                if(!_oracleRecycleBinTableFilter.accept(tableName))
+                {
+                    logger.debug("Skipping oracle recycle bin table '{}'", tableName);
+                    continue;
+                }
+                if (schema == null && !_schemaSet.contains(schemaName)) {
+                  _schemaSet.add(schemaName);
+                }
+
+                QualifiedTableName qualifiedTableName = new QualifiedTableName(tableName, schemaName);
+                tableName = qualifiedTableName.getQualifiedNameIfEnabled(config);
+
+                // Use the cached columns and primary keys or the ones read
+                // in bulk, if any
+                ITableMetaData metaData = null;
+                if (cacheEntry != null)
+                {
+                    Column[] columns = cacheEntry.getColumns(schemaName, tables[i][1]);
+                    if (columns != null)
                     {
-                        logger.debug("Skipping table '{}'", tableName);
-                        continue;
+                        metaData = new DatabaseTableMetaData(tableName, _connection, columns,
+                                cacheEntry.getPrimaryKeys(schemaName, tables[i][1]), cacheEntry);
                     }
-                    if(!_oracleRecycleBinTableFilter.accept(tableName))
+                }
+                else if (bulkColumns != null)
+                {
+                    String bulkName = qualifiedTableName.getQualifiedName();
+                    Column[] columns = (Column[])bulkColumns.get(bulkName);
+                    if (columns != null)
                     {
-                        logger.debug("Skipping oracle recycle bin table '{}'", tableName);
-                        continue;
+                        String[] primaryKeyNames = (String[])bulkPrimaryKeys.get(bulkName);
+                        metaData = new DatabaseTableMetaData(tableName, _connection, columns,
+                                primaryKeyNames == null ? new String[0] : primaryKeyNames);
                     }
-                    if (schema == null && !_schemaSet.contains(schemaName)) {
-                      _schemaSet.add(schemaName);
-                    }
-
-                    QualifiedTableName qualifiedTableName = new QualifiedTableName(tableName, schemaName);
-                    tableName = qualifiedTableName.getQualifiedNameIfEnabled(config);
-
-                    // Put the table into the table map
-                    _tableMap.add(tableName, null);
                 }
+
+                // Put the table into the table map
+                _tableMap.add(tableName, metaData);
             }
-            finally
+
+            if (metadataCache != null)
             {
-                resultSet.close();
+                metadataCache.saveIfModified();
             }
         }
         catch (SQLException e)
@@ -228,6 +276,54 @@ public class DatabaseDataSet extends AbstractDataSet
         }
     }
 
+    /**
+     * Reads the schema and table name pairs of the tables of the schema.
+     */
+    private String[][] getTables(DatabaseMetaData databaseMetaData,
+            IMetadataHandler metadataHandler, String schema, String[] tableType)
+    throws SQLException
+    {
+        ResultSet resultSet = metadataHandler.getTables(databaseMetaData, schema, tableType);
+
+        if(logger.isDebugEnabled())
+        {
+            logger.debug(SQLHelper.getDatabaseInfo(databaseMetaData));
+            logger.debug("metadata resultset={}", resultSet);
+        }
+
+        try
+        {
+            List tables = new ArrayList();
+            while (resultSet.next())
+            {
+                String schemaName = metadataHandler.getSchema(resultSet);
+                String tableName = resultSet.getString(3);
+                tables.add(new String[] {schemaName, tableName});
+            }
+            return (String[][])tables.toArray(new String[0][]);
+        }
+        finally
+        {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * @return The given schema or the default one if none is given or
+     * qualified table names are disabled
+     */
+    private String getSchema(String schema)
+    {
+        boolean qualifiedTableNamesActive = Boolean.TRUE == _connection.getConfig().getProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES);
+
+        if(schema == null || !qualifiedTableNamesActive)
+        {
+            // If FEATURE_QUALIFIED_TABLE_NAMES is inactive or no schema did have been provided
+            return getDefaultSchema();
+        }
+        return schema;
+    }
+
   private String getDefaultSchema() {
     return _connection.getDatabase();
   }
@@ -286,7 +382,9 @@ public class DatabaseDataSet extends AbstractDataSet
         }
 
         // Create metadata and cache it
-        metaData = new DatabaseTableMetaData(tableName, _connection, true);
+        MetadataCache.Entry cacheEntry = (MetadataCache.Entry)_cacheEntries.get(
+                getSchema(qualifiedTableName.getDatabase()));
+        metaData = new DatabaseTableMetaData(tableName, _connection, null, null, cacheEntry);
         // Put the metadata object into the cache map
         _tableMap.update(tableName, metaData);
 
@@ -21,6 +21,7 @@
 package org.dbunit.database;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,8 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.dbunit.database.search.ForeignKeyGraph;
 import org.dbunit.database.search.TablesDependencyHelper;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.NoSuchTableException;
 import org.dbunit.dataset.filter.SequenceTableFilter;
 import org.dbunit.util.search.SearchException;
 import org.slf4j.Logger;
@@ -39,7 +42,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This filter orders tables using dependency information provided by
- * {@link java.sql.DatabaseMetaData#getExportedKeys}. Note that this class
+ * {@link java.sql.DatabaseMetaData#getExportedKeys}, or by a
+ * {@link ForeignKeyGraph} read with one query if the configured metadata
+ * handler supports it. Note that this class
  * name is a bit misleading since it is not at all related to database
  * sequences. It just brings database tables in a specific order.
  *
@@ -95,10 +100,11 @@ public class DatabaseSequenceFilter extends SequenceTableFilter
 
         // Get dependencies for each table
         Map dependencies = new HashMap();
+        ForeignKeyGraph graph = ForeignKeyGraph.load(connection);
         try {
             for (int i = 0; i < tableNames.length; i++) {
                 String tableName = tableNames[i];
-                DependencyInfo info = getDependencyInfo(connection, tableName);
+                DependencyInfo info = getDependencyInfo(connection, graph, tableName);
                 dependencies.put(tableName, info);
             }
         } catch (SearchException e) {
@@ -116,6 +122,86 @@ public class DatabaseSequenceFilter extends SequenceTableFilter
     }
     
 
+    /**
+     * Groups the given table names into dependency levels. Tables of level 0
+     * do not reference any of the given tables through a foreign key, tables
+     * of level <i>n</i> only reference tables of lower levels. All tables of one level can thus be
+     * filled concurrently once the lower levels are filled. The table names
+     * keep their relative order within a level.
+     *
+     * @param connection The connection used to discover the foreign keys
+     * @param tableNames The table names to be grouped
+     * @return The table names of each level, lowest level first
+     * @throws DataSetException
+     * @throws SQLException If an exception is encountered in accessing the database.
+     * @since 2.7.5
+     */
+    public static String[][] getTableLevels(IDatabaseConnection connection,
+            String[] tableNames) throws DataSetException, SQLException
+    {
+        logger.debug("getTableLevels(connection={}, tableNames={}) - start", connection, tableNames);
+
+        Map dependencies = new HashMap();
+        ForeignKeyGraph graph = ForeignKeyGraph.load(connection);
+        try {
+            for (int i = 0; i < tableNames.length; i++) {
+                String tableName = tableNames[i];
+                DependencyInfo info = getDependencyInfo(connection, graph, tableName);
+                info.checkCycles();
+                dependencies.put(tableName, info);
+            }
+        } catch (SearchException e) {
+            throw new DataSetException("Exception while searching the dependent tables.", e);
+        }
+
+        Map levels = new HashMap();
+        int levelCount = 0;
+        for (int i = 0; i < tableNames.length; i++) {
+            int level = getLevel(tableNames[i], dependencies, levels);
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        List[] levelLists = new List[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            levelLists[i] = new ArrayList();
+        }
+        for (int i = 0; i < tableNames.length; i++) {
+            int level = ((Integer)levels.get(tableNames[i])).intValue();
+            levelLists[level].add(tableNames[i]);
+        }
+
+        String[][] result = new String[levelCount][];
+        for (int i = 0; i < levelCount; i++) {
+            result[i] = (String[])levelLists[i].toArray(new String[0]);
+        }
+        return result;
+    }
+
+    /**
+     * @return The length of the longest foreign key path from the given table
+     * to a table that does not reference any other given table
+     */
+    private static int getLevel(String tableName, Map dependencies, Map levels)
+    {
+        Integer level = (Integer)levels.get(tableName);
+        if (level != null) {
+            return level.intValue();
+        }
+
+        // No cycles at this point, the recursion terminates
+        int result = 0;
+        DependencyInfo info = (DependencyInfo)dependencies.get(tableName);
+        // "dependent" are the tables this one references, see getDependencyInfo
+        for (Iterator i = info.getDirectDependentTablesSet().iterator(); i.hasNext();) {
+            String parent = (String)i.next();
+            if (dependencies.containsKey(parent)) {
+                result = Math.max(result, getLevel(parent, dependencies, levels) + 1);
+            }
+        }
+        levels.put(tableName, Integer.valueOf(result));
+        return result;
+    }
+
     private static String[] sort(String[] tableNames, Map dependencies) 
     {
         logger.debug("sort(tableNames={}, dependencies={}) - start", tableNames, dependencies);
@@ -186,16 +272,37 @@ public class DatabaseSequenceFilter extends SequenceTableFilter
     /**
      * Creates the dependency information for the given table
      * @param connection
+     * @param graph The foreign keys read in bulk or <code>null</code> to
+     * search them through the database metadata
      * @param tableName
      * @return The dependency information for the given table
      * @throws SearchException
      */
     private static DependencyInfo getDependencyInfo(
-            IDatabaseConnection connection, String tableName) 
+            IDatabaseConnection connection, ForeignKeyGraph graph, String tableName) 
     throws SearchException 
     {
         logger.debug("getDependencyInfo(connection={}, tableName={}) - start", connection, tableName);
-        
+
+        if (graph != null) {
+            if (!graph.containsTable(tableName)) {
+                throw new SearchException(new NoSuchTableException("The table '" + tableName
+                        + "' does not exist in schema '" + connection.getDatabase() + "'"));
+            }
+            // "depends on" are the tables referencing this one, see TablesDependencyHelper
+            Set directDependsOnTablesSet = graph.getDirectChildren(tableName);
+            Set directDependentTablesSet = graph.getDirectParents(tableName);
+            Set allDependsOnTablesSet = graph.getAllChildren(tableName);
+            Set allDependentTablesSet = graph.getAllParents(tableName);
+            directDependsOnTablesSet.remove(tableName);
+            directDependentTablesSet.remove(tableName);
+            allDependsOnTablesSet.remove(tableName);
+            allDependentTablesSet.remove(tableName);
+            return new DependencyInfo(tableName,
+                    directDependsOnTablesSet, directDependentTablesSet,
+                    allDependsOnTablesSet, allDependentTablesSet);
+        }
+
         // The tables dependency helpers makes a depth search for dependencies and returns the whole
         // tree of dependent objects, not only the direct FK-PK related tables.
         String[] allDependentTables = TablesDependencyHelper.getDependentTables(connection, tableName);
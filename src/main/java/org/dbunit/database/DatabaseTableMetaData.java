@@ -67,14 +67,61 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
     private final IDatabaseConnection _connection;
     private Column[] _columns;
     private Column[] _primaryKeys;
+    private String[] _primaryKeyNames;
+    /** The shared metadata to read from and fill, <code>null</code> if not cached */
+    private final MetadataCache.Entry _cacheEntry;
     //added by hzhan032
     private IColumnFilter lastKeyFilter;
 
 
     DatabaseTableMetaData(final String tableName, IDatabaseConnection connection, boolean validate) throws DataSetException {
+        this(tableName, connection, null, null, null);
+    }
+
+    /**
+     * Creates the metadata of a table whose columns and primary key names
+     * have already been read, for example by an {@link IBulkMetadataHandler}.
+     * The primary key names are still overridden by the configured
+     * {@link DatabaseConfig#PROPERTY_PRIMARY_KEY_FILTER}.
+     *
+     * @param primaryKeyNames The primary key column names in key order or
+     * <code>null</code> to read them when needed
+     * @since 2.7.5
+     */
+    DatabaseTableMetaData(final String tableName, IDatabaseConnection connection, Column[] columns,
+                          String[] primaryKeyNames) throws DataSetException {
+        this(tableName, connection, columns, primaryKeyNames, null);
+    }
+
+    /**
+     * Creates the metadata of a table backed by the cached metadata of its
+     * schema. Columns and primary key names not given are taken from the
+     * cache entry if it has them, and stored there once read otherwise.
+     *
+     * @param columns The columns or <code>null</code>
+     * @param primaryKeyNames The primary key column names in key order or
+     * <code>null</code>
+     * @param cacheEntry The cached metadata of the schema or <code>null</code>
+     * @since 2.7.5
+     */
+    DatabaseTableMetaData(final String tableName, IDatabaseConnection connection, Column[] columns,
+                          String[] primaryKeyNames, MetadataCache.Entry cacheEntry) throws DataSetException {
         _connection = connection;
         _originalTableName = tableName;
         _qualifiedTableNameSupport = new QualifiedTableName(_originalTableName, _connection.getDatabase());
+        _columns = columns;
+        _primaryKeyNames = primaryKeyNames;
+        _cacheEntry = cacheEntry;
+        if (cacheEntry != null) {
+            String schemaName = _qualifiedTableNameSupport.getDatabase();
+            String table = _qualifiedTableNameSupport.getTable();
+            if (_columns == null) {
+                _columns = cacheEntry.getColumns(schemaName, table);
+            }
+            if (_primaryKeyNames == null) {
+                _primaryKeyNames = cacheEntry.getPrimaryKeys(schemaName, table);
+            }
+        }
     }
 
     public static ITableMetaData createMetaData(String tableName, ResultSet resultSet, IDataTypeFactory dataTypeFactory) throws DataSetException, SQLException {
@@ -95,8 +142,7 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
         Connection connection = _connection.getConnection();
         DatabaseMetaData databaseMetaData = connection.getMetaData();
 
-        DatabaseConfig config = _connection.getConfig();
-        IMetadataHandler metadataHandler = (IMetadataHandler) config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+        IMetadataHandler metadataHandler = _connection.getConfig().getSnapshot().getMetadataHandler();
 
         ResultSet resultSet = metadataHandler.getPrimaryKeys(databaseMetaData, schemaName, tableName);
 
@@ -166,14 +212,14 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
                 Connection jdbcConnection = _connection.getConnection();
                 DatabaseMetaData databaseMetaData = jdbcConnection.getMetaData();
 
-                DatabaseConfig config = _connection.getConfig();
+                DatabaseConfigSnapshot config = _connection.getConfig().getSnapshot();
 
-                IMetadataHandler metadataHandler = (IMetadataHandler) config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+                IMetadataHandler metadataHandler = config.getMetadataHandler();
                 ResultSet resultSet = metadataHandler.getColumns(databaseMetaData, databaseName, tableName);
 
                 try {
                     IDataTypeFactory dataTypeFactory = super.getDataTypeFactory(_connection);
-                    boolean datatypeWarning = config.getFeature(  DatabaseConfig.FEATURE_DATATYPE_WARNING);
+                    boolean datatypeWarning = config.isDatatypeWarning();
 
                     List columnList = new ArrayList();
                     while (resultSet.next()) {
@@ -201,6 +247,9 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
                     }
 
                     _columns = (Column[]) columnList.toArray(new Column[0]);
+                    if (_cacheEntry != null) {
+                        _cacheEntry.putColumns(databaseName, tableName, _columns);
+                    }
                 } finally {
                     resultSet.close();
                 }
@@ -217,9 +266,8 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
 
     public Column[] getPrimaryKeys() throws DataSetException {
         logger.debug("getPrimaryKeys() - start");
-        DatabaseConfig config = _connection.getConfig();
-        IColumnFilter primaryKeysFilter = (IColumnFilter) config.getProperty(
-                DatabaseConfig.PROPERTY_PRIMARY_KEY_FILTER);
+        IColumnFilter primaryKeysFilter =
+                _connection.getConfig().getSnapshot().getPrimaryKeyFilter();
 
         if (_primaryKeys == null || primaryKeyFilterChanged(primaryKeysFilter)) {
             try {
@@ -228,8 +276,14 @@ public class DatabaseTableMetaData extends AbstractTableMetaData {
                     _primaryKeys = Columns.getColumns(getTableName(), getColumns(),
                             primaryKeysFilter);
                 } else {
-                    String[] pkNames = getPrimaryKeyNames();
-                    _primaryKeys = Columns.getColumns(pkNames, getColumns());
+                    if (_primaryKeyNames == null) {
+                        _primaryKeyNames = getPrimaryKeyNames();
+                        if (_cacheEntry != null) {
+                            _cacheEntry.putPrimaryKeys(_qualifiedTableNameSupport.getDatabase(),
+                                    _qualifiedTableNameSupport.getTable(), _primaryKeyNames);
+                        }
+                    }
+                    _primaryKeys = Columns.getColumns(_primaryKeyNames, getColumns());
                 }
             } catch (SQLException e) {
                 throw new DataSetException(e);
@@ -0,0 +1,509 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.dbunit.database.statement.IStatementFactory;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator of a {@link IDatabaseConnection} recording the tables written by
+ * the code under test. The JDBC connection returned by
+ * {@link #getConnection()} and the statements created from it parse the
+ * target table out of every <code>insert</code>, <code>update</code>,
+ * <code>delete</code>, <code>replace</code>, <code>merge</code> and
+ * <code>truncate</code> statement they execute and add it to the dirty
+ * tables.
+ * <p>
+ * Only the target table of a statement is recorded, so tables changed by
+ * triggers, stored procedures, cascading deletes or the further tables of a
+ * multi-table statement are not. Such tables can be added with
+ * {@link #markDirty(String)}. The data sets and tables created through the
+ * other methods of this connection only read and are not tracked.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ * @see org.dbunit.AbstractDatabaseTester#cleanupDirtyTables()
+ */
+public class DirtyTableTrackingConnection implements IDatabaseConnection
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DirtyTableTrackingConnection.class);
+
+    /** Statement methods executing the SQL given as first argument */
+    private static final Set SQL_METHODS = new HashSet(Arrays.asList(new String[] {
+        "execute", "executeUpdate", "executeLargeUpdate", "addBatch"
+    }));
+
+    /** Prepared statement methods executing the prepared SQL */
+    private static final Set PREPARED_METHODS = new HashSet(Arrays.asList(new String[] {
+        "execute", "executeUpdate", "executeLargeUpdate", "addBatch",
+        "executeBatch", "executeLargeBatch"
+    }));
+
+    /** Words that may precede the table name of a statement */
+    private static final Set MODIFIERS = new HashSet(Arrays.asList(new String[] {
+        "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "IGNORE", "QUICK", "ONLY",
+        "INTO", "FROM", "TABLE"
+    }));
+
+    private final IDatabaseConnection _connection;
+
+    /** Dirty table names by their upper case name */
+    private final Map _dirtyTables = new LinkedHashMap();
+
+    private Connection _jdbcConnection;
+    private Connection _trackingConnection;
+
+    /**
+     * @param connection The connection to decorate
+     */
+    public DirtyTableTrackingConnection(IDatabaseConnection connection)
+    {
+        _connection = connection;
+    }
+
+    /**
+     * @return The decorated connection, which does not track its statements
+     */
+    public IDatabaseConnection getDelegate()
+    {
+        return _connection;
+    }
+
+    /**
+     * @return The names of the tables written since the last
+     * {@link #clearDirtyTables()} in the order they were first written
+     */
+    public synchronized String[] getDirtyTables()
+    {
+        return (String[])_dirtyTables.values().toArray(new String[0]);
+    }
+
+    /**
+     * Adds a table to the dirty tables, for example one changed by a trigger.
+     *
+     * @param tableName The table name
+     */
+    public synchronized void markDirty(String tableName)
+    {
+        String key = tableName.toUpperCase(Locale.ENGLISH);
+        if (!_dirtyTables.containsKey(key))
+        {
+            logger.debug("Table {} is dirty", tableName);
+            _dirtyTables.put(key, tableName);
+        }
+    }
+
+    /**
+     * Forgets all dirty tables, for example after they have been reset.
+     */
+    public synchronized void clearDirtyTables()
+    {
+        _dirtyTables.clear();
+    }
+
+    /**
+     * Records the target table of the given statement if it writes one.
+     */
+    void record(String sql)
+    {
+        String tableName = getTargetTable(sql);
+        if (tableName == null)
+        {
+            return;
+        }
+
+        int schemaEnd = tableName.lastIndexOf('.');
+        if (!getConfig().getSnapshot().isQualifiedTableNames())
+        {
+            tableName = tableName.substring(schemaEnd + 1);
+        }
+        else if (schemaEnd < 0 && getDatabase() != null)
+        {
+            tableName = getDatabase() + "." + tableName;
+        }
+        markDirty(tableName);
+    }
+
+    /**
+     * Returns the table written by the given statement, with quotes removed
+     * and qualified as in the statement, or <code>null</code> if the
+     * statement does not write a table.
+     */
+    static String getTargetTable(String sql)
+    {
+        if (sql == null)
+        {
+            return null;
+        }
+
+        SqlScanner scanner = new SqlScanner(sql);
+        String keyword = scanner.nextWord();
+        if (!"INSERT".equals(keyword) && !"UPDATE".equals(keyword)
+                && !"DELETE".equals(keyword) && !"REPLACE".equals(keyword)
+                && !"MERGE".equals(keyword) && !"TRUNCATE".equals(keyword))
+        {
+            return null;
+        }
+
+        while (true)
+        {
+            int position = scanner.getPosition();
+            String word = scanner.nextWord();
+            if (word == null || !MODIFIERS.contains(word))
+            {
+                scanner.setPosition(position);
+                break;
+            }
+        }
+        return scanner.nextName();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IDatabaseConnection interface
+
+    /**
+     * Returns the JDBC connection of the decorated connection wrapped so that
+     * the statements created from it record the tables they write.
+     */
+    public synchronized Connection getConnection() throws SQLException
+    {
+        Connection jdbcConnection = _connection.getConnection();
+        if (jdbcConnection != _jdbcConnection)
+        {
+            _jdbcConnection = jdbcConnection;
+            _trackingConnection = (Connection)Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class[] {Connection.class},
+                    new ConnectionHandler(jdbcConnection));
+        }
+        return _trackingConnection;
+    }
+
+    public String getDatabase()
+    {
+        return _connection.getDatabase();
+    }
+
+    public void close() throws SQLException
+    {
+        _connection.close();
+    }
+
+    public IDataSet createDataSet() throws SQLException
+    {
+        return _connection.createDataSet();
+    }
+
+    public IDataSet createDataSet(String[] tableNames)
+            throws SQLException, DataSetException
+    {
+        return _connection.createDataSet(tableNames);
+    }
+
+    public ITable createQueryTable(String tableName, String sql)
+            throws DataSetException, SQLException
+    {
+        return _connection.createQueryTable(tableName, sql);
+    }
+
+    public ITable createTable(String tableName,
+            PreparedStatement preparedStatement)
+            throws DataSetException, SQLException
+    {
+        return _connection.createTable(tableName, preparedStatement);
+    }
+
+    public ITable createTable(String tableName)
+            throws DataSetException, SQLException
+    {
+        return _connection.createTable(tableName);
+    }
+
+    public int getRowCount(String tableName) throws SQLException
+    {
+        return _connection.getRowCount(tableName);
+    }
+
+    public int getRowCount(String tableName, String whereClause)
+            throws SQLException
+    {
+        return _connection.getRowCount(tableName, whereClause);
+    }
+
+    public DatabaseConfig getConfig()
+    {
+        return _connection.getConfig();
+    }
+
+    public IStatementFactory getStatementFactory()
+    {
+        return _connection.getStatementFactory();
+    }
+
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_connection=").append(_connection);
+        sb.append(", _dirtyTables=").append(_dirtyTables.values());
+        sb.append("]");
+        return sb.toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args)
+            throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Wraps the statements created by the JDBC connection.
+     */
+    private class ConnectionHandler implements InvocationHandler
+    {
+        private final Connection _target;
+
+        ConnectionHandler(Connection target)
+        {
+            _target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            Object result = DirtyTableTrackingConnection.invoke(_target, method, args);
+
+            String name = method.getName();
+            Class statementClass;
+            String sql = null;
+            if ("createStatement".equals(name))
+            {
+                statementClass = Statement.class;
+            }
+            else if ("prepareStatement".equals(name))
+            {
+                statementClass = PreparedStatement.class;
+                sql = (String)args[0];
+            }
+            else if ("prepareCall".equals(name))
+            {
+                statementClass = CallableStatement.class;
+                sql = (String)args[0];
+            }
+            else
+            {
+                return result;
+            }
+
+            return Proxy.newProxyInstance(statementClass.getClassLoader(),
+                    new Class[] {statementClass},
+                    new StatementHandler((Statement)result, (Connection)proxy, sql));
+        }
+    }
+
+    /**
+     * Records the tables written by a statement.
+     */
+    private class StatementHandler implements InvocationHandler
+    {
+        private final Statement _target;
+        private final Connection _connectionProxy;
+        private final String _preparedSql;
+
+        StatementHandler(Statement target, Connection connectionProxy,
+                String preparedSql)
+        {
+            _target = target;
+            _connectionProxy = connectionProxy;
+            _preparedSql = preparedSql;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            String name = method.getName();
+            if ("getConnection".equals(name))
+            {
+                return _connectionProxy;
+            }
+
+            // recorded before executing since a failed statement may have
+            // written some rows
+            if (args != null && args.length > 0 && args[0] instanceof String
+                    && SQL_METHODS.contains(name))
+            {
+                record((String)args[0]);
+            }
+            else if ((args == null || args.length == 0) && _preparedSql != null
+                    && PREPARED_METHODS.contains(name))
+            {
+                record(_preparedSql);
+            }
+            return DirtyTableTrackingConnection.invoke(_target, method, args);
+        }
+    }
+
+    /**
+     * Reads the words and names at the start of a statement, skipping
+     * whitespace and comments.
+     */
+    private static class SqlScanner
+    {
+        private final String _sql;
+        private int _position;
+
+        SqlScanner(String sql)
+        {
+            _sql = sql;
+        }
+
+        int getPosition()
+        {
+            return _position;
+        }
+
+        void setPosition(int position)
+        {
+            _position = position;
+        }
+
+        private void skipSpace()
+        {
+            while (_position < _sql.length())
+            {
+                char c = _sql.charAt(_position);
+                if (Character.isWhitespace(c))
+                {
+                    _position++;
+                }
+                else if (_sql.startsWith("--", _position))
+                {
+                    int end = _sql.indexOf('\n', _position);
+                    _position = end < 0 ? _sql.length() : end + 1;
+                }
+                else if (_sql.startsWith("/*", _position))
+                {
+                    int end = _sql.indexOf("*/", _position + 2);
+                    _position = end < 0 ? _sql.length() : end + 2;
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return The next unquoted word in upper case or <code>null</code>
+         */
+        String nextWord()
+        {
+            skipSpace();
+            int start = _position;
+            while (_position < _sql.length() && isNameChar(_sql.charAt(_position)))
+            {
+                _position++;
+            }
+            return _position == start ? null
+                    : _sql.substring(start, _position).toUpperCase(Locale.ENGLISH);
+        }
+
+        /**
+         * @return The next possibly qualified and quoted name without quotes
+         * or <code>null</code>
+         */
+        String nextName()
+        {
+            skipSpace();
+            StringBuilder name = new StringBuilder();
+            while (_position < _sql.length())
+            {
+                char c = _sql.charAt(_position);
+                int start = _position;
+                if (c == '"' || c == '`' || c == '[')
+                {
+                    char close = c == '[' ? ']' : c;
+                    int end = _sql.indexOf(close, _position + 1);
+                    if (end < 0)
+                    {
+                        return null;
+                    }
+                    name.append(_sql, _position + 1, end);
+                    _position = end + 1;
+                }
+                else
+                {
+                    while (_position < _sql.length() && isNameChar(_sql.charAt(_position)))
+                    {
+                        _position++;
+                    }
+                    name.append(_sql, start, _position);
+                }
+
+                if (_position == start || _position >= _sql.length()
+                        || _sql.charAt(_position) != '.')
+                {
+                    break;
+                }
+                name.append('.');
+                _position++;
+            }
+            return name.length() == 0 ? null : name.toString();
+        }
+
+        private static boolean isNameChar(char c)
+        {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+        }
+    }
+}
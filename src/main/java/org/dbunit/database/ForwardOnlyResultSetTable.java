@@ -78,6 +78,11 @@ public class ForwardOnlyResultSetTable extends AbstractResultSetTable
         if(logger.isDebugEnabled())
             logger.debug("getValue(row={}, columnName={}) - start", Integer.toString(row), columnName);
 
+        return getValue(row, getColumnIndex(columnName));
+    }
+
+    public boolean hasRow(int row) throws DataSetException
+    {
         try
         {
             // Move cursor forward up to specified row
@@ -86,20 +91,35 @@ public class ForwardOnlyResultSetTable extends AbstractResultSetTable
                 _eot = !_resultSet.next();
                 _lastRow++;
             }
+        }
+        catch (SQLException e)
+        {
+            throw new DataSetException(e);
+        }
 
-            if (row < _lastRow)
-            {
-                throw new UnsupportedOperationException("Cannot go backward!");
-            }
+        if (row < _lastRow)
+        {
+            throw new UnsupportedOperationException("Cannot go backward!");
+        }
 
-            if (_eot || row > _lastRow)
+        if (_eot || row > _lastRow)
+        {
+            // Proactively close the resultset
+            close();
+            return false;
+        }
+        return row >= 0;
+    }
+
+    public Object getValue(int row, int columnIndex) throws DataSetException
+    {
+        try
+        {
+            if (!hasRow(row))
             {
-                // Proactively close the resultset
-                close();
                 throw new RowOutOfBoundsException(row + " > " + _lastRow);
             }
 
-            int columnIndex = getColumnIndex(columnName);
             Column column = _metaData.getColumns()[columnIndex];
             return column.getDataType().getSqlValue(columnIndex + 1, _resultSet);
         }
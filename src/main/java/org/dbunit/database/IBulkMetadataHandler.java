@@ -0,0 +1,97 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+
+/**
+ * Metadata handler that can read the columns, primary keys and foreign keys
+ * of all tables of a schema at once, and cheaply tell whether they changed. The {@link DatabaseDataSet} uses it when it reads the
+ * table names of a schema, so the metadata of the single tables needs no
+ * further queries.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public interface IBulkMetadataHandler extends IMetadataHandler
+{
+    /**
+     * Reads the columns of all tables of a schema.
+     *
+     * @param connection The JDBC connection
+     * @param schemaName The schema or <code>null</code> for the current one
+     * @param dataTypeFactory The factory creating the data types of the columns
+     * @param datatypeWarning Whether to warn about columns of unknown type,
+     * which are left out
+     * @return The {@link org.dbunit.dataset.Column} arrays in column order by
+     * the <code>schema.table</code> name of their table
+     */
+    Map getColumns(Connection connection, String schemaName,
+            IDataTypeFactory dataTypeFactory, boolean datatypeWarning)
+            throws SQLException, DataTypeException;
+
+    /**
+     * Reads the primary key columns of all tables of a schema.
+     *
+     * @param connection The JDBC connection
+     * @param schemaName The schema or <code>null</code> for the current one
+     * @return The primary key column names in key order by the
+     * <code>schema.table</code> name of their table. Tables without primary
+     * key are missing.
+     */
+    Map getPrimaryKeys(Connection connection, String schemaName)
+            throws SQLException;
+
+    /**
+     * Reads the foreign keys of all tables of a schema.
+     *
+     * @param connection The JDBC connection
+     * @param schemaName The schema or <code>null</code> for the current one
+     * @return One {@link org.dbunit.database.search.ForeignKeyRelationshipEdge}
+     * per foreign key column, from the <code>schema.table</code> name of the
+     * referencing table to the one of the referenced table
+     * @since 2.7.5
+     */
+    List getImportedKeys(Connection connection, String schemaName)
+            throws SQLException;
+
+    /**
+     * Reads a fingerprint of the definition of each table of a schema. The
+     * fingerprint changes whenever the columns, primary key or foreign keys
+     * of the table change, but not when its rows do. The {@link MetadataCache} compares
+     * them to decide whether cached metadata is still valid.
+     *
+     * @param connection The JDBC connection
+     * @param schemaName The schema or <code>null</code> for the current one
+     * @return The fingerprints by the <code>schema.table</code> name of their
+     * table
+     * @since 2.7.5
+     */
+    Map getTableFingerprints(Connection connection, String schemaName)
+            throws SQLException;
+}
@@ -0,0 +1,984 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.database.search.ForeignKeyRelationshipEdge;
+import org.dbunit.util.QualifiedTableName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the table names, columns, primary keys and foreign keys of database
+ * schemas across connections, so each {@link DatabaseDataSet} created by
+ * {@link IDatabaseConnection#createDataSet()} does not read them again.
+ * Register it with {@link DatabaseConfig#PROPERTY_METADATA_CACHE}, usually
+ * the instance shared by the whole JVM returned by {@link #getInstance()}.
+ * <p>
+ * The entries are kept per JDBC URL, user, schema and the configuration
+ * affecting the metadata, which are the metadata handler, data type factory
+ * class, table types, data type warning and case sensitivity. Each time a
+ * data set reads the table names, the entry is validated against the
+ * version of the schema. This is the
+ * {@link DatabaseConfig#PROPERTY_SCHEMA_VERSION} if set, which must then be
+ * changed by the user whenever the schema changes. Otherwise it is the table
+ * fingerprints of an {@link IBulkMetadataHandler}, read with one query. If
+ * neither is available the cache is not used. When only some table
+ * fingerprints changed, the metadata of the other tables is kept and the
+ * changed tables are read again one by one.
+ * <p>
+ * A cache created with a snapshot file, see {@link #getInstance(File)},
+ * also keeps its entries in that file. A new JVM starts from the entries
+ * of the file and validates them the same way, so a forked test run only
+ * reads the metadata of the tables that changed since. The file is written
+ * after a data set read new metadata.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class MetadataCache
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MetadataCache.class);
+
+    private static final MetadataCache INSTANCE = new MetadataCache();
+
+    /** The caches with a snapshot file by canonical file */
+    private static final Map SNAPSHOT_INSTANCES = new HashMap();
+
+    /** "DBUM" */
+    private static final int SNAPSHOT_MAGIC = 0x4442554D;
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    /**
+     * The number of changed tables up to which the metadata of the other
+     * tables is kept and the changed ones are read one by one. Beyond it,
+     * everything is read again with the bulk queries.
+     */
+    static final int MAX_CHANGED_TABLES = 10;
+
+    private final File _snapshotFile;
+    private final Map _entries = new HashMap();
+    /** The serialized entries of the snapshot file by key, read on demand */
+    private Map _snapshotEntries;
+
+    private long _hitCount;
+    private long _missCount;
+    private long _invalidationCount;
+    private long _snapshotHitCount;
+    private long _reusedTableCount;
+
+    /**
+     * Creates a cache of its own, for example to keep the metadata of a
+     * group of tests apart.
+     */
+    public MetadataCache()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a cache kept in the given snapshot file.
+     *
+     * @param snapshotFile The snapshot file or <code>null</code> to keep
+     * the metadata in memory only
+     */
+    public MetadataCache(File snapshotFile)
+    {
+        _snapshotFile = snapshotFile;
+    }
+
+    /**
+     * @return The cache shared by the whole JVM
+     */
+    public static MetadataCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @param snapshotFile The snapshot file
+     * @return The cache shared by the whole JVM for the given snapshot file
+     */
+    public static MetadataCache getInstance(File snapshotFile) throws IOException
+    {
+        File file = snapshotFile.getCanonicalFile();
+        synchronized (SNAPSHOT_INSTANCES)
+        {
+            MetadataCache cache = (MetadataCache)SNAPSHOT_INSTANCES.get(file);
+            if (cache == null)
+            {
+                cache = new MetadataCache(file);
+                SNAPSHOT_INSTANCES.put(file, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the entry for the schema of the connection. If the schema
+     * version changed the entry is replaced by one keeping the metadata of
+     * the unchanged tables.
+     *
+     * @param connection The connection
+     * @param schema The schema or <code>null</code> for all schemas
+     * @return The entry or <code>null</code> if the schema version is unknown
+     */
+    Entry getEntry(IDatabaseConnection connection, String schema)
+            throws SQLException
+    {
+        logger.debug("getEntry(connection={}, schema={}) - start", connection, schema);
+
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        Object version = config.getSchemaVersion();
+        IMetadataHandler metadataHandler = config.getMetadataHandler();
+        if (version == null && metadataHandler instanceof IBulkMetadataHandler)
+        {
+            version = ((IBulkMetadataHandler)metadataHandler).getTableFingerprints(
+                    connection.getConnection(), schema);
+        }
+        if (version == null)
+        {
+            logger.debug("No schema version available, the metadata is not cached");
+            return null;
+        }
+
+        Connection jdbcConnection = connection.getConnection();
+        DatabaseMetaData databaseMetaData = jdbcConnection.getMetaData();
+        String[] tableType = config.getTableType();
+        String key = Arrays.asList(new Object[] {
+                databaseMetaData.getURL(),
+                databaseMetaData.getUserName(),
+                schema,
+                metadataHandler == null ? null : metadataHandler.getClass().getName(),
+                config.getDataTypeFactory().getClass().getName(),
+                tableType == null ? null : Arrays.asList(tableType),
+                Boolean.valueOf(config.isDatatypeWarning()),
+                Boolean.valueOf(config.isCaseSensitiveTableNames()),
+        }).toString();
+
+        synchronized (this)
+        {
+            Entry entry = (Entry)_entries.get(key);
+            if (entry != null && entry._version.equals(version))
+            {
+                _hitCount++;
+                return entry;
+            }
+
+            _missCount++;
+            if (entry != null)
+            {
+                logger.debug("Schema version of {} changed", key);
+                _invalidationCount++;
+            }
+            else
+            {
+                entry = readSnapshotEntry(key, config.getDataTypeFactory());
+                if (entry != null && entry._version.equals(version))
+                {
+                    _snapshotHitCount++;
+                }
+            }
+
+            Entry newEntry = new Entry(version, config.isCaseSensitiveTableNames());
+            if (entry != null)
+            {
+                _reusedTableCount += newEntry.reuse(entry);
+            }
+            _entries.put(key, newEntry);
+            return newEntry;
+        }
+    }
+
+    /**
+     * Returns the foreign keys of a schema, reading them with the
+     * {@link IBulkMetadataHandler} if they are not cached.
+     *
+     * @param connection The connection
+     * @param schema The schema or <code>null</code> for the current one
+     * @return The foreign key columns as returned by
+     * {@link IBulkMetadataHandler#getImportedKeys(Connection, String)} or
+     * <code>null</code> if the metadata handler is no
+     * {@link IBulkMetadataHandler}
+     */
+    public List getImportedKeys(IDatabaseConnection connection, String schema)
+            throws SQLException
+    {
+        logger.debug("getImportedKeys(connection={}, schema={}) - start", connection, schema);
+
+        IMetadataHandler metadataHandler =
+                connection.getConfig().getSnapshot().getMetadataHandler();
+        if (!(metadataHandler instanceof IBulkMetadataHandler))
+        {
+            return null;
+        }
+
+        Entry entry = getEntry(connection, schema);
+        List importedKeys = entry == null ? null : entry.getImportedKeys();
+        if (importedKeys == null)
+        {
+            importedKeys = ((IBulkMetadataHandler)metadataHandler).getImportedKeys(
+                    connection.getConnection(), schema);
+            if (entry != null)
+            {
+                entry.setImportedKeys(importedKeys);
+                saveIfModified();
+            }
+        }
+        return importedKeys;
+    }
+
+    /**
+     * @return The number of times valid metadata has been found in memory
+     */
+    public synchronized long getHitCount()
+    {
+        return _hitCount;
+    }
+
+    /**
+     * @return The number of times the metadata was not valid in memory,
+     * either because it was not cached or because the schema changed
+     */
+    public synchronized long getMissCount()
+    {
+        return _missCount;
+    }
+
+    /**
+     * @return The number of misses caused by a changed schema version
+     */
+    public synchronized long getInvalidationCount()
+    {
+        return _invalidationCount;
+    }
+
+    /**
+     * @return The number of misses answered by a valid entry of the
+     * snapshot file
+     */
+    public synchronized long getSnapshotHitCount()
+    {
+        return _snapshotHitCount;
+    }
+
+    /**
+     * @return The number of tables whose metadata was kept from an outdated
+     * entry because their fingerprint did not change
+     */
+    public synchronized long getReusedTableCount()
+    {
+        return _reusedTableCount;
+    }
+
+    /**
+     * @return The number of cached schemas
+     */
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * @return The snapshot file or <code>null</code>
+     */
+    public File getSnapshotFile()
+    {
+        return _snapshotFile;
+    }
+
+    /**
+     * Drops all cached metadata, including the entries read from the
+     * snapshot file. The file itself and the statistics are kept.
+     */
+    public synchronized void clear()
+    {
+        _entries.clear();
+        _snapshotEntries = new HashMap();
+    }
+
+    /**
+     * Resets all counts to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        _hitCount = 0;
+        _missCount = 0;
+        _invalidationCount = 0;
+        _snapshotHitCount = 0;
+        _reusedTableCount = 0;
+    }
+
+    /**
+     * Writes the snapshot file if an entry changed since it was last
+     * written. Failures are logged only, as the file is a mere optimization.
+     */
+    synchronized void saveIfModified()
+    {
+        if (_snapshotFile == null)
+        {
+            return;
+        }
+
+        boolean modified = false;
+        for (Iterator i = _entries.values().iterator(); i.hasNext();)
+        {
+            modified |= ((Entry)i.next()).isModified();
+        }
+        if (modified)
+        {
+            try
+            {
+                save();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Could not write the metadata snapshot " + _snapshotFile, e);
+            }
+        }
+    }
+
+    /**
+     * Writes all entries to the snapshot file. Entries read from the file
+     * but not used since are written unchanged.
+     *
+     * @throws IllegalStateException if the cache has no snapshot file
+     */
+    public synchronized void save() throws IOException
+    {
+        logger.debug("save() - start");
+
+        if (_snapshotFile == null)
+        {
+            throw new IllegalStateException("The cache has no snapshot file");
+        }
+
+        Map entries = new TreeMap(getSnapshotEntries());
+        for (Iterator i = _entries.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry mapEntry = (Map.Entry)i.next();
+            Entry entry = (Entry)mapEntry.getValue();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            entry.write(out);
+            out.flush();
+            entries.put(mapEntry.getKey(), bytes.toByteArray());
+        }
+
+        // write a temporary file first so a concurrent reader never sees a
+        // partial snapshot
+        File directory = _snapshotFile.getAbsoluteFile().getParentFile();
+        if (directory != null)
+        {
+            directory.mkdirs();
+        }
+        File tempFile = File.createTempFile(_snapshotFile.getName(), ".tmp", directory);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeInt(entries.size());
+                for (Iterator i = entries.entrySet().iterator(); i.hasNext();)
+                {
+                    Map.Entry mapEntry = (Map.Entry)i.next();
+                    byte[] bytes = (byte[])mapEntry.getValue();
+                    out.writeUTF((String)mapEntry.getKey());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!tempFile.renameTo(_snapshotFile))
+            {
+                _snapshotFile.delete();
+                if (!tempFile.renameTo(_snapshotFile))
+                {
+                    throw new IOException("Could not rename " + tempFile + " to " + _snapshotFile);
+                }
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+
+        for (Iterator i = _entries.values().iterator(); i.hasNext();)
+        {
+            ((Entry)i.next()).setModified(false);
+        }
+        logger.debug("Wrote {} schemas to {}", String.valueOf(entries.size()), _snapshotFile);
+    }
+
+    /**
+     * @return The serialized entries of the snapshot file by key, empty if
+     * there is no file or it cannot be read
+     */
+    private Map getSnapshotEntries()
+    {
+        if (_snapshotEntries != null)
+        {
+            return _snapshotEntries;
+        }
+
+        _snapshotEntries = new HashMap();
+        if (_snapshotFile == null || !_snapshotFile.isFile())
+        {
+            return _snapshotEntries;
+        }
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(_snapshotFile)));
+            try
+            {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT)
+                {
+                    logger.info("Ignoring metadata snapshot {} of another format", _snapshotFile);
+                    return _snapshotEntries;
+                }
+                int entryCount = in.readInt();
+                Map entries = new HashMap();
+                for (int i = 0; i < entryCount; i++)
+                {
+                    String key = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    entries.put(key, bytes);
+                }
+                _snapshotEntries = entries;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Ignoring unreadable metadata snapshot " + _snapshotFile, e);
+        }
+        return _snapshotEntries;
+    }
+
+    /**
+     * @return The entry of the snapshot file for the given key or
+     * <code>null</code>
+     */
+    private Entry readSnapshotEntry(String key, IDataTypeFactory dataTypeFactory)
+    {
+        byte[] bytes = (byte[])getSnapshotEntries().get(key);
+        if (bytes == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Entry.read(new DataInputStream(new ByteArrayInputStream(bytes)),
+                    dataTypeFactory);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Ignoring unreadable metadata snapshot entry " + key, e);
+        }
+        catch (DataTypeException e)
+        {
+            logger.warn("Ignoring metadata snapshot entry " + key
+                    + " with unsupported data types", e);
+        }
+        return null;
+    }
+
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_snapshotFile=").append(_snapshotFile);
+        sb.append(", _entries=").append(_entries.size());
+        sb.append(", _hitCount=").append(_hitCount);
+        sb.append(", _missCount=").append(_missCount);
+        sb.append(", _invalidationCount=").append(_invalidationCount);
+        sb.append(", _snapshotHitCount=").append(_snapshotHitCount);
+        sb.append(", _reusedTableCount=").append(_reusedTableCount);
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * The metadata of one schema, filled by the {@link DatabaseDataSet}, the
+     * {@link DatabaseTableMetaData} and the foreign key searches as they
+     * read it.
+     */
+    static final class Entry
+    {
+        private final Object _version;
+        private final boolean _caseSensitiveTableNames;
+
+        /** The schema and table name pairs in the order of the metadata */
+        private String[][] _tables;
+        private boolean _bulkLoaded;
+        /** Column arrays by table key */
+        private final Map _columns = new HashMap();
+        /** Primary key column names by table key */
+        private final Map _primaryKeys = new HashMap();
+        private List _importedKeys;
+        /** Whether the entry changed since the snapshot was written */
+        private boolean _modified;
+
+        Entry(Object version, boolean caseSensitiveTableNames)
+        {
+            _version = version;
+            _caseSensitiveTableNames = caseSensitiveTableNames;
+        }
+
+        private String getKey(String schemaName, String tableName)
+        {
+            String key = new QualifiedTableName(tableName, schemaName).getQualifiedName();
+            return _caseSensitiveTableNames ? key : key.toUpperCase(Locale.ENGLISH);
+        }
+
+        /**
+         * Takes over the metadata of an outdated entry that is still valid.
+         * With the same version this is everything. With table fingerprints
+         * these are the columns and primary keys of the tables whose
+         * fingerprint did not change, if they are few enough.
+         *
+         * @return The number of tables whose metadata was taken over
+         */
+        synchronized int reuse(Entry entry)
+        {
+            synchronized (entry)
+            {
+                if (_version.equals(entry._version))
+                {
+                    _tables = entry._tables;
+                    _bulkLoaded = entry._bulkLoaded;
+                    _columns.putAll(entry._columns);
+                    _primaryKeys.putAll(entry._primaryKeys);
+                    _importedKeys = entry._importedKeys;
+                    return _columns.size();
+                }
+                if (!(_version instanceof Map) || !(entry._version instanceof Map))
+                {
+                    return 0;
+                }
+
+                Map fingerprints = (Map)_version;
+                Map oldFingerprints = (Map)entry._version;
+                List unchangedTables = new ArrayList();
+                for (Iterator i = fingerprints.entrySet().iterator(); i.hasNext();)
+                {
+                    Map.Entry mapEntry = (Map.Entry)i.next();
+                    if (mapEntry.getValue().equals(oldFingerprints.get(mapEntry.getKey())))
+                    {
+                        unchangedTables.add(getKey(null, (String)mapEntry.getKey()));
+                    }
+                }
+                if (fingerprints.size() - unchangedTables.size() > MAX_CHANGED_TABLES)
+                {
+                    return 0;
+                }
+
+                int reused = 0;
+                for (Iterator i = unchangedTables.iterator(); i.hasNext();)
+                {
+                    Object key = i.next();
+                    Object columns = entry._columns.get(key);
+                    if (columns != null)
+                    {
+                        _columns.put(key, columns);
+                        reused++;
+                    }
+                    Object primaryKeys = entry._primaryKeys.get(key);
+                    if (primaryKeys != null)
+                    {
+                        _primaryKeys.put(key, primaryKeys);
+                    }
+                }
+                if (fingerprints.keySet().equals(oldFingerprints.keySet()))
+                {
+                    _tables = entry._tables;
+                }
+                // read the changed tables one by one
+                _bulkLoaded = entry._bulkLoaded && reused > 0;
+                return reused;
+            }
+        }
+
+        /**
+         * @return The schema and table name pairs or <code>null</code> if
+         * not read yet
+         */
+        synchronized String[][] getTables()
+        {
+            return _tables;
+        }
+
+        synchronized void setTables(String[][] tables)
+        {
+            _tables = tables;
+            _modified = true;
+        }
+
+        /**
+         * @return Whether the columns and primary keys of all tables have
+         * been read by an {@link IBulkMetadataHandler}. Tables missing since
+         * then are read one by one.
+         */
+        synchronized boolean isBulkLoaded()
+        {
+            return _bulkLoaded;
+        }
+
+        /**
+         * Stores the metadata read by an {@link IBulkMetadataHandler}.
+         *
+         * @param columns The column arrays by <code>schema.table</code> name
+         * @param primaryKeys The primary key column names by
+         * <code>schema.table</code> name, tables without primary key missing
+         */
+        synchronized void putBulk(Map columns, Map primaryKeys)
+        {
+            for (Iterator i = columns.entrySet().iterator(); i.hasNext();)
+            {
+                Map.Entry entry = (Map.Entry)i.next();
+                String tableName = (String)entry.getKey();
+                String[] keyNames = (String[])primaryKeys.get(tableName);
+                String key = getKey(null, tableName);
+                _columns.put(key, entry.getValue());
+                _primaryKeys.put(key, keyNames == null ? new String[0] : keyNames);
+            }
+            _bulkLoaded = true;
+            _modified = true;
+        }
+
+        /**
+         * @return The columns or <code>null</code> if not read yet
+         */
+        synchronized Column[] getColumns(String schemaName, String tableName)
+        {
+            return (Column[])_columns.get(getKey(schemaName, tableName));
+        }
+
+        synchronized void putColumns(String schemaName, String tableName, Column[] columns)
+        {
+            _columns.put(getKey(schemaName, tableName), columns);
+            _modified = true;
+        }
+
+        /**
+         * @return The primary key column names in key order or
+         * <code>null</code> if not read yet
+         */
+        synchronized String[] getPrimaryKeys(String schemaName, String tableName)
+        {
+            return (String[])_primaryKeys.get(getKey(schemaName, tableName));
+        }
+
+        synchronized void putPrimaryKeys(String schemaName, String tableName,
+                String[] primaryKeyNames)
+        {
+            _primaryKeys.put(getKey(schemaName, tableName), primaryKeyNames);
+            _modified = true;
+        }
+
+        /**
+         * @return The foreign key columns or <code>null</code> if not read yet
+         */
+        synchronized List getImportedKeys()
+        {
+            return _importedKeys;
+        }
+
+        synchronized void setImportedKeys(List importedKeys)
+        {
+            _importedKeys = importedKeys;
+            _modified = true;
+        }
+
+        synchronized boolean isModified()
+        {
+            return _modified;
+        }
+
+        synchronized void setModified(boolean modified)
+        {
+            _modified = modified;
+        }
+
+        /**
+         * Writes the entry in the snapshot format. Data types are written as
+         * their SQL type and type name and created again when read.
+         */
+        synchronized void write(DataOutputStream out) throws IOException
+        {
+            if (_version instanceof Map)
+            {
+                Map fingerprints = (Map)_version;
+                out.writeBoolean(true);
+                out.writeInt(fingerprints.size());
+                for (Iterator i = fingerprints.entrySet().iterator(); i.hasNext();)
+                {
+                    Map.Entry mapEntry = (Map.Entry)i.next();
+                    out.writeUTF((String)mapEntry.getKey());
+                    out.writeUTF((String)mapEntry.getValue());
+                }
+            }
+            else
+            {
+                out.writeBoolean(false);
+                out.writeUTF((String)_version);
+            }
+            out.writeBoolean(_caseSensitiveTableNames);
+            out.writeBoolean(_bulkLoaded);
+
+            if (_tables == null)
+            {
+                out.writeInt(-1);
+            }
+            else
+            {
+                out.writeInt(_tables.length);
+                for (int i = 0; i < _tables.length; i++)
+                {
+                    writeString(out, _tables[i][0]);
+                    out.writeUTF(_tables[i][1]);
+                }
+            }
+
+            out.writeInt(_columns.size());
+            for (Iterator i = _columns.entrySet().iterator(); i.hasNext();)
+            {
+                Map.Entry mapEntry = (Map.Entry)i.next();
+                Column[] columns = (Column[])mapEntry.getValue();
+                out.writeUTF((String)mapEntry.getKey());
+                out.writeInt(columns.length);
+                for (int j = 0; j < columns.length; j++)
+                {
+                    Column column = columns[j];
+                    out.writeUTF(column.getColumnName());
+                    out.writeInt(column.getDataType().getSqlType());
+                    writeString(out, column.getSqlTypeName());
+                    out.writeInt(getNullable(column.getNullable()));
+                    writeString(out, column.getDefaultValue());
+                    writeString(out, column.getRemarks());
+                    writeString(out, column.getAutoIncrement() == null
+                            ? null : column.getAutoIncrement().getKey());
+                }
+            }
+
+            out.writeInt(_primaryKeys.size());
+            for (Iterator i = _primaryKeys.entrySet().iterator(); i.hasNext();)
+            {
+                Map.Entry mapEntry = (Map.Entry)i.next();
+                String[] names = (String[])mapEntry.getValue();
+                out.writeUTF((String)mapEntry.getKey());
+                out.writeInt(names.length);
+                for (int j = 0; j < names.length; j++)
+                {
+                    out.writeUTF(names[j]);
+                }
+            }
+
+            if (_importedKeys == null)
+            {
+                out.writeInt(-1);
+            }
+            else
+            {
+                out.writeInt(_importedKeys.size());
+                for (Iterator i = _importedKeys.iterator(); i.hasNext();)
+                {
+                    ForeignKeyRelationshipEdge edge = (ForeignKeyRelationshipEdge)i.next();
+                    out.writeUTF((String)edge.getFrom());
+                    out.writeUTF((String)edge.getTo());
+                    out.writeUTF(edge.getFKColumn());
+                    out.writeUTF(edge.getPKColumn());
+                }
+            }
+        }
+
+        /**
+         * Reads an entry written by {@link #write(DataOutputStream)},
+         * creating the data types with the given factory.
+         */
+        static Entry read(DataInputStream in, IDataTypeFactory dataTypeFactory)
+                throws IOException, DataTypeException
+        {
+            Object version;
+            if (in.readBoolean())
+            {
+                int count = in.readInt();
+                Map fingerprints = new HashMap();
+                for (int i = 0; i < count; i++)
+                {
+                    String tableName = in.readUTF();
+                    fingerprints.put(tableName, in.readUTF());
+                }
+                version = fingerprints;
+            }
+            else
+            {
+                version = in.readUTF();
+            }
+            Entry entry = new Entry(version, in.readBoolean());
+            entry._bulkLoaded = in.readBoolean();
+
+            int tableCount = in.readInt();
+            if (tableCount >= 0)
+            {
+                entry._tables = new String[tableCount][];
+                for (int i = 0; i < tableCount; i++)
+                {
+                    String schemaName = readString(in);
+                    entry._tables[i] = new String[] {schemaName, in.readUTF()};
+                }
+            }
+
+            int columnTableCount = in.readInt();
+            for (int i = 0; i < columnTableCount; i++)
+            {
+                String key = in.readUTF();
+                String tableName = new QualifiedTableName(key, null).getTable();
+                Column[] columns = new Column[in.readInt()];
+                for (int j = 0; j < columns.length; j++)
+                {
+                    String columnName = in.readUTF();
+                    int sqlType = in.readInt();
+                    String sqlTypeName = readString(in);
+                    int nullable = in.readInt();
+                    String defaultValue = readString(in);
+                    String remarks = readString(in);
+                    String autoIncrement = readString(in);
+                    DataType dataType = dataTypeFactory.createDataType(sqlType,
+                            sqlTypeName, tableName, columnName);
+                    columns[j] = new Column(columnName, dataType, sqlTypeName,
+                            Column.nullableValue(nullable), defaultValue, remarks,
+                            autoIncrement == null ? null
+                                    : Column.AutoIncrement.autoIncrementValue(autoIncrement));
+                }
+                entry._columns.put(key, columns);
+            }
+
+            int primaryKeyTableCount = in.readInt();
+            for (int i = 0; i < primaryKeyTableCount; i++)
+            {
+                String key = in.readUTF();
+                String[] names = new String[in.readInt()];
+                for (int j = 0; j < names.length; j++)
+                {
+                    names[j] = in.readUTF();
+                }
+                entry._primaryKeys.put(key, names);
+            }
+
+            int importedKeyCount = in.readInt();
+            if (importedKeyCount >= 0)
+            {
+                entry._importedKeys = new ArrayList(importedKeyCount);
+                for (int i = 0; i < importedKeyCount; i++)
+                {
+                    entry._importedKeys.add(new ForeignKeyRelationshipEdge(in.readUTF(),
+                            in.readUTF(), in.readUTF(), in.readUTF()));
+                }
+            }
+            return entry;
+        }
+
+        private static int getNullable(Column.Nullable nullable)
+        {
+            if (nullable == Column.NO_NULLS)
+            {
+                return DatabaseMetaData.columnNoNulls;
+            }
+            if (nullable == Column.NULLABLE)
+            {
+                return DatabaseMetaData.columnNullable;
+            }
+            return DatabaseMetaData.columnNullableUnknown;
+        }
+
+        private static void writeString(DataOutputStream out, String value)
+                throws IOException
+        {
+            out.writeBoolean(value != null);
+            if (value != null)
+            {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readString(DataInputStream in) throws IOException
+        {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        public synchronized String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(getClass().getName()).append("[");
+            sb.append("_tables=").append(_tables == null ? -1 : _tables.length);
+            sb.append(", _bulkLoaded=").append(_bulkLoaded);
+            sb.append(", _columns=").append(_columns.size());
+            sb.append(", _importedKeys=").append(
+                    _importedKeys == null ? -1 : _importedKeys.size());
+            sb.append("]");
+            return sb.toString();
+        }
+    }
+}
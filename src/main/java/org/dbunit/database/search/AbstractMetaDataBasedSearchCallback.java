@@ -57,6 +57,10 @@ public abstract class AbstractMetaDataBasedSearchCallback extends AbstractNodesF
 
     private final IDatabaseConnection connection;
 
+    /** Foreign keys of the schema, loaded on first use if supported */
+    private ForeignKeyGraph foreignKeyGraph;
+    private boolean foreignKeyGraphLoaded;
+
     /**
      * Default constructor.
      * @param connection connection where the edges will be calculated from
@@ -142,10 +146,20 @@ public abstract class AbstractMetaDataBasedSearchCallback extends AbstractNodesF
     		logger.debug("getNodes(type={}, node={}) - start", Integer.toString(type), node);
 
         try {
+            if (!this.foreignKeyGraphLoaded) {
+                this.foreignKeyGraph = ForeignKeyGraph.load(this.connection);
+                this.foreignKeyGraphLoaded = true;
+            }
+
+            SortedSet edges = new TreeSet();
+            if (this.foreignKeyGraph != null) {
+                getNodes(type, node, this.foreignKeyGraph, edges);
+                return edges;
+            }
+
             Connection conn = this.connection.getConnection();
             String schema = this.connection.getDatabase();
             DatabaseMetaData metaData = conn.getMetaData();
-            SortedSet edges = new TreeSet();
             getNodes(type, node, conn, schema, metaData, edges);
             return edges;
         } catch (SQLException e) {
@@ -155,6 +169,37 @@ public abstract class AbstractMetaDataBasedSearchCallback extends AbstractNodesF
         }
     }
 
+    /**
+     * Gets the edges of the node from the foreign keys read in bulk.
+     */
+    private void getNodes(int type, Object node, ForeignKeyGraph graph, SortedSet edges)
+    throws SearchException, NoSuchTableException
+    {
+        if (!(node instanceof String)) {
+            throw new IllegalArgumentException("node '" + node + "' should be a String, not a "
+                    + node.getClass().getName());
+        }
+        String tableName = (String) node;
+        if (!graph.containsTable(tableName)) {
+            throw new NoSuchTableException("The table '" + tableName + "' does not exist in schema '"
+                    + this.connection.getDatabase() + "'");
+        }
+
+        tableName = new QualifiedTableName(tableName, this.connection.getDatabase())
+                .getQualifiedNameIfEnabled(this.connection.getConfig());
+        ForeignKeyRelationshipEdge[] keys = type == IMPORT ?
+                graph.getImportedKeys(tableName) : graph.getExportedKeys(tableName);
+        for (int i = 0; i < keys.length; i++) {
+            String dependentTableName = (String) (type == IMPORT ? keys[i].getTo() : keys[i].getFrom());
+            IEdge edge = newEdge(null, type, tableName, dependentTableName,
+                    keys[i].getFKColumn(), keys[i].getPKColumn());
+            if ( logger.isDebugEnabled() ) {
+                logger.debug("Adding edge " + edge);
+            }
+            edges.add(edge);
+        }
+    }
+
     private void getNodes(int type, Object node, Connection conn,
             String schema, DatabaseMetaData metaData, SortedSet edges)
     throws SearchException, NoSuchTableException 
@@ -261,7 +306,8 @@ public abstract class AbstractMetaDataBasedSearchCallback extends AbstractNodesF
      * This method can be overwritten by the sub-classes if they need to decorate
      * the edge (for instance, providing an Edge that contains the primary and 
      * foreign keys used).
-     * @param rs database meta-data result set
+     * @param rs database meta-data result set, <code>null</code> if the foreign
+     * keys have been read in bulk into a {@link ForeignKeyGraph}
      * @param type type of relationship (IMPORT or EXPORT)
      * @param from name of the table representing the 'from' node
      * @param to name of the table representing the 'to' node
@@ -0,0 +1,353 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.database.search;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
+import org.dbunit.database.IBulkMetadataHandler;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IMetadataHandler;
+import org.dbunit.database.MetadataCache;
+import org.dbunit.util.QualifiedTableName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The foreign keys between the tables of a schema, read once with an
+ * {@link IBulkMetadataHandler} and held in adjacency arrays. It answers the
+ * dependency questions of the {@link TablesDependencyHelper}, the
+ * {@link org.dbunit.database.DatabaseSequenceFilter} and the search
+ * callbacks without further metadata calls.
+ * <p>
+ * Table names are looked up case insensitively and qualified with the schema
+ * of the connection if {@link DatabaseConfig#FEATURE_QUALIFIED_TABLE_NAMES}
+ * is enabled. The returned names are the ones of the database. The foreign
+ * keys are taken from the configured {@link MetadataCache}, if any.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class ForeignKeyGraph
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ForeignKeyGraph.class);
+
+    private static final ForeignKeyRelationshipEdge[] NO_EDGES =
+            new ForeignKeyRelationshipEdge[0];
+
+    private final DatabaseConfig _config;
+    private final String _schema;
+
+    /** Table names by index */
+    private final List _tableNames = new ArrayList();
+    /** Indexes by upper case table name */
+    private final Map _tableIndexes = new HashMap();
+    /** Indexes of the tables existing in the schema */
+    private final Set _existingTables = new HashSet();
+    private final List _edges = new ArrayList();
+
+    /** Indexes of the tables each table has foreign keys to */
+    private int[][] _parents;
+    /** Indexes of the tables having foreign keys to each table */
+    private int[][] _children;
+    private ForeignKeyRelationshipEdge[][] _importedKeys;
+    private ForeignKeyRelationshipEdge[][] _exportedKeys;
+
+    private ForeignKeyGraph(IDatabaseConnection connection)
+    {
+        _config = connection.getConfig();
+        _schema = connection.getDatabase();
+    }
+
+    /**
+     * Reads the tables and foreign keys of the schema of the connection.
+     *
+     * @param connection The connection
+     * @return The graph or <code>null</code> if the configured metadata
+     * handler is no {@link IBulkMetadataHandler}
+     */
+    public static ForeignKeyGraph load(IDatabaseConnection connection)
+            throws SQLException
+    {
+        logger.debug("load(connection={}) - start", connection);
+
+        DatabaseConfigSnapshot snapshot = connection.getConfig().getSnapshot();
+        IMetadataHandler metadataHandler = snapshot.getMetadataHandler();
+        if (!(metadataHandler instanceof IBulkMetadataHandler))
+        {
+            return null;
+        }
+
+        ForeignKeyGraph graph = new ForeignKeyGraph(connection);
+        Connection jdbcConnection = connection.getConnection();
+        ResultSet resultSet = metadataHandler.getTables(jdbcConnection.getMetaData(),
+                graph._schema, snapshot.getTableType());
+        try
+        {
+            while (resultSet.next())
+            {
+                String schemaName = metadataHandler.getSchema(resultSet);
+                String tableName = resultSet.getString(3);
+                int index = graph.addTable(new QualifiedTableName(tableName,
+                        schemaName).getQualifiedNameIfEnabled(graph._config));
+                graph._existingTables.add(new Integer(index));
+            }
+        }
+        finally
+        {
+            resultSet.close();
+        }
+
+        MetadataCache metadataCache = snapshot.getMetadataCache();
+        List importedKeys = metadataCache == null
+                ? ((IBulkMetadataHandler)metadataHandler).getImportedKeys(
+                        jdbcConnection, graph._schema)
+                : metadataCache.getImportedKeys(connection, graph._schema);
+        for (Iterator i = importedKeys.iterator(); i.hasNext();)
+        {
+            ForeignKeyRelationshipEdge key = (ForeignKeyRelationshipEdge)i.next();
+            String from = new QualifiedTableName((String)key.getFrom(), null)
+                    .getQualifiedNameIfEnabled(graph._config);
+            String to = new QualifiedTableName((String)key.getTo(), null)
+                    .getQualifiedNameIfEnabled(graph._config);
+            graph.addTable(from);
+            graph.addTable(to);
+            graph._edges.add(new ForeignKeyRelationshipEdge(from, to,
+                    key.getFKColumn(), key.getPKColumn()));
+        }
+        graph.build();
+
+        logger.debug("Loaded {} tables with {} foreign key columns",
+                String.valueOf(graph._tableNames.size()), String.valueOf(graph._edges.size()));
+        return graph;
+    }
+
+    private int addTable(String tableName)
+    {
+        String key = tableName.toUpperCase(Locale.ENGLISH);
+        Integer index = (Integer)_tableIndexes.get(key);
+        if (index == null)
+        {
+            index = new Integer(_tableNames.size());
+            _tableNames.add(tableName);
+            _tableIndexes.put(key, index);
+        }
+        return index.intValue();
+    }
+
+    /**
+     * Fills the adjacency arrays from the edges.
+     */
+    private void build()
+    {
+        int tableCount = _tableNames.size();
+        List[] imported = new List[tableCount];
+        List[] exported = new List[tableCount];
+        Set[] parents = new Set[tableCount];
+        Set[] children = new Set[tableCount];
+        for (int i = 0; i < tableCount; i++)
+        {
+            imported[i] = new ArrayList();
+            exported[i] = new ArrayList();
+            parents[i] = new HashSet();
+            children[i] = new HashSet();
+        }
+
+        for (Iterator i = _edges.iterator(); i.hasNext();)
+        {
+            ForeignKeyRelationshipEdge edge = (ForeignKeyRelationshipEdge)i.next();
+            int from = getIndex((String)edge.getFrom());
+            int to = getIndex((String)edge.getTo());
+            imported[from].add(edge);
+            exported[to].add(edge);
+            parents[from].add(new Integer(to));
+            children[to].add(new Integer(from));
+        }
+
+        _importedKeys = new ForeignKeyRelationshipEdge[tableCount][];
+        _exportedKeys = new ForeignKeyRelationshipEdge[tableCount][];
+        _parents = new int[tableCount][];
+        _children = new int[tableCount][];
+        for (int i = 0; i < tableCount; i++)
+        {
+            _importedKeys[i] = (ForeignKeyRelationshipEdge[])imported[i].toArray(NO_EDGES);
+            _exportedKeys[i] = (ForeignKeyRelationshipEdge[])exported[i].toArray(NO_EDGES);
+            _parents[i] = toArray(parents[i]);
+            _children[i] = toArray(children[i]);
+        }
+    }
+
+    private static int[] toArray(Set indexes)
+    {
+        int[] result = new int[indexes.size()];
+        int i = 0;
+        for (Iterator iterator = indexes.iterator(); iterator.hasNext();)
+        {
+            result[i++] = ((Integer)iterator.next()).intValue();
+        }
+        return result;
+    }
+
+    /**
+     * @return The index of the table or <code>-1</code> if it is unknown
+     */
+    private int getIndex(String tableName)
+    {
+        String name = new QualifiedTableName(tableName, _schema)
+                .getQualifiedNameIfEnabled(_config);
+        Integer index = (Integer)_tableIndexes.get(name.toUpperCase(Locale.ENGLISH));
+        return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * @param tableName The table name
+     * @return Whether the table exists in the schema
+     */
+    public boolean containsTable(String tableName)
+    {
+        return _existingTables.contains(new Integer(getIndex(tableName)));
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The foreign key columns of the table, from the table to the
+     * referenced tables
+     */
+    public ForeignKeyRelationshipEdge[] getImportedKeys(String tableName)
+    {
+        int index = getIndex(tableName);
+        return index < 0 ? NO_EDGES : _importedKeys[index];
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The foreign key columns referencing the table, from the
+     * referencing tables to the table
+     */
+    public ForeignKeyRelationshipEdge[] getExportedKeys(String tableName)
+    {
+        int index = getIndex(tableName);
+        return index < 0 ? NO_EDGES : _exportedKeys[index];
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The names of the tables the table has foreign keys to
+     */
+    public Set getDirectParents(String tableName)
+    {
+        return getTables(tableName, _parents, false);
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The names of the tables having foreign keys to the table
+     */
+    public Set getDirectChildren(String tableName)
+    {
+        return getTables(tableName, _children, false);
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The names of the tables the table depends on directly or
+     * indirectly through foreign keys
+     */
+    public Set getAllParents(String tableName)
+    {
+        return getTables(tableName, _parents, true);
+    }
+
+    /**
+     * @param tableName The table name
+     * @return The names of the tables depending directly or indirectly on
+     * the table through foreign keys
+     */
+    public Set getAllChildren(String tableName)
+    {
+        return getTables(tableName, _children, true);
+    }
+
+    /**
+     * Collects the tables reachable from the given one. The table itself is
+     * only contained if it is part of a cycle.
+     */
+    private Set getTables(String tableName, int[][] adjacency, boolean transitive)
+    {
+        Set result = new HashSet();
+        int start = getIndex(tableName);
+        if (start < 0)
+        {
+            return result;
+        }
+
+        boolean[] visited = new boolean[adjacency.length];
+        // the start table and each visited table are pushed once at most
+        int[] stack = new int[adjacency.length + 1];
+        int stackSize = 0;
+        stack[stackSize++] = start;
+        while (stackSize > 0)
+        {
+            int[] next = adjacency[stack[--stackSize]];
+            for (int i = 0; i < next.length; i++)
+            {
+                int table = next[i];
+                if (!visited[table])
+                {
+                    visited[table] = true;
+                    result.add(_tableNames.get(table));
+                    if (transitive)
+                    {
+                        stack[stackSize++] = table;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_schema=").append(_schema);
+        sb.append(", _tableCount=").append(_tableNames.size());
+        sb.append(", _edges=").append(_edges);
+        sb.append("]");
+        return sb.toString();
+    }
+}
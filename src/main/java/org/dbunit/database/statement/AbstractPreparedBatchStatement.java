@@ -28,6 +28,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
 /**
  * @author Manuel Laflamme
  * @version $Revision$
@@ -42,11 +45,30 @@ public abstract class AbstractPreparedBatchStatement implements IPreparedBatchSt
     private static final Logger logger = LoggerFactory.getLogger(AbstractPreparedBatchStatement.class);
 
     protected final PreparedStatement _statement;
+    private final BindPlan _bindPlan;
 
     AbstractPreparedBatchStatement(String sql, Connection connection)
             throws SQLException
+    {
+        this(sql, connection, new BindPlan());
+    }
+
+    AbstractPreparedBatchStatement(String sql, Connection connection,
+            BindPlan bindPlan) throws SQLException
     {
         _statement = connection.prepareStatement(sql);
+        _bindPlan = bindPlan;
+    }
+
+    /**
+     * Binds the value to the given parameter with the binder planned for its
+     * data type.
+     * @since 2.7.5
+     */
+    protected void bind(int index, Object value, DataType dataType)
+            throws TypeCastException, SQLException
+    {
+        _bindPlan.bind(_statement, index, value, dataType);
     }
 
     public void close() throws SQLException
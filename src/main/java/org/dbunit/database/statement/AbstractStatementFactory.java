@@ -24,7 +24,6 @@ package org.dbunit.database.statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
 
 import java.sql.SQLException;
@@ -50,7 +49,7 @@ public abstract class AbstractStatementFactory implements IStatementFactory
     {
         logger.debug("supportBatchStatement(connection={}) - start", connection);
 
-        if (connection.getConfig().getFeature(DatabaseConfig.FEATURE_BATCHED_STATEMENTS))
+        if (connection.getConfig().getSnapshot().isBatchedStatements())
         {
             return connection.getConnection().getMetaData().supportsBatchUpdates();
         }
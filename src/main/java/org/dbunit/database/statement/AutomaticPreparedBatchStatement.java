@@ -29,6 +29,17 @@ import org.dbunit.dataset.datatype.TypeCastException;
 import java.sql.SQLException;
 
 /**
+ * Executes the batch of the decorated statement automatically every
+ * <code>threshold</code> rows.
+ * <p>
+ * A batch is also executed before it would exceed the byte limit, if one is
+ * given. The size of the next row is estimated from the largest row seen so
+ * far, each value is estimated from its type, see
+ * {@link #estimateSize(Object, DataType)}. In adaptive mode the row threshold
+ * is doubled while batches execute quickly and halved when they become slow,
+ * within {@link #MIN_THRESHOLD} and {@link #MAX_THRESHOLD} rows. The sizes
+ * chosen are available through the getters and logged on close.
+ *
  * @author Manuel Laflamme
  * @since Jun 12, 2003
  * @version $Revision$
@@ -41,15 +52,164 @@ public class AutomaticPreparedBatchStatement implements IPreparedBatchStatement
      */
     private static final Logger logger = LoggerFactory.getLogger(AutomaticPreparedBatchStatement.class);
 
+    public static final int MIN_THRESHOLD = 10;
+    public static final int MAX_THRESHOLD = 10000;
+
+    /** Execution time in milliseconds adaptive batches aim at */
+    static final long TARGET_BATCH_MILLIS = 100;
+
+    /** Estimated size of a value besides its content */
+    static final int VALUE_OVERHEAD = 4;
+
     private final IPreparedBatchStatement _statement;
+    private final long _byteLimit;
+    private final boolean _adaptive;
     private int _batchCount = 0;
     private int _threshold;
     private int _result = 0;
 
+    private int _pendingRows = 0;
+    private long _pendingBytes = 0;
+    private long _rowBytes = 0;
+    private long _maxRowBytes = 0;
+
+    private int _executionCount = 0;
+    private int _maxBatchRows = 0;
+    private long _maxBatchBytes = 0;
+
     public AutomaticPreparedBatchStatement(IPreparedBatchStatement statement, int threshold)
+    {
+        this(statement, threshold, 0, false);
+    }
+
+    /**
+     * @param statement The decorated statement
+     * @param threshold The number of rows executed in one batch, the
+     * initial number in adaptive mode
+     * @param byteLimit The estimated number of bytes a batch must not
+     * exceed, <code>0</code> for no limit
+     * @param adaptive <code>true</code> to adjust the threshold from the
+     * observed batch execution time
+     * @since 2.7.5
+     */
+    public AutomaticPreparedBatchStatement(IPreparedBatchStatement statement,
+            int threshold, long byteLimit, boolean adaptive)
     {
         _statement = statement;
         _threshold = threshold;
+        _byteLimit = byteLimit;
+        _adaptive = adaptive;
+    }
+
+    /**
+     * @return The current number of rows that triggers a batch execution
+     * @since 2.7.5
+     */
+    public int getThreshold()
+    {
+        return _threshold;
+    }
+
+    /**
+     * @return The byte limit of a batch, <code>0</code> if there is none
+     * @since 2.7.5
+     */
+    public long getByteLimit()
+    {
+        return _byteLimit;
+    }
+
+    /**
+     * @return The number of batches executed automatically
+     * @since 2.7.5
+     */
+    public int getExecutionCount()
+    {
+        return _executionCount;
+    }
+
+    /**
+     * @return The largest number of rows executed in one batch
+     * @since 2.7.5
+     */
+    public int getMaxBatchRows()
+    {
+        return _maxBatchRows;
+    }
+
+    /**
+     * @return The largest estimated byte size executed in one batch
+     * @since 2.7.5
+     */
+    public long getMaxBatchBytes()
+    {
+        return _maxBatchBytes;
+    }
+
+    /**
+     * Estimates the number of bytes sent for a value.
+     *
+     * @param value The value
+     * @param dataType The data type of the value
+     * @return The estimated size in bytes
+     * @since 2.7.5
+     */
+    public static long estimateSize(Object value, DataType dataType)
+    {
+        if (value == null)
+        {
+            return VALUE_OVERHEAD;
+        }
+        if (value instanceof byte[])
+        {
+            return VALUE_OVERHEAD + ((byte[])value).length;
+        }
+        if (value instanceof String)
+        {
+            // numbers and dates given as text are converted before binding
+            if (dataType != null && dataType.isNumber())
+            {
+                return VALUE_OVERHEAD + 8;
+            }
+            return VALUE_OVERHEAD + ((String)value).length();
+        }
+        if (value instanceof Number || value instanceof java.util.Date
+                || value instanceof Boolean)
+        {
+            return VALUE_OVERHEAD + 8;
+        }
+        return VALUE_OVERHEAD + value.toString().length();
+    }
+
+    private void execute() throws SQLException
+    {
+        long start = System.currentTimeMillis();
+        _result += _statement.executeBatch();
+        long time = System.currentTimeMillis() - start;
+
+        _executionCount++;
+        _maxBatchRows = Math.max(_maxBatchRows, _pendingRows);
+        _maxBatchBytes = Math.max(_maxBatchBytes, _pendingBytes);
+
+        // Only full batches tell something about the row threshold
+        if (_adaptive && _pendingRows >= _threshold)
+        {
+            if (time < TARGET_BATCH_MILLIS / 2 && _threshold < MAX_THRESHOLD)
+            {
+                _threshold = Math.min(_threshold * 2, MAX_THRESHOLD);
+                logger.debug("Batch of {} ms, raising threshold to {}",
+                        String.valueOf(time), String.valueOf(_threshold));
+            }
+            else if (time > TARGET_BATCH_MILLIS * 2 && _threshold > MIN_THRESHOLD)
+            {
+                _threshold = Math.max(_threshold / 2, MIN_THRESHOLD);
+                logger.debug("Batch of {} ms, lowering threshold to {}",
+                        String.valueOf(time), String.valueOf(_threshold));
+            }
+        }
+
+        _pendingRows = 0;
+        _pendingBytes = 0;
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -61,6 +221,10 @@ public class AutomaticPreparedBatchStatement implements IPreparedBatchStatement
         logger.debug("addValue(value={}, dataType={}) - start", value, dataType);
 
         _statement.addValue(value, dataType);
+        if (_byteLimit > 0)
+        {
+            _rowBytes += estimateSize(value, dataType);
+        }
     }
 
     public void addBatch() throws SQLException
@@ -69,10 +233,19 @@ public class AutomaticPreparedBatchStatement implements IPreparedBatchStatement
 
         _statement.addBatch();
         _batchCount++;
+        _pendingRows++;
+        _pendingBytes += _rowBytes;
+        _maxRowBytes = Math.max(_maxRowBytes, _rowBytes);
+        _rowBytes = 0;
 
-        if (_batchCount % _threshold == 0)
+        if (_pendingRows >= _threshold)
         {
-            _result += _statement.executeBatch();
+            execute();
+        }
+        else if (_byteLimit > 0 && _pendingBytes + _maxRowBytes > _byteLimit)
+        {
+            // the next row would probably not fit anymore
+            execute();
         }
     }
 
@@ -80,7 +253,14 @@ public class AutomaticPreparedBatchStatement implements IPreparedBatchStatement
     {
         logger.debug("executeBatch() - start");
 
-        _result += _statement.executeBatch();
+        if (_pendingRows > 0)
+        {
+            execute();
+        }
+        else
+        {
+            _result += _statement.executeBatch();
+        }
         return _result;
     }
 
@@ -90,12 +270,23 @@ public class AutomaticPreparedBatchStatement implements IPreparedBatchStatement
 
         _statement.clearBatch();
         _batchCount = 0;
+        _result = 0;
+        _pendingRows = 0;
+        _pendingBytes = 0;
+        _rowBytes = 0;
     }
 
     public void close() throws SQLException
     {
         logger.debug("close() - start");
 
+        if (_executionCount > 0 && logger.isDebugEnabled())
+        {
+            logger.debug("Batch sizes: threshold={}, byteLimit={}, executions={}, maxRows={}, maxBytes={}",
+                    new Object[] {String.valueOf(_threshold), String.valueOf(_byteLimit),
+                    String.valueOf(_executionCount), String.valueOf(_maxBatchRows),
+                    String.valueOf(_maxBatchBytes)});
+        }
         _statement.close();
     }
 }
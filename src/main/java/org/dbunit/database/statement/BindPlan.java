@@ -0,0 +1,122 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * The {@link ValueBinder} of every parameter of a prepared statement. The
+ * binders are created when the first row is bound, since the operations add
+ * the values of every row in the same column order with the same data types.
+ * A binder is only replaced if a different data type is given for its
+ * parameter.
+ * <p>
+ * The plan can bind string values of some data type categories as they are,
+ * see {@link ValueBinder#getInstance(DataType, Collection)}.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class BindPlan
+{
+    private ValueBinder[] _binders = new ValueBinder[16];
+    private final Collection _rawStringCategories;
+
+    /**
+     * Creates a plan binding all values through their data type.
+     */
+    public BindPlan()
+    {
+        _rawStringCategories = Collections.EMPTY_SET;
+    }
+
+    /**
+     * @param rawStringCategories The data type categories whose string values
+     * are bound as they are, like {@link ValueBinder#CATEGORY_NUMBERS}
+     */
+    public BindPlan(String[] rawStringCategories)
+    {
+        _rawStringCategories = rawStringCategories == null
+                ? Collections.EMPTY_SET
+                : new HashSet(Arrays.asList(rawStringCategories));
+    }
+
+    /**
+     * Binds the value with the binder of the given parameter.
+     *
+     * @param statement The statement
+     * @param index The parameter index, starting with 1
+     * @param value The value
+     * @param dataType The data type of the value
+     */
+    public void bind(PreparedStatement statement, int index, Object value,
+            DataType dataType) throws TypeCastException, SQLException
+    {
+        getBinder(index, dataType).bind(statement, index, value);
+    }
+
+    /**
+     * Returns whether string values of the given data type may be bound as
+     * they are, so reading them ahead must not cast them.
+     */
+    public boolean isRawStringBound(DataType dataType)
+    {
+        if (_rawStringCategories.isEmpty())
+        {
+            return false;
+        }
+        String category = ValueBinder.getCategory(dataType);
+        return category != null && _rawStringCategories.contains(category);
+    }
+
+    /**
+     * Returns the binder of the given parameter, created for the given data
+     * type if there is none yet.
+     */
+    public ValueBinder getBinder(int index, DataType dataType)
+    {
+        if (index >= _binders.length)
+        {
+            ValueBinder[] binders = new ValueBinder[Math.max(index + 1,
+                    _binders.length * 2)];
+            System.arraycopy(_binders, 0, binders, 0, _binders.length);
+            _binders = binders;
+        }
+
+        ValueBinder binder = _binders[index];
+        if (binder == null || binder.getDataType() != dataType)
+        {
+            binder = ValueBinder.getInstance(dataType, _rawStringCategories);
+            _binders[index] = binder;
+        }
+        return binder;
+    }
+}
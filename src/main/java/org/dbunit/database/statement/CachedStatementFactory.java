@@ -0,0 +1,428 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statement factory decorator that keeps prepared statements open across
+ * executions. Statements are cached per JDBC connection and SQL string.
+ * Closing a statement obtained from this factory only clears its pending
+ * batch and returns it to the cache, so the next operation on the same
+ * table does not prepare it again. A statement closed after a failed call or
+ * in the middle of a row is closed and removed from the cache instead.
+ * <p>
+ * The number of open statements is bounded, the least recently used
+ * statement is closed when the bound is exceeded. Statements of closed
+ * connections are dropped. Call {@link #clear()} to close all cached
+ * statements, for example before closing the connection.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class CachedStatementFactory implements IStatementFactory
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(CachedStatementFactory.class);
+
+    public static final int DEFAULT_MAX_OPEN_STATEMENTS = 100;
+
+    private final IStatementFactory _factory;
+    private final int _maxOpenStatements;
+    private final Map _cache;
+
+    private int _hitCount;
+    private int _missCount;
+
+    /**
+     * Creates a cache for statements of a {@link PreparedStatementFactory}.
+     */
+    public CachedStatementFactory()
+    {
+        this(new PreparedStatementFactory(), DEFAULT_MAX_OPEN_STATEMENTS);
+    }
+
+    /**
+     * @param factory The factory creating the statements
+     * @param maxOpenStatements The maximum number of cached open statements
+     */
+    public CachedStatementFactory(IStatementFactory factory, int maxOpenStatements)
+    {
+        if (factory == null) {
+            throw new NullPointerException(
+                    "The parameter 'factory' must not be null");
+        }
+        if (maxOpenStatements < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of open statements must be positive but is "
+                    + maxOpenStatements);
+        }
+
+        _factory = factory;
+        _maxOpenStatements = maxOpenStatements;
+        _cache = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                if (size() > _maxOpenStatements)
+                {
+                    ((CacheEntry)eldest.getValue()).evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The number of statements served from the cache
+     */
+    public synchronized int getHitCount()
+    {
+        return _hitCount;
+    }
+
+    /**
+     * @return The number of statements that had to be prepared
+     */
+    public synchronized int getMissCount()
+    {
+        return _missCount;
+    }
+
+    /**
+     * @return The number of statements currently held by the cache
+     */
+    public synchronized int getOpenStatementCount()
+    {
+        return _cache.size();
+    }
+
+    /**
+     * Closes all cached statements. Statements currently in use are closed
+     * when they are released.
+     */
+    public synchronized void clear() throws SQLException
+    {
+        logger.debug("clear() - start");
+
+        List entries = new ArrayList(_cache.values());
+        _cache.clear();
+        for (Iterator i = entries.iterator(); i.hasNext();)
+        {
+            ((CacheEntry)i.next()).evict();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IStatementFactory interface
+
+    public IBatchStatement createBatchStatement(IDatabaseConnection connection)
+            throws SQLException
+    {
+        logger.debug("createBatchStatement(connection={}) - start", connection);
+
+        return _factory.createBatchStatement(connection);
+    }
+
+    public IPreparedBatchStatement createPreparedBatchStatement(String sql,
+            IDatabaseConnection connection) throws SQLException
+    {
+        logger.debug("createPreparedBatchStatement(sql={}, connection={}) - start", sql, connection);
+
+        Connection jdbcConnection = connection.getConnection();
+        CacheKey key = new CacheKey(jdbcConnection, sql);
+
+        synchronized (this)
+        {
+            CacheEntry entry = (CacheEntry)_cache.get(key);
+            if (entry != null)
+            {
+                if (entry.isInUse())
+                {
+                    // Same statement needed twice at once, do not share it
+                    _missCount++;
+                    return _factory.createPreparedBatchStatement(sql, connection);
+                }
+                _hitCount++;
+                entry.setInUse(true);
+                return new CachedPreparedBatchStatement(entry);
+            }
+
+            _missCount++;
+            removeClosedConnections();
+        }
+
+        IPreparedBatchStatement statement =
+                _factory.createPreparedBatchStatement(sql, connection);
+        CacheEntry entry = new CacheEntry(statement);
+        entry.setInUse(true);
+        synchronized (this)
+        {
+            if (!_cache.containsKey(key))
+            {
+                _cache.put(key, entry);
+                return new CachedPreparedBatchStatement(entry);
+            }
+        }
+
+        // Another thread cached the same statement meanwhile
+        return statement;
+    }
+
+    private void removeClosedConnections() throws SQLException
+    {
+        for (Iterator i = _cache.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry mapEntry = (Map.Entry)i.next();
+            CacheKey key = (CacheKey)mapEntry.getKey();
+            if (key.getConnection().isClosed())
+            {
+                i.remove();
+                ((CacheEntry)mapEntry.getValue()).evict();
+            }
+        }
+    }
+
+    /**
+     * Removes the entry from the cache and closes its statement.
+     */
+    private synchronized void discard(CacheEntry entry) throws SQLException
+    {
+        _cache.values().remove(entry);
+        entry.setInUse(false);
+        entry.close();
+    }
+
+    private synchronized void release(CacheEntry entry) throws SQLException
+    {
+        entry.setInUse(false);
+        if (entry.isEvicted())
+        {
+            entry.close();
+        }
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_factory=").append(_factory);
+        sb.append(", _maxOpenStatements=").append(_maxOpenStatements);
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Identifies a statement by the identity of its connection and its SQL.
+     */
+    private static class CacheKey
+    {
+        private final Connection _connection;
+        private final String _sql;
+
+        CacheKey(Connection connection, String sql)
+        {
+            _connection = connection;
+            _sql = sql;
+        }
+
+        Connection getConnection()
+        {
+            return _connection;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof CacheKey))
+                return false;
+            CacheKey other = (CacheKey)obj;
+            return _connection == other._connection && _sql.equals(other._sql);
+        }
+
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(_connection) + _sql.hashCode();
+        }
+    }
+
+    /**
+     * A cached statement and its state.
+     */
+    private static class CacheEntry
+    {
+        private final IPreparedBatchStatement _statement;
+        private boolean _inUse;
+        private boolean _evicted;
+
+        CacheEntry(IPreparedBatchStatement statement)
+        {
+            _statement = statement;
+        }
+
+        IPreparedBatchStatement getStatement()
+        {
+            return _statement;
+        }
+
+        boolean isInUse()
+        {
+            return _inUse;
+        }
+
+        void setInUse(boolean inUse)
+        {
+            _inUse = inUse;
+        }
+
+        boolean isEvicted()
+        {
+            return _evicted;
+        }
+
+        /**
+         * Marks this entry as removed from the cache and closes the statement
+         * unless it is in use.
+         */
+        void evict()
+        {
+            _evicted = true;
+            if (!_inUse)
+            {
+                try
+                {
+                    close();
+                }
+                catch (SQLException e)
+                {
+                    logger.warn("Cannot close evicted statement", e);
+                }
+            }
+        }
+
+        void close() throws SQLException
+        {
+            _statement.close();
+        }
+    }
+
+    /**
+     * The statement handed out by the cache. Closing it returns the cached
+     * statement to the cache.
+     */
+    private class CachedPreparedBatchStatement implements IPreparedBatchStatement
+    {
+        private final CacheEntry _entry;
+        private final IPreparedBatchStatement _statement;
+        private boolean _closed;
+        /** A call failed or a row is incomplete, the statement must not be reused */
+        private boolean _dirty;
+
+        CachedPreparedBatchStatement(CacheEntry entry)
+        {
+            _entry = entry;
+            _statement = entry.getStatement();
+        }
+
+        public void addValue(Object value, DataType dataType)
+                throws TypeCastException, SQLException
+        {
+            // Stays dirty until the row is complete
+            _dirty = true;
+            _statement.addValue(value, dataType);
+        }
+
+        public void addBatch() throws SQLException
+        {
+            _dirty = true;
+            _statement.addBatch();
+            _dirty = false;
+        }
+
+        public int executeBatch() throws SQLException
+        {
+            _dirty = true;
+            int result = _statement.executeBatch();
+            _dirty = false;
+            return result;
+        }
+
+        public void clearBatch() throws SQLException
+        {
+            _dirty = true;
+            _statement.clearBatch();
+            _dirty = false;
+        }
+
+        public void close() throws SQLException
+        {
+            if (_closed)
+            {
+                return;
+            }
+            _closed = true;
+
+            if (_dirty)
+            {
+                logger.debug("Discarding statement left in an unknown state");
+                discard(_entry);
+                return;
+            }
+
+            boolean cleared = false;
+            try
+            {
+                _statement.clearBatch();
+                cleared = true;
+            }
+            finally
+            {
+                if (cleared)
+                {
+                    release(_entry);
+                }
+                else
+                {
+                    discard(_entry);
+                }
+            }
+        }
+    }
+}
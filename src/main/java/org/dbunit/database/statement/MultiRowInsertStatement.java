@@ -0,0 +1,234 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepared batch statement that buffers the rows added with
+ * {@link #addBatch()} and sends them as one multi-row insert statement once
+ * the rows-per-statement count is reached. The statement for a full chunk is
+ * prepared only once and reused for all following full chunks, the remaining
+ * rows are sent with a dedicated statement by {@link #executeBatch()}.
+ * <p>
+ * Since the values are bound later, {@link #addValue(Object, DataType)}
+ * casts them right away, so that a {@link TypeCastException} is thrown for
+ * the column it belongs to. String values the {@link BindPlan} binds as they
+ * are stay uncast.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ * @see MultiRowInsertStatementFactory
+ */
+public class MultiRowInsertStatement implements IPreparedBatchStatement
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MultiRowInsertStatement.class);
+
+    private final Connection _connection;
+    private final String _prefix;
+    private final String _rowTemplate;
+    private final String _suffix;
+    private final int _columnCount;
+    private final int _rowsPerStatement;
+
+    private final Object[] _values;
+    private final DataType[] _dataTypes;
+    private final BindPlan _bindPlan;
+    private int _valueCount;
+    private int _rowCount;
+    private int _result;
+
+    /** Statement for a full chunk, prepared on first use */
+    private PreparedStatement _chunkStatement;
+
+    MultiRowInsertStatement(String prefix, String rowTemplate, String suffix,
+            int columnCount, int rowsPerStatement, Connection connection,
+            BindPlan bindPlan)
+    {
+        _connection = connection;
+        _bindPlan = bindPlan;
+        _prefix = prefix;
+        _rowTemplate = rowTemplate;
+        _suffix = suffix;
+        _columnCount = columnCount;
+        _rowsPerStatement = rowsPerStatement;
+        _values = new Object[columnCount * rowsPerStatement];
+        _dataTypes = new DataType[columnCount * rowsPerStatement];
+    }
+
+    /**
+     * @return The number of rows that are sent in one full statement
+     */
+    public int getRowsPerStatement()
+    {
+        return _rowsPerStatement;
+    }
+
+    /**
+     * @param rowCount The number of rows
+     * @return The multi-row insert statement for the given number of rows
+     */
+    String getSql(int rowCount)
+    {
+        StringBuilder sqlBuffer = new StringBuilder(_prefix.length()
+                + rowCount * (_rowTemplate.length() + 2) + _suffix.length());
+        sqlBuffer.append(_prefix);
+        for (int i = 0; i < rowCount; i++)
+        {
+            if (i > 0)
+            {
+                sqlBuffer.append(", ");
+            }
+            sqlBuffer.append(_rowTemplate);
+        }
+        sqlBuffer.append(_suffix);
+        return sqlBuffer.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IPreparedBatchStatement interface
+
+    public void addValue(Object value, DataType dataType)
+            throws TypeCastException, SQLException
+    {
+        logger.debug("addValue(value={}, dataType={}) - start", value, dataType);
+
+        if (value != null && value != ITable.NO_VALUE
+                && !_bindPlan.isRawStringBound(dataType))
+        {
+            value = dataType.typeCast(value);
+        }
+        _values[_valueCount] = value;
+        _dataTypes[_valueCount] = dataType;
+        _valueCount++;
+    }
+
+    public void addBatch() throws SQLException
+    {
+        logger.debug("addBatch() - start");
+
+        _rowCount++;
+        if (_rowCount == _rowsPerStatement)
+        {
+            if (_chunkStatement == null)
+            {
+                _chunkStatement = _connection.prepareStatement(getSql(_rowsPerStatement));
+            }
+            execute(_chunkStatement);
+        }
+    }
+
+    public int executeBatch() throws SQLException
+    {
+        logger.debug("executeBatch() - start");
+
+        if (_rowCount > 0)
+        {
+            PreparedStatement statement = _connection.prepareStatement(getSql(_rowCount));
+            try
+            {
+                execute(statement);
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+
+        int result = _result;
+        _result = 0;
+        return result;
+    }
+
+    public void clearBatch() throws SQLException
+    {
+        logger.debug("clearBatch() - start");
+
+        reset();
+    }
+
+    public void close() throws SQLException
+    {
+        logger.debug("close() - start");
+
+        reset();
+        if (_chunkStatement != null)
+        {
+            _chunkStatement.close();
+            _chunkStatement = null;
+        }
+    }
+
+    private void execute(PreparedStatement statement) throws SQLException
+    {
+        if (_valueCount != _rowCount * _columnCount)
+        {
+            throw new SQLException("Expected " + (_rowCount * _columnCount)
+                    + " values for " + _rowCount + " rows but got " + _valueCount);
+        }
+
+        int i = 0;
+        try
+        {
+            for (; i < _valueCount; i++)
+            {
+                _bindPlan.bind(statement, i + 1, _values[i], _dataTypes[i]);
+            }
+        }
+        catch (TypeCastException e)
+        {
+            // Only raw string bound values are still cast here
+            SQLException sqlException = new SQLException("Error casting value '"
+                    + _values[i] + "' of row " + (i / _columnCount + 1)
+                    + " and column " + (i % _columnCount + 1)
+                    + " of multi-row insert statement: " + e.getMessage());
+            sqlException.initCause(e);
+            throw sqlException;
+        }
+        _result += statement.executeUpdate();
+        reset();
+    }
+
+    private void reset()
+    {
+        for (int i = 0; i < _valueCount; i++)
+        {
+            _values[i] = null;
+            _dataTypes[i] = null;
+        }
+        _valueCount = 0;
+        _rowCount = 0;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.sql.SQLException;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
+import org.dbunit.database.IDatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statement factory that turns the single row <code>insert into t (...)
+ * values (?, ...)</code> statements generated by the insert operation into
+ * multi-row <code>insert into t (...) values (...), (...), ...</code>
+ * statements. A clause following the values, like
+ * <code>on duplicate key update</code>, is kept at the end of the statement.
+ * Every other statement is created like the {@link PreparedStatementFactory}
+ * does.
+ * <p>
+ * The number of rows sent per statement is bounded by the configured
+ * rows-per-statement count or, when not given, by
+ * {@link DatabaseConfig#PROPERTY_BATCH_SIZE}. It is further limited so that
+ * a single statement never exceeds {@link #MAX_PARAMETERS_PER_STATEMENT}
+ * bound parameters. Select it with
+ * <code>config.setProperty(DatabaseConfig.PROPERTY_STATEMENT_FACTORY,
+ * new MultiRowInsertStatementFactory())</code>.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class MultiRowInsertStatementFactory extends PreparedStatementFactory
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MultiRowInsertStatementFactory.class);
+
+    /**
+     * Upper bound of the placeholders in one statement. This is the limit of
+     * the MySQL client/server protocol.
+     */
+    public static final int MAX_PARAMETERS_PER_STATEMENT = 65535;
+
+    private static final String INSERT_PREFIX = "insert into ";
+    private static final String VALUES_CLAUSE = ") values (";
+
+    private final int _rowsPerStatement;
+
+    /**
+     * Creates a factory that uses {@link DatabaseConfig#PROPERTY_BATCH_SIZE}
+     * as the number of rows per statement.
+     */
+    public MultiRowInsertStatementFactory()
+    {
+        this(0);
+    }
+
+    /**
+     * @param rowsPerStatement The maximum number of rows sent in one insert
+     * statement. A value less than 1 means that
+     * {@link DatabaseConfig#PROPERTY_BATCH_SIZE} is used instead.
+     */
+    public MultiRowInsertStatementFactory(int rowsPerStatement)
+    {
+        _rowsPerStatement = rowsPerStatement;
+    }
+
+    public IPreparedBatchStatement createPreparedBatchStatement(String sql,
+            IDatabaseConnection connection) throws SQLException
+    {
+        logger.debug("createPreparedBatchStatement(sql={}, connection={}) - start", sql, connection);
+
+        int valuesIndex = getValuesClauseIndex(sql);
+        int rowStart = valuesIndex + VALUES_CLAUSE.length() - 1;
+        int rowEnd = valuesIndex < 0 ? -1 : sql.indexOf(')', rowStart);
+        if (rowEnd < 0 || !isParameterRow(sql, rowStart + 1, rowEnd)
+                || sql.indexOf('?', rowEnd) >= 0)
+        {
+            return super.createPreparedBatchStatement(sql, connection);
+        }
+
+        String prefix = sql.substring(0, valuesIndex + 1) + " values ";
+        String rowTemplate = sql.substring(rowStart, rowEnd + 1);
+        String suffix = sql.substring(rowEnd + 1);
+        int columnCount = countParameters(rowTemplate);
+
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        int rowsPerStatement = _rowsPerStatement;
+        if (rowsPerStatement < 1)
+        {
+            rowsPerStatement = config.getBatchSize();
+        }
+        if (columnCount > 0)
+        {
+            rowsPerStatement = Math.min(rowsPerStatement,
+                    MAX_PARAMETERS_PER_STATEMENT / columnCount);
+        }
+        rowsPerStatement = Math.max(rowsPerStatement, 1);
+
+        return new MultiRowInsertStatement(prefix, rowTemplate, suffix,
+                columnCount, rowsPerStatement, connection.getConnection(),
+                new BindPlan(config.getRawStringBinding()));
+    }
+
+    /**
+     * @return The index of the <code>") values ("</code> clause of the given
+     * single row insert statement or <code>-1</code> if the statement is not
+     * an insert statement that can be rewritten.
+     */
+    static int getValuesClauseIndex(String sql)
+    {
+        if (!sql.regionMatches(true, 0, INSERT_PREFIX, 0, INSERT_PREFIX.length()))
+        {
+            return -1;
+        }
+        return sql.toLowerCase().indexOf(VALUES_CLAUSE);
+    }
+
+    /**
+     * @return <code>true</code> if the given part of the statement only
+     * consists of parameter markers and separators
+     */
+    private static boolean isParameterRow(String sql, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            char c = sql.charAt(i);
+            if (c != '?' && c != ',' && c != ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countParameters(String rowTemplate)
+    {
+        int count = 0;
+        for (int i = 0; i < rowTemplate.length(); i++)
+        {
+            if (rowTemplate.charAt(i) == '?')
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_rowsPerStatement=").append(_rowsPerStatement);
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -24,7 +24,6 @@ package org.dbunit.database.statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.datatype.DataType;
 import org.dbunit.dataset.datatype.TypeCastException;
 
@@ -53,6 +52,13 @@ public class PreparedBatchStatement extends AbstractPreparedBatchStatement
         _index = 0;
     }
 
+    PreparedBatchStatement(String sql, Connection connection,
+            BindPlan bindPlan) throws SQLException
+    {
+        super(sql, connection, bindPlan);
+        _index = 0;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // IPreparedBatchStatement interface
 
@@ -61,19 +67,7 @@ public class PreparedBatchStatement extends AbstractPreparedBatchStatement
     {
         logger.debug("addValue(value={}, dataType={}) - start", value, dataType);
 
-        // Special NULL handling
-        if (value == null || value == ITable.NO_VALUE)
-        {
-            String sqlTypeName = dataType.getSqlTypeName();
-            if (sqlTypeName == null) {
-                _statement.setNull(++_index, dataType.getSqlType());
-            } else {
-                _statement.setNull(++_index, dataType.getSqlType(), sqlTypeName);
-            }
-            return;
-        }
-
-        dataType.setSqlValue(value, ++_index, _statement);
+        bind(++_index, value, dataType);
     }
 
     public void addBatch() throws SQLException
@@ -101,6 +95,7 @@ public class PreparedBatchStatement extends AbstractPreparedBatchStatement
     {
         logger.debug("clearBatch() - start");
         _statement.clearBatch();
+        _index = 0;
     }
 }
 
@@ -24,7 +24,7 @@ package org.dbunit.database.statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
 import org.dbunit.database.IDatabaseConnection;
 
 import java.sql.SQLException;
@@ -66,18 +66,22 @@ public class PreparedStatementFactory extends AbstractStatementFactory
     		logger.debug("createPreparedBatchStatement(sql={}, connection={}) - start", sql, connection);
     	}
     	
-    	Integer batchSize = (Integer)connection.getConfig().getProperty(DatabaseConfig.PROPERTY_BATCH_SIZE);
+    	DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
 
+        BindPlan bindPlan = new BindPlan(config.getRawStringBinding());
         IPreparedBatchStatement statement = null;
         if (supportBatchStatement(connection))
         {
-            statement = new PreparedBatchStatement(sql, connection.getConnection());
+            statement = new PreparedBatchStatement(sql, connection.getConnection(),
+                    bindPlan);
         }
         else
         {
-            statement = new SimplePreparedStatement(sql, connection.getConnection());
+            statement = new SimplePreparedStatement(sql, connection.getConnection(),
+                    bindPlan);
         }
-        return new AutomaticPreparedBatchStatement(statement, batchSize.intValue());
+        return new AutomaticPreparedBatchStatement(statement, config.getBatchSize(),
+                config.getBatchByteLimit(), config.isAdaptiveBatchSize());
     }
 }
 
@@ -44,7 +44,7 @@ public class SimpleStatement extends AbstractBatchStatement
 
     private final List _list = new ArrayList();
 
-    SimpleStatement(Connection connection) throws SQLException
+    public SimpleStatement(Connection connection) throws SQLException
     {
         super(connection);
     }
@@ -0,0 +1,503 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.BigIntegerDataType;
+import org.dbunit.dataset.datatype.BytesDataType;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DateDataType;
+import org.dbunit.dataset.datatype.IntegerDataType;
+import org.dbunit.dataset.datatype.LongDataType;
+import org.dbunit.dataset.datatype.NumberDataType;
+import org.dbunit.dataset.datatype.StringDataType;
+import org.dbunit.dataset.datatype.TimestampDataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.dataset.datatype.UuidAwareBytesDataType;
+
+/**
+ * Binds the values of one column to a prepared statement. The binder is
+ * chosen once for the data type of the column. It calls the typed setter
+ * directly for the value classes the dataset producers deliver, like plain
+ * decimal strings for integer columns, and leaves all other values to
+ * {@link DataType#setSqlValue(Object, int, PreparedStatement)}.
+ * <p>
+ * Fast paths exist only for the exact built-in data type classes, so data
+ * types of the database extensions and user defined ones always bind through
+ * their own implementation.
+ * <p>
+ * For the data type categories enabled by
+ * {@link org.dbunit.database.DatabaseConfig#PROPERTY_RAW_STRING_BINDING},
+ * string values are bound as they are with <code>setString</code>, leaving
+ * the conversion to the database. Relative dates, time zone suffixes and
+ * binary values still go through the data type.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ * @see BindPlan
+ */
+public abstract class ValueBinder
+{
+    /** Data types that are {@link DataType#isNumber() numbers} */
+    public static final String CATEGORY_NUMBERS = "numbers";
+
+    /** Data types that are {@link DataType#isDateTime() dates or times} */
+    public static final String CATEGORY_TEMPORAL = "temporal";
+
+    /** Character data types, subclasses of {@link StringDataType} */
+    public static final String CATEGORY_STRINGS = "strings";
+
+    /** The longest digit count that always fits into an int */
+    private static final int MAX_INT_DIGITS = 9;
+
+    /** The longest digit count that always fits into a long */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    protected final DataType _dataType;
+    protected final int _sqlType;
+    protected final String _sqlTypeName;
+
+    protected ValueBinder(DataType dataType)
+    {
+        _dataType = dataType;
+        _sqlType = dataType.getSqlType();
+        _sqlTypeName = dataType.getSqlTypeName();
+    }
+
+    /**
+     * Returns the binder for the given data type.
+     */
+    public static ValueBinder getInstance(DataType dataType)
+    {
+        Class dataTypeClass = dataType.getClass();
+        if (dataTypeClass == StringDataType.class)
+        {
+            return new StringBinder(dataType);
+        }
+        if (dataTypeClass == IntegerDataType.class)
+        {
+            return new IntegerBinder(dataType);
+        }
+        if (dataTypeClass == LongDataType.class)
+        {
+            return new LongBinder(dataType);
+        }
+        if (dataTypeClass == BigIntegerDataType.class)
+        {
+            return new BigIntegerBinder(dataType);
+        }
+        if (dataTypeClass == NumberDataType.class)
+        {
+            return new NumberBinder(dataType);
+        }
+        if (dataTypeClass == TimestampDataType.class)
+        {
+            return new TimestampBinder(dataType);
+        }
+        if (dataTypeClass == DateDataType.class)
+        {
+            return new DateBinder(dataType);
+        }
+        if (dataTypeClass == BytesDataType.class
+                || dataTypeClass == UuidAwareBytesDataType.class)
+        {
+            return new BytesBinder(dataType);
+        }
+        return new DataTypeBinder(dataType);
+    }
+
+    /**
+     * Returns the binder for the given data type, binding string values
+     * as they are if the category of the data type is one of the given ones.
+     *
+     * @param dataType The data type
+     * @param rawStringCategories The categories like {@link #CATEGORY_NUMBERS}
+     * @since 2.7.5
+     */
+    public static ValueBinder getInstance(DataType dataType,
+            Collection rawStringCategories)
+    {
+        ValueBinder binder = getInstance(dataType);
+        if (!rawStringCategories.isEmpty())
+        {
+            String category = getCategory(dataType);
+            if (category != null && rawStringCategories.contains(category))
+            {
+                return new RawStringBinder(binder, category);
+            }
+        }
+        return binder;
+    }
+
+    /**
+     * Returns the raw string binding category of the data type or
+     * <code>null</code> if it has none.
+     */
+    static String getCategory(DataType dataType)
+    {
+        if (dataType.isNumber())
+        {
+            return CATEGORY_NUMBERS;
+        }
+        if (dataType.isDateTime())
+        {
+            return CATEGORY_TEMPORAL;
+        }
+        if (dataType instanceof StringDataType)
+        {
+            return CATEGORY_STRINGS;
+        }
+        return null;
+    }
+
+    /**
+     * @return The data type this binder was created for
+     */
+    public DataType getDataType()
+    {
+        return _dataType;
+    }
+
+    /**
+     * Binds the given value to the parameter at the given index.
+     */
+    public void bind(PreparedStatement statement, int index, Object value)
+            throws TypeCastException, SQLException
+    {
+        // Special NULL handling
+        if (value == null || value == ITable.NO_VALUE)
+        {
+            if (_sqlTypeName == null) {
+                statement.setNull(index, _sqlType);
+            } else {
+                statement.setNull(index, _sqlType, _sqlTypeName);
+            }
+            return;
+        }
+
+        if (!bindValue(statement, index, value))
+        {
+            _dataType.setSqlValue(value, index, statement);
+        }
+    }
+
+    /**
+     * Binds a value that is not null if this binder has a fast path for it.
+     * @return <code>false</code> if the value must be bound by the data type
+     */
+    protected abstract boolean bindValue(PreparedStatement statement,
+            int index, Object value) throws SQLException;
+
+    /**
+     * Returns true if the string is an optionally negative integer of at most
+     * the given number of digits.
+     */
+    static boolean isSimpleInteger(String value, int maxDigits)
+    {
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > maxDigits)
+        {
+            return false;
+        }
+        for (int i = start; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the string is a plain date, time or timestamp like
+     * <code>2008-01-31 12:00:00.5</code>, without relative date syntax or a
+     * time zone suffix, which the database cannot parse.
+     */
+    static boolean isPlainTemporal(String value)
+    {
+        int length = value.length();
+        if (length == 0 || value.charAt(0) < '0' || value.charAt(0) > '9')
+        {
+            return false;
+        }
+        for (int i = 1; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c == '-')
+            {
+                // date separators only, not a zone offset
+                if (i != 4 && i != 7)
+                {
+                    return false;
+                }
+            }
+            else if ((c < '0' || c > '9') && c != ':' && c != '.' && c != ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the string is not empty and has no surrounding
+     * whitespace.
+     */
+    static boolean isTrimmed(String value)
+    {
+        int length = value.length();
+        return length > 0 && value.charAt(0) > ' '
+                && value.charAt(length - 1) > ' ';
+    }
+
+    private static class RawStringBinder extends ValueBinder
+    {
+        private final ValueBinder _binder;
+        private final String _category;
+
+        RawStringBinder(ValueBinder binder, String category)
+        {
+            super(binder.getDataType());
+            _binder = binder;
+            _category = category;
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof String && isRawString((String)value))
+            {
+                statement.setString(index, (String)value);
+                return true;
+            }
+            return _binder.bindValue(statement, index, value);
+        }
+
+        private boolean isRawString(String value)
+        {
+            if (_category == CATEGORY_TEMPORAL)
+            {
+                return isPlainTemporal(value);
+            }
+            if (_category == CATEGORY_NUMBERS)
+            {
+                return isTrimmed(value);
+            }
+            return true;
+        }
+    }
+
+    private static class DataTypeBinder extends ValueBinder
+    {
+        DataTypeBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value)
+        {
+            return false;
+        }
+    }
+
+    private static class StringBinder extends ValueBinder
+    {
+        StringBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof String)
+            {
+                statement.setString(index, (String)value);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class IntegerBinder extends ValueBinder
+    {
+        IntegerBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof Integer)
+            {
+                statement.setInt(index, ((Integer)value).intValue());
+                return true;
+            }
+            if (value instanceof String
+                    && isSimpleInteger((String)value, MAX_INT_DIGITS))
+            {
+                statement.setInt(index, Integer.parseInt((String)value));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class LongBinder extends ValueBinder
+    {
+        LongBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof Long || value instanceof Integer)
+            {
+                statement.setLong(index, ((Number)value).longValue());
+                return true;
+            }
+            if (value instanceof String
+                    && isSimpleInteger((String)value, MAX_LONG_DIGITS))
+            {
+                statement.setLong(index, Long.parseLong((String)value));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class BigIntegerBinder extends ValueBinder
+    {
+        BigIntegerBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof Long || value instanceof Integer)
+            {
+                statement.setBigDecimal(index,
+                        BigDecimal.valueOf(((Number)value).longValue()));
+                return true;
+            }
+            if (value instanceof String
+                    && isSimpleInteger((String)value, MAX_LONG_DIGITS))
+            {
+                statement.setBigDecimal(index,
+                        BigDecimal.valueOf(Long.parseLong((String)value)));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class NumberBinder extends ValueBinder
+    {
+        NumberBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof BigDecimal)
+            {
+                statement.setBigDecimal(index, (BigDecimal)value);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class TimestampBinder extends ValueBinder
+    {
+        TimestampBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof java.sql.Timestamp)
+            {
+                statement.setTimestamp(index, (java.sql.Timestamp)value);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class DateBinder extends ValueBinder
+    {
+        DateBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof java.sql.Date)
+            {
+                statement.setDate(index, (java.sql.Date)value);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class BytesBinder extends ValueBinder
+    {
+        BytesBinder(DataType dataType)
+        {
+            super(dataType);
+        }
+
+        protected boolean bindValue(PreparedStatement statement, int index,
+                Object value) throws SQLException
+        {
+            if (value instanceof byte[])
+            {
+                statement.setObject(index, value, _sqlType);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -28,7 +28,7 @@ import org.slf4j.LoggerFactory;
  * @version $Revision$
  * @since Feb 17, 2002
  */
-public abstract class AbstractTable implements ITable {
+public abstract class AbstractTable implements IIndexedTable {
 
     /**
      * Logger for this class
@@ -36,6 +36,25 @@ public abstract class AbstractTable implements ITable {
     private static final Logger logger =
             LoggerFactory.getLogger(AbstractTable.class);
 
+    /**
+     * Returns the value of the column at the given position by its name.
+     * Subclasses with direct access to their values should override this.
+     * @since 2.7.5
+     */
+    public Object getValue(int row, int column) throws DataSetException {
+        return getValue(row,
+                getTableMetaData().getColumns()[column].getColumnName());
+    }
+
+    /**
+     * Default implementation based on {@link #getRowCount()}. Tables that
+     * do not know their row count override it.
+     * @since 2.7.5
+     */
+    public boolean hasRow(int row) throws DataSetException {
+        return row >= 0 && row < getRowCount();
+    }
+
     protected void assertValidRowIndex(int row) throws DataSetException {
         if (logger.isDebugEnabled()) {
             logger.debug("assertValidRowIndex(row={}) - start", Integer
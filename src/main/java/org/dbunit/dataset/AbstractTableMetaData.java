@@ -28,8 +28,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
-import org.dbunit.DatabaseUnitRuntimeException;
-import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.datatype.IDataTypeFactory;
 import org.dbunit.dataset.datatype.IDbProductRelatable;
@@ -118,28 +117,21 @@ public abstract class AbstractTableMetaData implements ITableMetaData
 	public IDataTypeFactory getDataTypeFactory(IDatabaseConnection connection) 
 	throws SQLException 
 	{
-		DatabaseConfig config = connection.getConfig();
-		Object factoryObj = config.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
-		if(!IDataTypeFactory.class.isAssignableFrom(factoryObj.getClass())) {
-		    String msg = "Invalid datatype factory configured. Class '" + 
-                        factoryObj.getClass() + "' does not implement '" + IDataTypeFactory.class + "'.";
-		    if(factoryObj instanceof String){
-		        msg += " Ensure not to specify the fully qualified class name as String but the concrete " +
-		        		"instance of the datatype factory (for example 'new OracleDataTypeFactory()').";
-		    }
-		    // TODO Would a "DatabaseUnitConfigurationException make more sense?
-		    throw new DatabaseUnitRuntimeException(msg);
-		}
-        IDataTypeFactory dataTypeFactory = (IDataTypeFactory)factoryObj;
+		DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        IDataTypeFactory dataTypeFactory = config.getDataTypeFactory();
         
     	// Validate, e.g. oracle metaData + oracleDataTypeFactory ==> OK
+        // Once per configuration and connection is enough
         Connection jdbcConnection = connection.getConnection();
-        DatabaseMetaData metaData = jdbcConnection.getMetaData();
-    	String validationMessage = validateDataTypeFactory(dataTypeFactory, metaData);
-    	if(validationMessage!=null){
-            // Inform the user that we think he could get trouble with the current configuration
-            logger.warn("Potential problem found: " + validationMessage);
-    	}
+        if (config.markDataTypeFactoryValidated(jdbcConnection))
+        {
+            DatabaseMetaData metaData = jdbcConnection.getMetaData();
+            String validationMessage = validateDataTypeFactory(dataTypeFactory, metaData);
+            if(validationMessage!=null){
+                // Inform the user that we think he could get trouble with the current configuration
+                logger.warn("Potential problem found: " + validationMessage);
+            }
+        }
 
     	return dataTypeFactory;
 	}
@@ -286,4 +286,95 @@ public class DataSetUtils
         return newArray;
 	}
 
+    /**
+     * Returns the given table if it supports access by column position,
+     * otherwise a view of it that accesses the values by column name.
+     *
+     * @param table The table
+     * @return The table with access by column position
+     * @since 2.7.5
+     */
+    public static IIndexedTable getIndexedTable(ITable table)
+    {
+        if (table instanceof IIndexedTable)
+        {
+            return (IIndexedTable)table;
+        }
+        return new IndexedTableAdapter(table);
+    }
+
+    /**
+     * Resolves the positions of the given columns in the given table metadata.
+     *
+     * @param metaData The metadata of the table the positions refer to
+     * @param columns The columns to look up by name
+     * @return The index of each column in {@link ITableMetaData#getColumns()}
+     * @throws NoSuchColumnException if a column does not exist in the table
+     * @since 2.7.5
+     */
+    public static int[] getColumnIndexes(ITableMetaData metaData, Column[] columns)
+            throws DataSetException
+    {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            indexes[i] = metaData.getColumnIndex(columns[i].getColumnName());
+        }
+        return indexes;
+    }
+
+    /**
+     * Accesses a table without support for column positions by column name.
+     */
+    private static class IndexedTableAdapter extends AbstractTable
+    {
+        private final ITable _table;
+
+        IndexedTableAdapter(ITable table)
+        {
+            _table = table;
+        }
+
+        public ITableMetaData getTableMetaData()
+        {
+            return _table.getTableMetaData();
+        }
+
+        public int getRowCount()
+        {
+            return _table.getRowCount();
+        }
+
+        public Object getValue(int row, String column) throws DataSetException
+        {
+            return _table.getValue(row, column);
+        }
+
+        public boolean hasRow(int row) throws DataSetException
+        {
+            try
+            {
+                return super.hasRow(row);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                // Unknown row count, only the values can tell
+            }
+
+            Column[] columns = getTableMetaData().getColumns();
+            if (row < 0 || columns.length == 0)
+            {
+                return false;
+            }
+            try
+            {
+                _table.getValue(row, columns[0].getColumnName());
+                return true;
+            }
+            catch (RowOutOfBoundsException e)
+            {
+                return false;
+            }
+        }
+    }
 }
@@ -83,30 +83,42 @@ public class DefaultTable extends AbstractTable
     {
         logger.debug("addTableRows(table={}) - start", table);
 
-        try
+        Column[] columns = _metaData.getColumns();
+        if (columns.length <= 0)
         {
-            Column[] columns = _metaData.getColumns();
-            if (columns.length <= 0)
+        	logger.warn("The table '" + table + "' does not have any columns. Cannot add table rows. This should never happen...");
+        	return;
+        }
+        
+        // Resolve the column positions in the source table only once,
+        // unknown columns are left to the lookup by name
+        IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+        ITableMetaData sourceMetaData = table.getTableMetaData();
+        int[] columnIndexes = new int[columns.length];
+        for (int j = 0; j < columns.length; j++)
+        {
+            try
             {
-            	logger.warn("The table '" + table + "' does not have any columns. Cannot add table rows. This should never happen...");
-            	return;
+                columnIndexes[j] = sourceMetaData.getColumnIndex(
+                        columns[j].getColumnName());
             }
-            
-            for (int i = 0; ; i++)
+            catch (NoSuchColumnException e)
             {
-                Object[] rowValues = new Object[columns.length];
-                for (int j = 0; j < columns.length; j++)
-                {
-                    Column column = columns[j];
-                    rowValues[j] = table.getValue(i, column.getColumnName());
-                }
-                _rowList.add(rowValues);
+                columnIndexes[j] = -1;
             }
         }
-        catch(RowOutOfBoundsException e)
+
+        for (int i = 0; indexedTable.hasRow(i); i++)
         {
-            // end of table
-        	// ignore error.
+            Object[] rowValues = new Object[columns.length];
+            for (int j = 0; j < columns.length; j++)
+            {
+                int columnIndex = columnIndexes[j];
+                rowValues[j] = columnIndex < 0
+                        ? table.getValue(i, columns[j].getColumnName())
+                        : indexedTable.getValue(i, columnIndex);
+            }
+            _rowList.add(rowValues);
         }
     }
 
@@ -159,6 +171,14 @@ public class DefaultTable extends AbstractTable
         return rowValues[getColumnIndex(column)];
     }
 
+    public Object getValue(int row, int column) throws DataSetException
+    {
+        assertValidRowIndex(row, _rowList.size());
+
+        Object[] rowValues = (Object[])_rowList.get(row);
+        return rowValues[column];
+    }
+
     public String toString()
     {
     	StringBuilder sb = new StringBuilder();
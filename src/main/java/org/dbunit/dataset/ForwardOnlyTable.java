@@ -28,7 +28,7 @@ import org.slf4j.LoggerFactory;
  * @since Apr 9, 2003
  * @version $Revision$
  */
-public class ForwardOnlyTable implements ITable
+public class ForwardOnlyTable implements IIndexedTable
 {
 
     /**
@@ -37,11 +37,13 @@ public class ForwardOnlyTable implements ITable
     private static final Logger logger = LoggerFactory.getLogger(ForwardOnlyTable.class);
 
     private final ITable _table;
+    private final IIndexedTable _indexedTable;
     private int _lastRow = -1;
 
     public ForwardOnlyTable(ITable table)
     {
         _table = table;
+        _indexedTable = DataSetUtils.getIndexedTable(table);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -70,4 +72,28 @@ public class ForwardOnlyTable implements ITable
         _lastRow = row;
         return _table.getValue(row, column);
     }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IIndexedTable interface
+
+    public Object getValue(int row, int column) throws DataSetException
+    {
+        if (row < _lastRow)
+        {
+            throw new UnsupportedOperationException("Cannot go backward!");
+        }
+
+        _lastRow = row;
+        return _indexedTable.getValue(row, column);
+    }
+
+    public boolean hasRow(int row) throws DataSetException
+    {
+        if (row < _lastRow)
+        {
+            throw new UnsupportedOperationException("Cannot go backward!");
+        }
+
+        return _indexedTable.hasRow(row);
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.dataset;
+
+/**
+ * A table whose values can be accessed by column position and whose end can
+ * be detected with {@link #hasRow(int)}. Code reading many
+ * rows resolves the column positions once with
+ * {@link ITableMetaData#getColumnIndex(String)} and then avoids the column
+ * name lookup for every value.
+ * <p>
+ * All tables extending {@link AbstractTable} implement this interface, other
+ * tables can be adapted with {@link DataSetUtils#getIndexedTable(ITable)}.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public interface IIndexedTable extends ITable
+{
+    /**
+     * Returns this table value for the specified row and column position.
+     * @param row The row index, starting with 0
+     * @param column The index of the column in {@link ITableMetaData#getColumns()}
+     * @return The value
+     *
+     * @throws RowOutOfBoundsException if specified row is less than zero or
+     * equals or greater than <code>getRowCount</code>
+     */
+    public Object getValue(int row, int column) throws DataSetException;
+
+    /**
+     * Returns whether this table has the specified row. Unlike
+     * {@link #getValue(int, int)} this does not throw at the end of the table,
+     * so loops over tables that do not know their row count end without
+     * an exception. Forward only tables move to the specified row.
+     * @param row The row index, starting with 0
+     * @return <code>true</code> if the row exists
+     * @since 2.7.5
+     */
+    public boolean hasRow(int row) throws DataSetException;
+}
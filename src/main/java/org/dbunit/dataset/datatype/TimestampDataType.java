@@ -107,6 +107,12 @@ public class TimestampDataType extends AbstractDataType
                 }
             }
 
+            Timestamp parsed = parseTimestamp(stringValue);
+            if (parsed != null)
+            {
+                return parsed;
+            }
+
             String zoneValue = null;
 
             Matcher tzMatcher = TIMEZONE_REGEX.matcher(stringValue);
@@ -171,6 +177,216 @@ public class TimestampDataType extends AbstractDataType
         throw new TypeCastException(value, this);
     }
 
+    /**
+     * Parses the common timestamp formats <code>yyyy-MM-dd</code> and
+     * <code>yyyy-MM-dd HH:mm:ss[.fffffffff]</code>, each with an optional
+     * <code>+HHmm</code> or <code>-HHmm</code> zone suffix, in one pass
+     * without regular expressions or big numbers. The result is the same as
+     * the one of the general parsing in {@link #typeCast(Object)}.
+     *
+     * @return The timestamp or <code>null</code> if the value is not in one
+     * of these formats or close to a time zone transition, in which case the
+     * general parsing must be used
+     */
+    static Timestamp parseTimestamp(String value)
+    {
+        int length = value.length();
+
+        // Zone suffix like the TIMEZONE_REGEX: a non word character
+        // followed by [+-][0-2][0-9][0-5][0-9] at the end
+        int zoneMillis = 0;
+        boolean hasZone = false;
+        if (length >= 16)
+        {
+            char sign = value.charAt(length - 5);
+            if ((sign == '+' || sign == '-')
+                    && isDigit(value, length - 4, '2')
+                    && isDigit(value, length - 3, '9')
+                    && isDigit(value, length - 2, '5')
+                    && isDigit(value, length - 1, '9')
+                    && !isWordCharacter(value.charAt(length - 6)))
+            {
+                int hours = digit(value, length - 4) * 10 + digit(value, length - 3);
+                int minutes = digit(value, length - 2) * 10 + digit(value, length - 1);
+                zoneMillis = (hours * 3600 + minutes * 60) * 1000;
+                if (sign == '-')
+                {
+                    zoneMillis = -zoneMillis;
+                }
+                hasZone = true;
+                length -= 6;
+            }
+        }
+
+        // yyyy-MM-dd
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || !isDigits(value, 0, 4) || !isDigits(value, 5, 7)
+                || !isDigits(value, 8, 10))
+        {
+            return null;
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+
+        // Earlier dates use the Julian calendar and local mean times
+        if (year < 1900 || month < 1 || month > 12 || day < 1
+                || day > getDaysInMonth(year, month))
+        {
+            return null;
+        }
+
+        // HH:mm:ss[.fffffffff]
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nanos = 0;
+        if (length > 10)
+        {
+            if (length < 19 || value.charAt(10) != ' '
+                    || value.charAt(13) != ':' || value.charAt(16) != ':'
+                    || !isDigits(value, 11, 13) || !isDigits(value, 14, 16)
+                    || !isDigits(value, 17, 19))
+            {
+                return null;
+            }
+            hour = parseDigits(value, 11, 13);
+            minute = parseDigits(value, 14, 16);
+            second = parseDigits(value, 17, 19);
+            if (hour > 23 || minute > 59 || second > 59)
+            {
+                return null;
+            }
+
+            if (length > 19)
+            {
+                int fractionLength = length - 20;
+                if (value.charAt(19) != '.' || fractionLength < 1
+                        || fractionLength > 9 || !isDigits(value, 20, length))
+                {
+                    return null;
+                }
+                nanos = parseDigits(value, 20, length);
+                for (int i = fractionLength; i < 9; i++)
+                {
+                    nanos *= 10;
+                }
+            }
+        }
+
+        // The wall clock time as if it was UTC
+        long wallMillis = (getEpochDay(year, month, day) * 86400L
+                + hour * 3600 + minute * 60 + second) * 1000L;
+
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!hasConstantOffset(timeZone, wallMillis))
+        {
+            return null;
+        }
+        long time = wallMillis
+                - timeZone.getOffset(wallMillis - timeZone.getRawOffset());
+        if (hasZone)
+        {
+            // The general parsing converts the local time back into the
+            // wall clock time, only the zone offset remains. It truncates
+            // negative times differently, leave these to it.
+            if (time < 0 || wallMillis - zoneMillis < 0)
+            {
+                return null;
+            }
+            time = wallMillis - zoneMillis;
+        }
+
+        Timestamp timestamp = new Timestamp(time);
+        timestamp.setNanos(nanos);
+        return timestamp;
+    }
+
+    /** Window without offset change required around a local time */
+    private static final long TRANSITION_MARGIN_MILLIS = 26L * 3600 * 1000;
+
+    /**
+     * Returns true if the zone offset does not change around the given wall
+     * clock time, so it maps to exactly one instant.
+     */
+    private static boolean hasConstantOffset(TimeZone timeZone, long wallMillis)
+    {
+        long standardMillis = wallMillis - timeZone.getRawOffset();
+        int offset = timeZone.getOffset(standardMillis);
+        return timeZone.getOffset(standardMillis - TRANSITION_MARGIN_MILLIS) == offset
+                && timeZone.getOffset(standardMillis + TRANSITION_MARGIN_MILLIS) == offset;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given date of the
+     * proleptic Gregorian calendar.
+     */
+    private static long getEpochDay(int year, int month, int day)
+    {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int getDaysInMonth(int year, int month)
+    {
+        switch (month)
+        {
+        case 2:
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    private static boolean isWordCharacter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isDigit(String value, int index, char max)
+    {
+        char c = value.charAt(index);
+        return c >= '0' && c <= max;
+    }
+
+    private static boolean isDigits(String value, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (!isDigit(value, i, '9'))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digit(String value, int index)
+    {
+        return value.charAt(index) - '0';
+    }
+
+    private static int parseDigits(String value, int start, int end)
+    {
+        int result = 0;
+        for (int i = start; i < end; i++)
+        {
+            result = result * 10 + digit(value, i);
+        }
+        return result;
+    }
+
     @Override
     public boolean isDateTime()
     {
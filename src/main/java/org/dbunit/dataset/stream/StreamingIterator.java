@@ -233,6 +233,11 @@ public class StreamingIterator implements ITableIterator
             if(logger.isDebugEnabled())
                 logger.debug("getValue(row={}, columnName={}) - start", Integer.toString(row), columnName);
 
+            return getValue(row, getColumnIndex(columnName));
+        }
+
+        public boolean hasRow(int row) throws DataSetException
+        {
             // Iterate up to specified row
             while (!_eot && row > _lastRow)
             {
@@ -244,12 +249,17 @@ public class StreamingIterator implements ITableIterator
                 throw new UnsupportedOperationException("Cannot go backward!");
             }
 
-            if (_eot || row > _lastRow)
+            return !_eot && row >= 0 && row == _lastRow;
+        }
+
+        public Object getValue(int row, int columnIndex) throws DataSetException
+        {
+            if (!hasRow(row))
             {
                 throw new RowOutOfBoundsException(row + " > " + _lastRow);
             }
 
-            return _rowValues[getColumnIndex(columnName)];
+            return _rowValues[columnIndex];
         }
 
         public String toString()
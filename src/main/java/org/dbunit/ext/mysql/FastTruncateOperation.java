@@ -0,0 +1,167 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.ext.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.operation.AbstractOperation;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Truncates all tables of the dataset with foreign key and unique checks
+ * switched off for the session. Since MySQL does not check the foreign keys
+ * the tables can be truncated in any order, no dependency sorting is needed
+ * and no row is deleted one by one.
+ * <p>
+ * An operation that follows the truncation, typically an insert, can be run
+ * while the checks are still off. The previous values of
+ * <code>FOREIGN_KEY_CHECKS</code> and <code>UNIQUE_CHECKS</code> are restored
+ * at the end, also when an error occurs.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class FastTruncateOperation extends AbstractOperation
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(FastTruncateOperation.class);
+
+    public static final DatabaseOperation TRUNCATE_TABLE =
+            new FastTruncateOperation();
+
+    public static final DatabaseOperation CLEAN_INSERT =
+            new FastTruncateOperation(DatabaseOperation.INSERT);
+
+    private final DatabaseOperation _followingOperation;
+
+    /**
+     * Creates an operation that only truncates the tables.
+     */
+    public FastTruncateOperation()
+    {
+        this(DatabaseOperation.NONE);
+    }
+
+    /**
+     * @param followingOperation The operation executed after the truncation
+     * while the checks are still switched off
+     */
+    public FastTruncateOperation(DatabaseOperation followingOperation)
+    {
+        _followingOperation = followingOperation;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DatabaseOperation class
+
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+            throws DatabaseUnitException, SQLException
+    {
+        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+
+        IDataSet databaseDataSet = connection.createDataSet();
+
+        // Use database table names, required to support case sensitive database
+        Set tableNames = new LinkedHashSet();
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next())
+        {
+            String tableName = iterator.getTableMetaData().getTableName();
+            ITableMetaData databaseMetaData = databaseDataSet.getTableMetaData(tableName);
+            tableNames.add(databaseMetaData.getTableName());
+        }
+
+        Statement statement = connection.getConnection().createStatement();
+        try
+        {
+            String foreignKeyChecks = "1";
+            String uniqueChecks = "1";
+            ResultSet resultSet = statement.executeQuery(
+                    "SELECT @@SESSION.FOREIGN_KEY_CHECKS, @@SESSION.UNIQUE_CHECKS");
+            try
+            {
+                if (resultSet.next())
+                {
+                    foreignKeyChecks = resultSet.getString(1);
+                    uniqueChecks = resultSet.getString(2);
+                }
+            }
+            finally
+            {
+                resultSet.close();
+            }
+
+            statement.execute("SET FOREIGN_KEY_CHECKS = 0, UNIQUE_CHECKS = 0");
+            try
+            {
+                for (Iterator i = tableNames.iterator(); i.hasNext();)
+                {
+                    String sql = "truncate table " + getQualifiedName(
+                            connection.getDatabase(), (String)i.next(), connection);
+                    logger.debug("Executing SQL: {}", sql);
+                    statement.execute(sql);
+                }
+
+                _followingOperation.execute(connection, dataSet);
+            }
+            finally
+            {
+                statement.execute("SET FOREIGN_KEY_CHECKS = " + toFlag(foreignKeyChecks)
+                        + ", UNIQUE_CHECKS = " + toFlag(uniqueChecks));
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private static String toFlag(String value)
+    {
+        return "0".equals(value) || "OFF".equalsIgnoreCase(value) ? "0" : "1";
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_followingOperation=").append(_followingOperation);
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.ext.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfigSnapshot;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.BindPlan;
+import org.dbunit.database.statement.MultiRowInsertStatementFactory;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.IIndexedTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoPrimaryKeyException;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.operation.AbstractOperation;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates the database from the dataset contents like
+ * {@link DatabaseOperation#UPDATE}, but sends the rows of a table in chunks
+ * instead of one <code>update ... where pk = ?</code> per row. Each chunk is
+ * a derived table of <code>select</code>s combined with
+ * <code>union all</code> that is joined to the target table on the primary
+ * key:
+ * <pre>
+ * update t join (select ? as id, ? as name union all select ?, ? ...) s
+ *     on t.id = s.id set t.name = s.name
+ * </pre>
+ * The statement for a full chunk is prepared once per table and reused, the
+ * remaining rows are sent with a dedicated statement. The chunk size is the
+ * configured batch size unless given explicitly, limited so a statement
+ * never exceeds
+ * {@link MultiRowInsertStatementFactory#MAX_PARAMETERS_PER_STATEMENT}.
+ * <p>
+ * Rows whose primary key does not exist are ignored, like with
+ * {@link DatabaseOperation#UPDATE}. If the same key appears more than once in
+ * a chunk, which of the rows is applied is undefined. Tables consisting of
+ * primary key columns only have nothing to update and are skipped.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class JoinedUpdateOperation extends AbstractOperation
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(JoinedUpdateOperation.class);
+
+    public static final DatabaseOperation UPDATE = new JoinedUpdateOperation();
+
+    private static final String TARGET_ALIAS = "t";
+    private static final String SOURCE_ALIAS = "s";
+
+    private final int _rowsPerStatement;
+
+    /**
+     * Creates an operation sending as many rows per statement as the
+     * configured batch size.
+     */
+    public JoinedUpdateOperation()
+    {
+        this(0);
+    }
+
+    /**
+     * @param rowsPerStatement The maximum number of rows sent in one update
+     * statement or <code>0</code> to use the configured batch size
+     */
+    public JoinedUpdateOperation(int rowsPerStatement)
+    {
+        _rowsPerStatement = rowsPerStatement;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DatabaseOperation class
+
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+            throws DatabaseUnitException, SQLException
+    {
+        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+
+        IDataSet databaseDataSet = connection.createDataSet();
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next())
+        {
+            ITable table = iterator.getTable();
+            String tableName = table.getTableMetaData().getTableName();
+            IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+
+            // Do not process empty table
+            if (!indexedTable.hasRow(0))
+            {
+                logger.debug("Skipping empty table {}", tableName);
+                continue;
+            }
+
+            ITableMetaData metaData = databaseDataSet.getTableMetaData(tableName);
+            Column[] primaryKeys = metaData.getPrimaryKeys();
+            if (primaryKeys.length == 0)
+            {
+                throw new NoPrimaryKeyException(metaData.getTableName());
+            }
+
+            // database column of each dataset column
+            Column[] datasetColumns = table.getTableMetaData().getColumns();
+            Column[] columns = new Column[datasetColumns.length];
+            boolean hasUpdateColumn = false;
+            for (int i = 0; i < datasetColumns.length; i++)
+            {
+                // throws NoSuchColumnException if not in the database
+                int index = metaData.getColumnIndex(datasetColumns[i].getColumnName());
+                columns[i] = metaData.getColumns()[index];
+                if (Columns.getColumn(columns[i].getColumnName(), primaryKeys) == null)
+                {
+                    hasUpdateColumn = true;
+                }
+            }
+            for (int i = 0; i < primaryKeys.length; i++)
+            {
+                if (Columns.getColumn(primaryKeys[i].getColumnName(), columns) == null)
+                {
+                    throw new DatabaseUnitException("Primary key column '"
+                            + primaryKeys[i].getColumnName() + "' of table '"
+                            + tableName + "' is missing in the dataset");
+                }
+            }
+            if (!hasUpdateColumn)
+            {
+                logger.debug("Skipping table {} without non key columns", tableName);
+                continue;
+            }
+
+            int rowsPerStatement = _rowsPerStatement;
+            if (rowsPerStatement < 1)
+            {
+                rowsPerStatement = config.getBatchSize();
+            }
+            rowsPerStatement = Math.max(1, Math.min(rowsPerStatement,
+                    MultiRowInsertStatementFactory.MAX_PARAMETERS_PER_STATEMENT
+                    / columns.length));
+
+            try
+            {
+                int updateCount = updateTable(connection, indexedTable,
+                        metaData.getTableName(), columns, primaryKeys,
+                        rowsPerStatement, new BindPlan(config.getRawStringBinding()));
+                logger.debug("Updated {} rows of table {}",
+                        String.valueOf(updateCount), tableName);
+            }
+            catch (SQLException e)
+            {
+                final String msg =
+                    "Exception processing table name='" + tableName + "'";
+                throw new DatabaseUnitException(msg, e);
+            }
+        }
+    }
+
+    /**
+     * Sends the rows of the table in chunks of the given size. The rows are
+     * read once and in order, so forward only tables are supported.
+     *
+     * @return The sum of the update counts
+     */
+    private int updateTable(IDatabaseConnection connection,
+            IIndexedTable table, String tableName, Column[] columns,
+            Column[] primaryKeys, int rowsPerStatement, BindPlan bindPlan)
+            throws DataSetException, TypeCastException, SQLException
+    {
+        Connection jdbcConnection = connection.getConnection();
+        DataType[] dataTypes = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            dataTypes[i] = columns[i].getDataType();
+        }
+
+        // values of the current chunk, copied while advancing so that
+        // forward only tables are never read backwards
+        Object[][] buffer = new Object[rowsPerStatement][columns.length];
+        int updateCount = 0;
+        PreparedStatement chunkStatement = null;
+        try
+        {
+            int row = 0;
+            while (table.hasRow(row))
+            {
+                int rowCount = 0;
+                while (rowCount < rowsPerStatement && table.hasRow(row))
+                {
+                    for (int column = 0; column < columns.length; column++)
+                    {
+                        buffer[rowCount][column] = table.getValue(row, column);
+                    }
+                    rowCount++;
+                    row++;
+                }
+
+                PreparedStatement statement;
+                if (rowCount == rowsPerStatement)
+                {
+                    if (chunkStatement == null)
+                    {
+                        chunkStatement = jdbcConnection.prepareStatement(getUpdateSql(
+                                tableName, columns, primaryKeys, rowCount, connection));
+                    }
+                    statement = chunkStatement;
+                }
+                else
+                {
+                    statement = jdbcConnection.prepareStatement(getUpdateSql(
+                            tableName, columns, primaryKeys, rowCount, connection));
+                }
+
+                try
+                {
+                    int index = 1;
+                    for (int i = 0; i < rowCount; i++)
+                    {
+                        for (int column = 0; column < columns.length; column++)
+                        {
+                            bindPlan.bind(statement, index, buffer[i][column],
+                                    dataTypes[column]);
+                            index++;
+                        }
+                    }
+                    updateCount += statement.executeUpdate();
+                }
+                finally
+                {
+                    if (statement != chunkStatement)
+                    {
+                        statement.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (chunkStatement != null)
+            {
+                chunkStatement.close();
+            }
+        }
+        return updateCount;
+    }
+
+    /**
+     * Builds the update statement joining the given number of rows to the
+     * table.
+     */
+    String getUpdateSql(String tableName, Column[] columns, Column[] primaryKeys,
+            int rowCount, IDatabaseConnection connection)
+    {
+        String[] columnNames = new String[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            columnNames[i] = getQualifiedName(null, columns[i].getColumnName(),
+                    connection);
+        }
+
+        StringBuilder sqlBuffer = new StringBuilder(128
+                + rowCount * (columns.length * 3 + 17));
+        sqlBuffer.append("update ");
+        sqlBuffer.append(getQualifiedName(connection.getDatabase(), tableName, connection));
+        sqlBuffer.append(" ").append(TARGET_ALIAS).append(" join (");
+
+        // derived table, the first select names the columns
+        for (int row = 0; row < rowCount; row++)
+        {
+            sqlBuffer.append(row > 0 ? " union all select " : "select ");
+            for (int i = 0; i < columns.length; i++)
+            {
+                if (i > 0)
+                {
+                    sqlBuffer.append(", ");
+                }
+                sqlBuffer.append("?");
+                if (row == 0)
+                {
+                    sqlBuffer.append(" as ").append(columnNames[i]);
+                }
+            }
+        }
+        sqlBuffer.append(") ").append(SOURCE_ALIAS);
+
+        // join on primary key
+        sqlBuffer.append(" on ");
+        for (int i = 0; i < primaryKeys.length; i++)
+        {
+            if (i > 0)
+            {
+                sqlBuffer.append(" and ");
+            }
+            String columnName = getQualifiedName(null,
+                    primaryKeys[i].getColumnName(), connection);
+            sqlBuffer.append(TARGET_ALIAS).append(".").append(columnName);
+            sqlBuffer.append(" = ");
+            sqlBuffer.append(SOURCE_ALIAS).append(".").append(columnName);
+        }
+
+        // set non key columns
+        sqlBuffer.append(" set ");
+        String separator = "";
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (Columns.getColumn(columns[i].getColumnName(), primaryKeys) == null)
+            {
+                sqlBuffer.append(separator);
+                sqlBuffer.append(TARGET_ALIAS).append(".").append(columnNames[i]);
+                sqlBuffer.append(" = ");
+                sqlBuffer.append(SOURCE_ALIAS).append(".").append(columnNames[i]);
+                separator = ", ";
+            }
+        }
+        return sqlBuffer.toString();
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_rowsPerStatement=").append(_rowsPerStatement);
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,671 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.ext.mysql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.IIndexedTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.operation.AbstractOperation;
+import org.dbunit.operation.CompositeOperation;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts the dataset contents using MySQL's
+ * <code>LOAD DATA LOCAL INFILE</code> statement. Each table is rendered into
+ * an in-memory tab separated stream which is handed to the driver through
+ * the <code>setLocalInfileInputStream(InputStream)</code> hook of the
+ * MySQL Connector/J statement, so no file is written to disk.
+ * <p>
+ * Values are converted with the {@link DataType} of the database column,
+ * <code>null</code> is sent as <code>\N</code> and tab, newline, carriage
+ * return, backslash and NUL are escaped. Columns without value
+ * ({@link ITable#NO_VALUE}) receive their column default, like with the
+ * {@link DatabaseOperation#INSERT} operation.
+ * <p>
+ * Since <code>LOCAL</code> turns duplicate keys and conversion errors into
+ * warnings, a table fails with a {@link DatabaseUnitException} when the
+ * loaded row count differs from the rows sent or the load raised warnings.
+ * <p>
+ * Dates, times and timestamps are written explicitly as
+ * <code>yyyy-MM-dd</code>, <code>HH:mm:ss.SSS</code> and
+ * <code>yyyy-MM-dd HH:mm:ss.SSSSSS</code>. Their wall clock value is taken in
+ * the JVM time zone, which is the zone dataset values are parsed in.
+ * <p>
+ * If the driver does not provide the stream hook, if the server has
+ * <code>local_infile</code> disabled or if the client refuses to send local
+ * data (Connector/J 8 defaults <code>allowLoadLocalInfile</code> to
+ * <code>false</code>), each table is inserted with
+ * {@link DatabaseOperation#INSERT} instead. The client setting is probed by
+ * loading an empty stream into the first table before any row is read.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class LoadDataOperation extends AbstractOperation
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LoadDataOperation.class);
+
+    public static final DatabaseOperation LOAD_DATA = new LoadDataOperation();
+
+    public static final DatabaseOperation CLEAN_LOAD_DATA =
+            new CompositeOperation(DatabaseOperation.DELETE_ALL, LOAD_DATA);
+
+    private static final String SET_STREAM_METHOD = "setLocalInfileInputStream";
+
+    /**
+     * Statement interfaces of the MySQL drivers providing the stream hook
+     */
+    private static final String[] STATEMENT_CLASSES = new String[] {
+        "com.mysql.cj.jdbc.JdbcStatement",
+        "com.mysql.jdbc.Statement"
+    };
+
+    /**
+     * Name of the user variable receiving the "use column default" mask
+     */
+    static final String DEFAULTS_VARIABLE = "@dbunit_defaults";
+
+    /**
+     * MySQL error codes reporting that local data loading is disabled
+     */
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+
+    /**
+     * The number of load warnings included in the exception message
+     */
+    private static final int MAX_REPORTED_WARNINGS = 5;
+
+    private final DatabaseOperation _fallbackOperation;
+
+    public LoadDataOperation()
+    {
+        this(DatabaseOperation.INSERT);
+    }
+
+    /**
+     * @param fallbackOperation The operation used per table when the local
+     * infile stream cannot be used
+     */
+    public LoadDataOperation(DatabaseOperation fallbackOperation)
+    {
+        _fallbackOperation = fallbackOperation;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DatabaseOperation class
+
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+            throws DatabaseUnitException, SQLException
+    {
+        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+
+        IDataSet databaseDataSet = connection.createDataSet();
+        Connection jdbcConnection = connection.getConnection();
+        Statement statement = jdbcConnection.createStatement();
+        try
+        {
+            Method streamHook = getStreamHook(statement);
+            boolean localInfile = streamHook != null && isLocalInfileEnabled(statement);
+            if (!localInfile)
+            {
+                logger.info("LOAD DATA LOCAL INFILE is not available on this "
+                        + "connection. Using {} instead.", _fallbackOperation);
+            }
+
+            boolean probed = false;
+            ITableIterator iterator = dataSet.iterator();
+            while (iterator.next())
+            {
+                ITable table = iterator.getTable();
+                if (!localInfile)
+                {
+                    _fallbackOperation.execute(connection, new DefaultDataSet(table));
+                    continue;
+                }
+
+                String tableName = table.getTableMetaData().getTableName();
+                ITableMetaData metaData =
+                        databaseDataSet.getTableMetaData(tableName);
+                String qualifiedTableName = getQualifiedName(
+                        connection.getDatabase(), metaData.getTableName(), connection);
+                if (!probed)
+                {
+                    probed = true;
+                    if (!isLocalInfileAccepted(streamHook, statement, qualifiedTableName))
+                    {
+                        logger.info("The driver refuses to send local data. "
+                                + "Using {} instead.", _fallbackOperation);
+                        localInfile = false;
+                        _fallbackOperation.execute(connection, new DefaultDataSet(table));
+                        continue;
+                    }
+                }
+
+                TableContent content = new TableContent(
+                        table.getTableMetaData().getColumns(), metaData);
+                content.addRows(table);
+                if (content.getRowCount() == 0)
+                {
+                    continue;
+                }
+
+                String sql = getLoadDataSql(content, qualifiedTableName, connection);
+                logger.debug("Loading {} rows: {}", content.getRowCount(), sql);
+                try
+                {
+                    setInputStream(streamHook, statement, content.getInputStream());
+                    statement.clearWarnings();
+                    statement.execute(sql);
+                    checkLoaded(statement, tableName, content.getRowCount());
+                }
+                catch (SQLException e)
+                {
+                    final String msg =
+                        "Exception processing table name='" + tableName + "'";
+                    throw new DatabaseUnitException(msg, e);
+                }
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    /**
+     * <code>LOCAL</code> implies <code>IGNORE</code>, so duplicate keys and
+     * conversion errors only raise warnings and skip or truncate rows. Fails
+     * like an insert would if not every row was loaded as it is.
+     *
+     * @param statement The statement that executed the load
+     * @param tableName The name of the loaded table
+     * @param rowCount The number of rows sent
+     */
+    static void checkLoaded(Statement statement, String tableName, int rowCount)
+            throws DatabaseUnitException, SQLException
+    {
+        int updateCount = statement.getUpdateCount();
+        SQLWarning warning = statement.getWarnings();
+        if (updateCount == rowCount && warning == null)
+        {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("Loaded ").append(updateCount).append(" of ").append(rowCount);
+        sb.append(" rows into table '").append(tableName).append("'");
+        for (int i = 0; warning != null && i < MAX_REPORTED_WARNINGS; i++)
+        {
+            sb.append(i == 0 ? ": " : "; ").append(warning.getMessage());
+            warning = warning.getNextWarning();
+        }
+        if (warning != null)
+        {
+            sb.append("; ...");
+        }
+        throw new DatabaseUnitException(sb.toString());
+    }
+
+    /**
+     * Builds the <code>LOAD DATA</code> statement for the given table content.
+     * Columns which have no value in some rows are loaded through a user
+     * variable and assigned the column default when the row's mask says so.
+     */
+    String getLoadDataSql(TableContent content, String qualifiedTableName,
+            IDatabaseConnection connection)
+    {
+        Column[] columns = content.getColumns();
+
+        StringBuilder sqlBuffer = new StringBuilder(128);
+        sqlBuffer.append("LOAD DATA LOCAL INFILE 'dbunit.tsv' INTO TABLE ");
+        sqlBuffer.append(qualifiedTableName);
+        sqlBuffer.append(" CHARACTER SET utf8mb4");
+        sqlBuffer.append(" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'");
+        sqlBuffer.append(" LINES TERMINATED BY '\\n'");
+
+        // field list
+        sqlBuffer.append(" (");
+        StringBuilder setBuffer = new StringBuilder();
+        for (int i = 0; i < columns.length; i++)
+        {
+            String columnName = getQualifiedName(null,
+                    columns[i].getColumnName(), connection);
+            if (content.isAlwaysDefault(i))
+            {
+                sqlBuffer.append("@dbunit_skip");
+            }
+            else if (content.isSometimesDefault(i))
+            {
+                String variable = "@dbunit_c" + i;
+                sqlBuffer.append(variable);
+
+                setBuffer.append(setBuffer.length() == 0 ? " SET " : ", ");
+                setBuffer.append(columnName).append(" = IF(SUBSTRING(");
+                setBuffer.append(DEFAULTS_VARIABLE).append(", ").append(i + 1);
+                setBuffer.append(", 1) = '1', DEFAULT(").append(columnName);
+                setBuffer.append("), ").append(variable).append(")");
+            }
+            else
+            {
+                sqlBuffer.append(columnName);
+            }
+            sqlBuffer.append(", ");
+        }
+        sqlBuffer.append(DEFAULTS_VARIABLE).append(")");
+        sqlBuffer.append(setBuffer);
+        return sqlBuffer.toString();
+    }
+
+    /**
+     * @return The driver method used to pass the input stream for the next
+     * <code>LOAD DATA LOCAL INFILE</code> or <code>null</code> if the
+     * statement does not support it.
+     */
+    static Method getStreamHook(Statement statement)
+    {
+        try
+        {
+            return statement.getClass().getMethod(SET_STREAM_METHOD, InputStream.class);
+        }
+        catch (NoSuchMethodException e)
+        {
+            logger.debug("Statement class {} has no {} method", statement.getClass(), SET_STREAM_METHOD);
+        }
+
+        // Statement might be wrapped by a pool
+        for (int i = 0; i < STATEMENT_CLASSES.length; i++)
+        {
+            try
+            {
+                Class statementClass = Class.forName(STATEMENT_CLASSES[i]);
+                if (statement.isWrapperFor(statementClass))
+                {
+                    return statementClass.getMethod(SET_STREAM_METHOD, InputStream.class);
+                }
+            }
+            catch (ClassNotFoundException e)
+            {
+                logger.trace("Driver class {} not available", STATEMENT_CLASSES[i]);
+            }
+            catch (NoSuchMethodException e)
+            {
+                logger.trace("Driver class {} has no stream hook", STATEMENT_CLASSES[i]);
+            }
+            catch (SQLException e)
+            {
+                logger.trace("Cannot unwrap statement", e);
+            }
+        }
+        return null;
+    }
+
+    private static void setInputStream(Method streamHook, Statement statement,
+            InputStream inputStream) throws SQLException
+    {
+        try
+        {
+            Object target = statement;
+            if (!streamHook.getDeclaringClass().isInstance(statement))
+            {
+                target = statement.unwrap(streamHook.getDeclaringClass());
+            }
+            streamHook.invoke(target, new Object[] {inputStream});
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new SQLException("Cannot set local infile input stream", e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new SQLException("Cannot set local infile input stream", e.getCause());
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the server accepts
+     * <code>LOAD DATA LOCAL INFILE</code>
+     */
+    static boolean isLocalInfileEnabled(Statement statement)
+    {
+        try
+        {
+            ResultSet resultSet = statement.executeQuery("SELECT @@local_infile");
+            try
+            {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+        }
+        catch (SQLException e)
+        {
+            logger.debug("Cannot read the local_infile server variable", e);
+            return false;
+        }
+    }
+
+    /**
+     * Loads an empty stream into the given table to find out whether the
+     * driver sends local data. Connector/J 8 refuses it unless the connection
+     * sets <code>allowLoadLocalInfile=true</code>.
+     *
+     * @return <code>true</code> if the empty load succeeded
+     */
+    static boolean isLocalInfileAccepted(Method streamHook, Statement statement,
+            String qualifiedTableName) throws DatabaseUnitException
+    {
+        try
+        {
+            setInputStream(streamHook, statement,
+                    new ByteArrayInputStream(new byte[0]));
+            statement.execute("LOAD DATA LOCAL INFILE 'dbunit.tsv' INTO TABLE "
+                    + qualifiedTableName);
+            return true;
+        }
+        catch (SQLException e)
+        {
+            if (isLocalInfileRejected(e))
+            {
+                logger.debug("Local infile rejected", e);
+                return false;
+            }
+            final String msg =
+                "Exception processing table name='" + qualifiedTableName + "'";
+            throw new DatabaseUnitException(msg, e);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the exception reports that the client or
+     * the server does not allow loading local data
+     */
+    static boolean isLocalInfileRejected(SQLException e)
+    {
+        if (e.getErrorCode() == ER_NOT_ALLOWED_COMMAND
+                || e.getErrorCode() == ER_CLIENT_LOCAL_FILES_DISABLED)
+        {
+            return true;
+        }
+        String message = e.getMessage();
+        if (message == null)
+        {
+            return false;
+        }
+        message = message.toLowerCase();
+        return message.contains("allowloadlocalinfile")
+                || message.contains("loading local data is disabled");
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_fallbackOperation=").append(_fallbackOperation);
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * The tab separated content of one table, rendered in the format expected
+     * by <code>FIELDS TERMINATED BY '\t' ESCAPED BY '\\'</code>. Each line
+     * ends with an additional field holding a <code>0</code>/<code>1</code>
+     * mask of the columns that must receive their default value.
+     */
+    static class TableContent
+    {
+        private static final byte[] NULL_FIELD = new byte[] {'\\', 'N'};
+
+        private static final DateTimeFormatter DATE_FORMAT =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        private static final DateTimeFormatter TIME_FORMAT =
+                DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+        private static final DateTimeFormatter TIMESTAMP_FORMAT =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+        private final String[] _columnNames;
+        private final Column[] _columns;
+        private final boolean[] _defaulted;
+        private final boolean[] _provided;
+        private final ByteArrayOutputStream _buffer = new ByteArrayOutputStream(8192);
+        private int _rowCount;
+
+        /**
+         * @param columns The columns of the dataset table
+         * @param metaData The metadata of the database table
+         */
+        TableContent(Column[] columns, ITableMetaData metaData) throws DataSetException
+        {
+            _columnNames = new String[columns.length];
+            _columns = new Column[columns.length];
+            for (int i = 0; i < columns.length; i++)
+            {
+                _columnNames[i] = columns[i].getColumnName();
+                // Throws NoSuchColumnException if the column does not exist
+                int index = metaData.getColumnIndex(_columnNames[i]);
+                _columns[i] = metaData.getColumns()[index];
+            }
+            _defaulted = new boolean[columns.length];
+            _provided = new boolean[columns.length];
+        }
+
+        Column[] getColumns()
+        {
+            return _columns;
+        }
+
+        int getRowCount()
+        {
+            return _rowCount;
+        }
+
+        boolean isAlwaysDefault(int column)
+        {
+            return _defaulted[column] && !_provided[column];
+        }
+
+        boolean isSometimesDefault(int column)
+        {
+            return _defaulted[column] && _provided[column];
+        }
+
+        byte[] toByteArray()
+        {
+            return _buffer.toByteArray();
+        }
+
+        InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(toByteArray());
+        }
+
+        void addRows(ITable table) throws DataSetException
+        {
+            IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+            for (int row = 0; indexedTable.hasRow(row); row++)
+            {
+                addRow(table, row);
+            }
+        }
+
+        void addRow(ITable table, int row) throws DataSetException
+        {
+            Object[] values = new Object[_columns.length];
+            for (int i = 0; i < _columns.length; i++)
+            {
+                values[i] = table.getValue(row, _columnNames[i]);
+            }
+
+            char[] mask = new char[_columns.length];
+            for (int i = 0; i < _columns.length; i++)
+            {
+                Column column = _columns[i];
+                Object value = values[i];
+                if (value == ITable.NO_VALUE || (value == null
+                        && column.isNotNullable() && column.hasDefaultValue()))
+                {
+                    _defaulted[i] = true;
+                    mask[i] = '1';
+                    _buffer.write(NULL_FIELD, 0, NULL_FIELD.length);
+                }
+                else
+                {
+                    _provided[i] = true;
+                    mask[i] = '0';
+                    writeValue(value, column);
+                }
+                _buffer.write('\t');
+            }
+            writeEscaped(new String(mask).getBytes(StandardCharsets.US_ASCII));
+            _buffer.write('\n');
+            _rowCount++;
+        }
+
+        private void writeValue(Object value, Column column) throws TypeCastException
+        {
+            DataType dataType = column.getDataType();
+            Object castValue;
+            try
+            {
+                castValue = dataType.typeCast(value);
+            }
+            catch (TypeCastException e)
+            {
+                throw new TypeCastException("Error casting value for column '"
+                        + column.getColumnName() + "'", e);
+            }
+
+            if (castValue == null)
+            {
+                _buffer.write(NULL_FIELD, 0, NULL_FIELD.length);
+            }
+            else if (castValue instanceof byte[])
+            {
+                writeEscaped((byte[])castValue);
+            }
+            else if (castValue instanceof Boolean)
+            {
+                _buffer.write(((Boolean)castValue).booleanValue() ? '1' : '0');
+            }
+            else if (dataType.isNumber() && castValue instanceof BigDecimal)
+            {
+                writeEscaped(((BigDecimal)castValue).toPlainString()
+                        .getBytes(StandardCharsets.US_ASCII));
+            }
+            else if (castValue instanceof Timestamp)
+            {
+                writeAscii(TIMESTAMP_FORMAT.format(
+                        ((Timestamp)castValue).toLocalDateTime()));
+            }
+            else if (castValue instanceof java.sql.Date)
+            {
+                writeAscii(DATE_FORMAT.format(
+                        ((java.sql.Date)castValue).toLocalDate()));
+            }
+            else if (castValue instanceof Time)
+            {
+                // Time.toLocalTime() drops the milliseconds
+                Time time = (Time)castValue;
+                writeAscii(TIME_FORMAT.format(time.toLocalTime()
+                        .withNano((int)Math.floorMod(time.getTime(), 1000L) * 1000000)));
+            }
+            else
+            {
+                // Strings and numbers render in a format MySQL accepts
+                writeEscaped(castValue.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeAscii(String value)
+        {
+            writeEscaped(value.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private void writeEscaped(byte[] bytes)
+        {
+            for (int i = 0; i < bytes.length; i++)
+            {
+                byte b = bytes[i];
+                switch (b)
+                {
+                case '\\':
+                    _buffer.write('\\');
+                    _buffer.write('\\');
+                    break;
+                case '\t':
+                    _buffer.write('\\');
+                    _buffer.write('t');
+                    break;
+                case '\n':
+                    _buffer.write('\\');
+                    _buffer.write('n');
+                    break;
+                case '\r':
+                    _buffer.write('\\');
+                    _buffer.write('r');
+                    break;
+                case 0:
+                    _buffer.write('\\');
+                    _buffer.write('0');
+                    break;
+                default:
+                    _buffer.write(b);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.dbunit.ext.mysql;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.dbunit.database.IBulkMetadataHandler;
+import org.dbunit.database.search.ForeignKeyRelationshipEdge;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.util.QualifiedTableName;
+import org.dbunit.util.SQLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MySQL metadata handler reading the columns of all tables of a schema with
+ * one <code>INFORMATION_SCHEMA.COLUMNS</code> query instead of one
+ * {@link DatabaseMetaData#getColumns(String, String, String, String)} call
+ * per table, and their primary keys with one
+ * <code>INFORMATION_SCHEMA.KEY_COLUMN_USAGE</code> query instead of one
+ * {@link DatabaseMetaData#getPrimaryKeys(String, String, String)} call per
+ * table. The foreign keys are read from the same table in one query.
+ * The table fingerprints are checksums of the <code>COLUMNS</code> and
+ * <code>KEY_COLUMN_USAGE</code> rows of each table computed by the server,
+ * so only one row per table is transferred.
+ * Register it with
+ * {@link org.dbunit.database.DatabaseConfig#PROPERTY_METADATA_HANDLER}.
+ * <p>
+ * The column types are mapped to JDBC types and type names the way
+ * MySQL Connector/J reports them with its default settings, so the
+ * {@link MySqlDataTypeFactory} creates the same data types as for the
+ * driver metadata. In particular <code>tinyint(1)</code> is reported as
+ * <code>BIT</code> and <code>year</code> as <code>DATE</code>.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class MySqlBulkMetadataHandler extends MySqlMetadataHandler
+        implements IBulkMetadataHandler
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MySqlBulkMetadataHandler.class);
+
+    static final String COLUMNS_QUERY = "select TABLE_SCHEMA, TABLE_NAME,"
+            + " COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, IS_NULLABLE,"
+            + " COLUMN_DEFAULT, COLUMN_COMMENT, EXTRA"
+            + " from INFORMATION_SCHEMA.COLUMNS";
+
+    static final String PRIMARY_KEYS_QUERY = "select TABLE_SCHEMA, TABLE_NAME,"
+            + " COLUMN_NAME from INFORMATION_SCHEMA.KEY_COLUMN_USAGE"
+            + " where CONSTRAINT_NAME = 'PRIMARY'";
+
+    static final String IMPORTED_KEYS_QUERY = "select TABLE_SCHEMA, TABLE_NAME,"
+            + " COLUMN_NAME, REFERENCED_TABLE_SCHEMA, REFERENCED_TABLE_NAME,"
+            + " REFERENCED_COLUMN_NAME from INFORMATION_SCHEMA.KEY_COLUMN_USAGE"
+            + " where REFERENCED_TABLE_NAME is not null";
+
+    static final String IMPORTED_KEYS_ORDER =
+            " order by TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+
+    /**
+     * Checksums of the definitions of the columns and of the key columns per
+     * table. The key columns cover the primary key order and the foreign
+     * keys.
+     */
+    static final String FINGERPRINTS_QUERY = "select c.TABLE_SCHEMA, c.TABLE_NAME,"
+            + " count(*), sum(crc32(concat_ws('|', c.COLUMN_NAME, c.ORDINAL_POSITION,"
+            + " c.COLUMN_TYPE, c.IS_NULLABLE, c.COLUMN_KEY, c.COLUMN_DEFAULT, c.EXTRA))),"
+            + " (select coalesce(sum(crc32(concat_ws('|', k.CONSTRAINT_NAME,"
+            + " k.COLUMN_NAME, k.ORDINAL_POSITION, k.REFERENCED_TABLE_SCHEMA,"
+            + " k.REFERENCED_TABLE_NAME, k.REFERENCED_COLUMN_NAME))), 0)"
+            + " from INFORMATION_SCHEMA.KEY_COLUMN_USAGE k"
+            + " where k.TABLE_SCHEMA = c.TABLE_SCHEMA and k.TABLE_NAME = c.TABLE_NAME)"
+            + " from INFORMATION_SCHEMA.COLUMNS c";
+
+    static final String FINGERPRINTS_GROUP = " group by c.TABLE_SCHEMA, c.TABLE_NAME";
+
+    static final String PRIMARY_KEYS_ORDER = " order by TABLE_NAME, ORDINAL_POSITION";
+
+    static final String SCHEMA_CONDITION = " TABLE_SCHEMA = ?";
+
+    static final String CURRENT_SCHEMA_CONDITION = " TABLE_SCHEMA = database()";
+
+    static final String COLUMNS_ORDER = " order by TABLE_NAME, ORDINAL_POSITION";
+
+    /** JDBC types by lower case MySQL data type */
+    private static final Map SQL_TYPES = new HashMap();
+
+    static
+    {
+        SQL_TYPES.put("bit", new Integer(Types.BIT));
+        SQL_TYPES.put("bool", new Integer(Types.BIT));
+        SQL_TYPES.put("boolean", new Integer(Types.BIT));
+        SQL_TYPES.put("tinyint", new Integer(Types.TINYINT));
+        SQL_TYPES.put("smallint", new Integer(Types.SMALLINT));
+        SQL_TYPES.put("mediumint", new Integer(Types.INTEGER));
+        SQL_TYPES.put("int", new Integer(Types.INTEGER));
+        SQL_TYPES.put("integer", new Integer(Types.INTEGER));
+        SQL_TYPES.put("bigint", new Integer(Types.BIGINT));
+        SQL_TYPES.put("decimal", new Integer(Types.DECIMAL));
+        SQL_TYPES.put("numeric", new Integer(Types.DECIMAL));
+        SQL_TYPES.put("float", new Integer(Types.REAL));
+        SQL_TYPES.put("double", new Integer(Types.DOUBLE));
+        SQL_TYPES.put("real", new Integer(Types.DOUBLE));
+        SQL_TYPES.put("date", new Integer(Types.DATE));
+        SQL_TYPES.put("year", new Integer(Types.DATE));
+        SQL_TYPES.put("time", new Integer(Types.TIME));
+        SQL_TYPES.put("datetime", new Integer(Types.TIMESTAMP));
+        SQL_TYPES.put("timestamp", new Integer(Types.TIMESTAMP));
+        SQL_TYPES.put("char", new Integer(Types.CHAR));
+        SQL_TYPES.put("varchar", new Integer(Types.VARCHAR));
+        SQL_TYPES.put("tinytext", new Integer(Types.VARCHAR));
+        SQL_TYPES.put("text", new Integer(Types.LONGVARCHAR));
+        SQL_TYPES.put("mediumtext", new Integer(Types.LONGVARCHAR));
+        SQL_TYPES.put("longtext", new Integer(Types.LONGVARCHAR));
+        SQL_TYPES.put("json", new Integer(Types.LONGVARCHAR));
+        SQL_TYPES.put("enum", new Integer(Types.CHAR));
+        SQL_TYPES.put("set", new Integer(Types.CHAR));
+        SQL_TYPES.put("binary", new Integer(Types.BINARY));
+        SQL_TYPES.put("varbinary", new Integer(Types.VARBINARY));
+        SQL_TYPES.put("tinyblob", new Integer(Types.VARBINARY));
+        SQL_TYPES.put("blob", new Integer(Types.LONGVARBINARY));
+        SQL_TYPES.put("mediumblob", new Integer(Types.LONGVARBINARY));
+        SQL_TYPES.put("longblob", new Integer(Types.LONGVARBINARY));
+        SQL_TYPES.put("geometry", new Integer(Types.BINARY));
+        SQL_TYPES.put("point", new Integer(Types.BINARY));
+        SQL_TYPES.put("linestring", new Integer(Types.BINARY));
+        SQL_TYPES.put("polygon", new Integer(Types.BINARY));
+        SQL_TYPES.put("multipoint", new Integer(Types.BINARY));
+        SQL_TYPES.put("multilinestring", new Integer(Types.BINARY));
+        SQL_TYPES.put("multipolygon", new Integer(Types.BINARY));
+        SQL_TYPES.put("geometrycollection", new Integer(Types.BINARY));
+        SQL_TYPES.put("geomcollection", new Integer(Types.BINARY));
+    }
+
+    public MySqlBulkMetadataHandler()
+    {
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IBulkMetadataHandler interface
+
+    public Map getColumns(Connection connection, String schemaName,
+            IDataTypeFactory dataTypeFactory, boolean datatypeWarning)
+            throws SQLException, DataTypeException
+    {
+        logger.debug("getColumns(connection={}, schemaName={}) - start",
+                connection, schemaName);
+
+        String sql = COLUMNS_QUERY + " where"
+                + (schemaName == null ? CURRENT_SCHEMA_CONDITION : SCHEMA_CONDITION)
+                + COLUMNS_ORDER;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try
+        {
+            if (schemaName != null)
+            {
+                statement.setString(1, schemaName);
+            }
+
+            Map columnsByTable = new LinkedHashMap();
+            String currentTable = null;
+            List columnList = null;
+            ResultSet resultSet = statement.executeQuery();
+            try
+            {
+                while (resultSet.next())
+                {
+                    String tableName = new QualifiedTableName(
+                            resultSet.getString(2), resultSet.getString(1))
+                            .getQualifiedName();
+                    if (!tableName.equals(currentTable))
+                    {
+                        putColumns(columnsByTable, currentTable, columnList);
+                        currentTable = tableName;
+                        columnList = new ArrayList();
+                    }
+
+                    Column column = createColumn(resultSet, dataTypeFactory,
+                            datatypeWarning);
+                    if (column != null)
+                    {
+                        columnList.add(column);
+                    }
+                }
+                putColumns(columnsByTable, currentTable, columnList);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+
+            logger.debug("Read the columns of {} tables", String.valueOf(columnsByTable.size()));
+            return columnsByTable;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    public Map getPrimaryKeys(Connection connection, String schemaName)
+            throws SQLException
+    {
+        logger.debug("getPrimaryKeys(connection={}, schemaName={}) - start",
+                connection, schemaName);
+
+        String sql = PRIMARY_KEYS_QUERY + " and"
+                + (schemaName == null ? CURRENT_SCHEMA_CONDITION : SCHEMA_CONDITION)
+                + PRIMARY_KEYS_ORDER;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try
+        {
+            if (schemaName != null)
+            {
+                statement.setString(1, schemaName);
+            }
+
+            Map keysByTable = new LinkedHashMap();
+            String currentTable = null;
+            List keyList = null;
+            ResultSet resultSet = statement.executeQuery();
+            try
+            {
+                while (resultSet.next())
+                {
+                    String tableName = new QualifiedTableName(
+                            resultSet.getString(2), resultSet.getString(1))
+                            .getQualifiedName();
+                    if (!tableName.equals(currentTable))
+                    {
+                        putPrimaryKeys(keysByTable, currentTable, keyList);
+                        currentTable = tableName;
+                        keyList = new ArrayList();
+                    }
+                    keyList.add(resultSet.getString(3));
+                }
+                putPrimaryKeys(keysByTable, currentTable, keyList);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+
+            logger.debug("Read the primary keys of {} tables", String.valueOf(keysByTable.size()));
+            return keysByTable;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    public List getImportedKeys(Connection connection, String schemaName)
+            throws SQLException
+    {
+        logger.debug("getImportedKeys(connection={}, schemaName={}) - start",
+                connection, schemaName);
+
+        String sql = IMPORTED_KEYS_QUERY + " and"
+                + (schemaName == null ? CURRENT_SCHEMA_CONDITION : SCHEMA_CONDITION)
+                + IMPORTED_KEYS_ORDER;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try
+        {
+            if (schemaName != null)
+            {
+                statement.setString(1, schemaName);
+            }
+
+            List edges = new ArrayList();
+            ResultSet resultSet = statement.executeQuery();
+            try
+            {
+                while (resultSet.next())
+                {
+                    String from = new QualifiedTableName(resultSet.getString(2),
+                            resultSet.getString(1)).getQualifiedName();
+                    String to = new QualifiedTableName(resultSet.getString(5),
+                            resultSet.getString(4)).getQualifiedName();
+                    edges.add(new ForeignKeyRelationshipEdge(from, to,
+                            resultSet.getString(3), resultSet.getString(6)));
+                }
+            }
+            finally
+            {
+                resultSet.close();
+            }
+
+            logger.debug("Read {} foreign key columns", String.valueOf(edges.size()));
+            return edges;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    public Map getTableFingerprints(Connection connection, String schemaName)
+            throws SQLException
+    {
+        logger.debug("getTableFingerprints(connection={}, schemaName={}) - start",
+                connection, schemaName);
+
+        String sql = FINGERPRINTS_QUERY + " where"
+                + (schemaName == null ? CURRENT_SCHEMA_CONDITION : SCHEMA_CONDITION)
+                + FINGERPRINTS_GROUP;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try
+        {
+            if (schemaName != null)
+            {
+                statement.setString(1, schemaName);
+            }
+
+            Map fingerprints = new HashMap();
+            ResultSet resultSet = statement.executeQuery();
+            try
+            {
+                while (resultSet.next())
+                {
+                    String tableName = new QualifiedTableName(
+                            resultSet.getString(2), resultSet.getString(1))
+                            .getQualifiedName();
+                    fingerprints.put(tableName, resultSet.getString(3) + ":"
+                            + resultSet.getString(4) + ":" + resultSet.getString(5));
+                }
+            }
+            finally
+            {
+                resultSet.close();
+            }
+            return fingerprints;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private static void putPrimaryKeys(Map keysByTable, String tableName,
+            List keyList)
+    {
+        if (tableName != null)
+        {
+            keysByTable.put(tableName, keyList.toArray(new String[0]));
+        }
+    }
+
+    private static void putColumns(Map columnsByTable, String tableName,
+            List columnList)
+    {
+        if (tableName != null)
+        {
+            columnsByTable.put(tableName, columnList.toArray(new Column[0]));
+        }
+    }
+
+    /**
+     * Creates the column of the current row of the
+     * <code>INFORMATION_SCHEMA.COLUMNS</code> query.
+     */
+    private Column createColumn(ResultSet resultSet,
+            IDataTypeFactory dataTypeFactory, boolean datatypeWarning)
+            throws SQLException, DataTypeException
+    {
+        String tableName = resultSet.getString(2);
+        String columnName = resultSet.getString(3);
+        String dataType = resultSet.getString(4).toLowerCase(Locale.ENGLISH);
+        String columnType = resultSet.getString(5).toLowerCase(Locale.ENGLISH);
+        int nullable = "YES".equalsIgnoreCase(resultSet.getString(6))
+                ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls;
+        String columnDefaultValue = resultSet.getString(7);
+        String remarks = resultSet.getString(8);
+        String extra = resultSet.getString(9);
+        String isAutoIncrement = extra != null
+                && extra.toLowerCase(Locale.ENGLISH).indexOf("auto_increment") >= 0
+                ? Column.AutoIncrement.YES.getKey() : Column.AutoIncrement.NO.getKey();
+
+        int sqlType = getSqlType(dataType, columnType);
+        String sqlTypeName = getSqlTypeName(dataType, columnType);
+        return SQLHelper.createColumn(tableName, columnName, sqlType,
+                sqlTypeName, nullable, remarks, columnDefaultValue,
+                isAutoIncrement, dataTypeFactory, datatypeWarning);
+    }
+
+    /**
+     * Returns the JDBC type of a column as reported by the driver.
+     *
+     * @param dataType The lower case <code>DATA_TYPE</code>
+     * @param columnType The lower case <code>COLUMN_TYPE</code>
+     */
+    static int getSqlType(String dataType, String columnType)
+    {
+        if (isTinyIntBit(dataType, columnType))
+        {
+            return Types.BIT;
+        }
+        Integer sqlType = (Integer)SQL_TYPES.get(dataType);
+        return sqlType == null ? Types.OTHER : sqlType.intValue();
+    }
+
+    /**
+     * Returns the type name of a column as reported by the driver, like
+     * <code>INT UNSIGNED</code>.
+     *
+     * @param dataType The lower case <code>DATA_TYPE</code>
+     * @param columnType The lower case <code>COLUMN_TYPE</code>
+     */
+    static String getSqlTypeName(String dataType, String columnType)
+    {
+        if (isTinyIntBit(dataType, columnType))
+        {
+            return "BIT";
+        }
+        String sqlTypeName = dataType.toUpperCase(Locale.ENGLISH);
+        if (columnType.indexOf("unsigned") >= 0)
+        {
+            sqlTypeName += MySqlDataTypeFactory.UNSIGNED_SUFFIX;
+        }
+        return sqlTypeName;
+    }
+
+    private static boolean isTinyIntBit(String dataType, String columnType)
+    {
+        return "tinyint".equals(dataType) && columnType.startsWith("tinyint(1)");
+    }
+}
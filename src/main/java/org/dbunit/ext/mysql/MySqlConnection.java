@@ -23,10 +23,21 @@ package org.dbunit.ext.mysql;
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.statement.MultiRowInsertStatementFactory;
+import org.dbunit.database.statement.ValueBinder;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
+ * Database connection for MySQL.
+ * <p>
+ * Inserts can be sent as multi-row statements with
+ * {@link #useMultiRowInserts()}.
+ * Batches can be kept below the server packet limit with
+ * {@link #useMaxAllowedPacketAsBatchByteLimit()}.
  *
  * @author manuel.laflamme
  * @since Sep 4, 2003
@@ -42,4 +53,83 @@ public class MySqlConnection extends DatabaseConnection
         getConfig().setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, 
                 new MySqlMetadataHandler());
     }
+
+    /**
+     * Sets {@link DatabaseConfig#PROPERTY_STATEMENT_FACTORY} to a
+     * {@link MultiRowInsertStatementFactory}, so that inserts are sent as
+     * multi-row statements of {@link DatabaseConfig#PROPERTY_BATCH_SIZE} rows.
+     * @since 2.7.5
+     */
+    public void useMultiRowInserts()
+    {
+        getConfig().setProperty(DatabaseConfig.PROPERTY_STATEMENT_FACTORY,
+                new MultiRowInsertStatementFactory());
+    }
+
+    /**
+     * Sets {@link DatabaseConfig#PROPERTY_STATEMENT_FACTORY} to a
+     * {@link MultiRowInsertStatementFactory} sending inserts as multi-row
+     * statements of the given number of rows.
+     * @param rowsPerStatement The maximum number of rows per insert statement
+     * @since 2.7.5
+     */
+    public void useMultiRowInserts(int rowsPerStatement)
+    {
+        getConfig().setProperty(DatabaseConfig.PROPERTY_STATEMENT_FACTORY,
+                new MultiRowInsertStatementFactory(rowsPerStatement));
+    }
+
+    /**
+     * @return The <code>max_allowed_packet</code> setting of the server in bytes
+     * @since 2.7.5
+     */
+    public long getMaxAllowedPacket() throws SQLException
+    {
+        Statement statement = getConnection().createStatement();
+        try
+        {
+            ResultSet resultSet = statement.executeQuery("SELECT @@max_allowed_packet");
+            try
+            {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    /**
+     * Sets {@link DatabaseConfig#PROPERTY_BATCH_BYTE_LIMIT} from the
+     * <code>max_allowed_packet</code> setting of the server. A tenth of the
+     * packet is kept free since the batch size is an estimate.
+     * @since 2.7.5
+     */
+    public void useMaxAllowedPacketAsBatchByteLimit() throws SQLException
+    {
+        long byteLimit = getMaxAllowedPacket() / 10 * 9;
+        getConfig().setProperty(DatabaseConfig.PROPERTY_BATCH_BYTE_LIMIT,
+                new Integer((int)Math.min(byteLimit, Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Sets {@link DatabaseConfig#PROPERTY_RAW_STRING_BINDING} so that string
+     * values of numeric, temporal and character columns are sent to the
+     * server unconverted. MySQL converts them itself, use it for trusted
+     * datasets only.
+     * @since 2.7.5
+     */
+    public void useRawStringBinding()
+    {
+        getConfig().setProperty(DatabaseConfig.PROPERTY_RAW_STRING_BINDING,
+                new String[] {ValueBinder.CATEGORY_NUMBERS,
+                        ValueBinder.CATEGORY_TEMPORAL,
+                        ValueBinder.CATEGORY_STRINGS});
+    }
 }
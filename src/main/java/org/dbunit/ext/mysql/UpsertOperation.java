@@ -0,0 +1,212 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.ext.mysql;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoPrimaryKeyException;
+import org.dbunit.operation.DatabaseOperation;
+import org.dbunit.operation.InsertOperation;
+import org.dbunit.operation.OperationData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes the dataset contents into a MySQL database using
+ * <code>insert into ... on duplicate key update</code> statements. Existing
+ * rows are updated and missing rows are inserted like with
+ * {@link DatabaseOperation#REFRESH}, but the rows are sent through the
+ * regular batched insert path instead of an update and an insert statement
+ * per row. Combined with the
+ * {@link org.dbunit.database.statement.MultiRowInsertStatementFactory} a
+ * whole table is refreshed in a handful of round trips.
+ * <p>
+ * Unlike {@link DatabaseOperation#REFRESH}, which matches rows on the primary
+ * key only, MySQL turns the insert into an update when it collides with
+ * <em>any</em> unique key of the table. A row whose primary key is new but
+ * whose unique column value exists updates that existing row instead of being
+ * inserted.
+ * <p>
+ * MySQL 8.0.19 and later receive the row alias form
+ * <code>insert into ... values (...) as dbunit_new on duplicate key update
+ * col = dbunit_new.col</code>, since <code>values(col)</code> is deprecated as
+ * of 8.0.20. Older servers and MariaDB receive <code>col = values(col)</code>.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class UpsertOperation extends InsertOperation
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(UpsertOperation.class);
+
+    public static final DatabaseOperation REFRESH = new UpsertOperation();
+
+    /**
+     * Alias of the inserted row in the update clause
+     */
+    static final String ROW_ALIAS = "dbunit_new";
+
+    public UpsertOperation()
+    {
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // AbstractBatchOperation class
+
+    public OperationData getOperationData(ITableMetaData metaData,
+            BitSet ignoreMapping, IDatabaseConnection connection) throws DataSetException
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("getOperationData(metaData={}, ignoreMapping={}, connection={}) - start",
+                    new Object[]{ metaData, ignoreMapping, connection });
+        }
+
+        // cannot identify existing rows if no primary key
+        Column[] primaryKeys = metaData.getPrimaryKeys();
+        if (primaryKeys.length == 0)
+        {
+            throw new NoPrimaryKeyException(metaData.getTableName());
+        }
+
+        OperationData insertData = super.getOperationData(metaData,
+                ignoreMapping, connection);
+        Column[] columns = insertData.getColumns();
+
+        boolean rowAlias = isRowAliasSupported(connection);
+
+        StringBuilder sqlBuffer = new StringBuilder(insertData.getSql());
+        if (rowAlias)
+        {
+            sqlBuffer.append(" as ").append(ROW_ALIAS);
+        }
+        sqlBuffer.append(" on duplicate key update ");
+        String separator = "";
+        for (int i = 0; i < columns.length; i++)
+        {
+            Column column = columns[i];
+
+            // update only bound columns that are not part of the primary key
+            if (!ignoreMapping.get(i)
+                    && Columns.getColumn(column.getColumnName(), primaryKeys) == null)
+            {
+                String columnName = getQualifiedName(null,
+                        column.getColumnName(), connection);
+                sqlBuffer.append(separator);
+                sqlBuffer.append(columnName);
+                if (rowAlias)
+                {
+                    sqlBuffer.append(" = ").append(ROW_ALIAS).append(".");
+                    sqlBuffer.append(columnName);
+                }
+                else
+                {
+                    sqlBuffer.append(" = values(");
+                    sqlBuffer.append(columnName);
+                    sqlBuffer.append(")");
+                }
+                separator = ", ";
+            }
+        }
+
+        // all columns are primary keys, only skip existing rows
+        if (separator.length() == 0)
+        {
+            String columnName = getQualifiedName(null,
+                    primaryKeys[0].getColumnName(), connection);
+            sqlBuffer.append(columnName);
+            sqlBuffer.append(" = ");
+            sqlBuffer.append(columnName);
+        }
+
+        return new OperationData(sqlBuffer.toString(), columns);
+    }
+
+    /**
+     * @return <code>true</code> if the server is MySQL 8.0.19 or later, which
+     * accepts a row alias after the inserted values
+     */
+    static boolean isRowAliasSupported(IDatabaseConnection connection)
+            throws DataSetException
+    {
+        String version;
+        try
+        {
+            DatabaseMetaData metaData = connection.getConnection().getMetaData();
+            version = metaData.getDatabaseProductVersion();
+        }
+        catch (SQLException e)
+        {
+            throw new DataSetException("Cannot read the database version", e);
+        }
+        return isRowAliasSupported(version);
+    }
+
+    /**
+     * @param version The product version reported by the server, like
+     * <code>8.0.32</code> or <code>5.5.5-10.6.12-MariaDB</code>
+     */
+    static boolean isRowAliasSupported(String version)
+    {
+        if (version == null || version.toLowerCase().indexOf("mariadb") >= 0)
+        {
+            return false;
+        }
+
+        int[] numbers = new int[3];
+        int part = 0;
+        for (int i = 0; i < version.length() && part < numbers.length; i++)
+        {
+            char c = version.charAt(i);
+            if (Character.isDigit(c))
+            {
+                numbers[part] = numbers[part] * 10 + (c - '0');
+            }
+            else if (c == '.')
+            {
+                part++;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (numbers[0] != 8)
+        {
+            return numbers[0] > 8;
+        }
+        return numbers[1] > 0 || numbers[2] >= 19;
+    }
+}
@@ -21,21 +21,27 @@
 
 package org.dbunit.operation;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.BitSet;
 
 import org.dbunit.DatabaseUnitException;
-import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.CommitProgress;
+import org.dbunit.database.DatabaseConfigSnapshot;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.AutomaticPreparedBatchStatement;
+import org.dbunit.database.statement.BindPlan;
 import org.dbunit.database.statement.IPreparedBatchStatement;
 import org.dbunit.database.statement.IStatementFactory;
 import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.IIndexedTable;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableIterator;
 import org.dbunit.dataset.ITableMetaData;
-import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.NoSuchColumnException;
 import org.dbunit.dataset.datatype.DataType;
 import org.dbunit.dataset.datatype.TypeCastException;
 import org.slf4j.Logger;
@@ -59,6 +65,9 @@ public abstract class AbstractBatchOperation extends AbstractOperation
     private static final BitSet EMPTY_BITSET = new BitSet();
     protected boolean _reverseRowOrder = false;
 
+    /** The SQL generated so far, reused across executions */
+    private final OperationDataCache _operationDataCache = new OperationDataCache();
+
     static boolean isEmpty(ITable table) throws DataSetException
     {
         logger.debug("isEmpty(table={}) - start", table);
@@ -71,16 +80,8 @@ public abstract class AbstractBatchOperation extends AbstractOperation
             return true;
         }
 
-        // Try to fetch first table value
-        try
-        {
-            table.getValue(0, columns[0].getColumnName());
-            return false;
-        } catch (RowOutOfBoundsException e)
-        {
-            // Not able to access first row thus empty
-            return true;
-        }
+        // Check for a first row
+        return !DataSetUtils.getIndexedTable(table).hasRow(0);
     }
 
     /**
@@ -97,7 +98,7 @@ public abstract class AbstractBatchOperation extends AbstractOperation
      * Returns mapping of columns to ignore by this operation. Each bit set
      * represent a column to ignore.
      */
-    BitSet getIgnoreMapping(ITable table, int row) throws DataSetException
+    protected BitSet getIgnoreMapping(ITable table, int row) throws DataSetException
     {
         return EMPTY_BITSET;
     }
@@ -106,13 +107,13 @@ public abstract class AbstractBatchOperation extends AbstractOperation
      * Returns false if the specified table row have a different ignore mapping
      * than the specified mapping.
      */
-    boolean equalsIgnoreMapping(BitSet ignoreMapping, ITable table, int row)
+    protected boolean equalsIgnoreMapping(BitSet ignoreMapping, ITable table, int row)
             throws DataSetException
     {
         return true;
     }
 
-    abstract OperationData getOperationData(ITableMetaData metaData,
+    protected abstract OperationData getOperationData(ITableMetaData metaData,
             BitSet ignoreMapping, IDatabaseConnection connection)
             throws DataSetException;
 
@@ -126,125 +127,313 @@ public abstract class AbstractBatchOperation extends AbstractOperation
         logger.debug("execute(connection={}, dataSet={}) - start", connection,
                 dataSet);
 
-        DatabaseConfig databaseConfig = connection.getConfig();
-        IStatementFactory factory = (IStatementFactory) databaseConfig
-                .getProperty(DatabaseConfig.PROPERTY_STATEMENT_FACTORY);
-        boolean allowEmptyFields = connection.getConfig()
-                .getFeature(DatabaseConfig.FEATURE_ALLOW_EMPTY_FIELDS);
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        IStatementFactory factory = config.getStatementFactory();
+        boolean allowEmptyFields = config.isAllowEmptyFields();
 
         // for each table
         ITableIterator iterator = iterator(dataSet);
         while (iterator.next())
         {
-            ITable table = iterator.getTable();
+            executeTable(connection, iterator.getTable(), factory,
+                    allowEmptyFields);
+        }
+    }
 
-            String tableName = table.getTableMetaData().getTableName();
-            logger.trace("execute: processing table='{}'", tableName);
+    /**
+     * Executes this operation for the rows of one table.
+     */
+    void executeTable(IDatabaseConnection connection, ITable table,
+            IStatementFactory factory, boolean allowEmptyFields)
+            throws DatabaseUnitException, SQLException
+    {
+        String tableName = table.getTableMetaData().getTableName();
+        logger.trace("execute: processing table='{}'", tableName);
 
-            // Do not process empty table
-            if (isEmpty(table))
+        // Do not process empty table
+        if (isEmpty(table))
+        {
+            return;
+        }
+
+        ITableMetaData metaData =
+                getOperationMetaData(connection, table.getTableMetaData());
+        IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+        PipelinedTable pipelinedTable = null;
+        BitSet ignoreMapping = null;
+        OperationData operationData = null;
+        Column[] columns = null;
+        int[] columnIndexes = null;
+        IPreparedBatchStatement statement = null;
+
+        // Commit interval
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        int commitInterval = config.getCommitInterval();
+        long commitByteInterval = config.getCommitByteInterval();
+        boolean commitChunks = commitInterval > 0 || commitByteInterval > 0;
+        CommitProgress commitProgress = config.getCommitProgress();
+        String operationName = getClass().getName();
+        int pendingRows = 0;
+        long pendingBytes = 0;
+
+        // Commits need a transaction, auto-commit would commit every batch
+        Connection jdbcConnection = connection.getConnection();
+        boolean restoreAutoCommit = commitChunks && jdbcConnection.getAutoCommit();
+        if (restoreAutoCommit)
+        {
+            jdbcConnection.setAutoCommit(false);
+        }
+        boolean completed = false;
+
+        try
+        {
+            // Skip the rows committed by a previous execution
+            int skippedRows = 0;
+            if (commitProgress != null && commitProgress.isResume())
             {
-                continue;
+                skippedRows = commitProgress.getCommittedRowCount(operationName,
+                        tableName);
+                if (skippedRows > 0)
+                {
+                    logger.info("Resuming table '{}' after {} committed rows",
+                            tableName, String.valueOf(skippedRows));
+                }
             }
 
-            ITableMetaData metaData =
-                    getOperationMetaData(connection, table.getTableMetaData());
-            BitSet ignoreMapping = null;
-            OperationData operationData = null;
-            IPreparedBatchStatement statement = null;
+            // For each row
+            int start = _reverseRowOrder
+                    ? table.getRowCount() - 1 - skippedRows : skippedRows;
+            int increment = _reverseRowOrder ? -1 : 1;
 
-            try
+            // Read ahead in another thread while the batches execute
+            if (config.isPipelinedLoading() && !_reverseRowOrder)
+            {
+                pipelinedTable = new PipelinedTable(table,
+                        getDataTypes(table.getTableMetaData(), metaData,
+                                new BindPlan(config.getRawStringBinding())),
+                        start, config.getBatchSize());
+                table = pipelinedTable;
+                indexedTable = pipelinedTable;
+            }
+
+            // until the end of the table
+            for (int row = start; indexedTable.hasRow(row); row += increment)
             {
-                // For each row
-                int start = _reverseRowOrder ? table.getRowCount() - 1 : 0;
-                int increment = _reverseRowOrder ? -1 : 1;
+                // If current row have a different ignore value mapping
+                // than
+                // previous one, we generate a new statement
+                if (ignoreMapping == null
+                        || !equalsIgnoreMapping(ignoreMapping, indexedTable,
+                                row))
+                {
+                    // Execute and close previous statement
+                    if (statement != null)
+                    {
+                        statement.executeBatch();
+                        statement.clearBatch();
+                        statement.close();
+                    }
+
+                    ignoreMapping = getIgnoreMapping(indexedTable, row);
+                    operationData = _operationDataCache.getOperationData(
+                            this, metaData, ignoreMapping, connection);
+                    statement = factory.createPreparedBatchStatement(
+                            operationData.getSql(), connection);
+
+                    // Resolve the value positions once per statement
+                    columns = operationData.getColumns();
+                    columnIndexes = DataSetUtils.getColumnIndexes(
+                            table.getTableMetaData(), columns);
+                }
 
-                try
+                // for each column
+                for (int j = 0; j < columns.length; j++)
                 {
-                    for (int i = start;; i = i + increment)
+                    // Bind value only if not in ignore mapping
+                    if (!ignoreMapping.get(j))
                     {
-                        int row = i;
-
-                        // If current row have a different ignore value mapping
-                        // than
-                        // previous one, we generate a new statement
-                        if (ignoreMapping == null
-                                || !equalsIgnoreMapping(ignoreMapping, table,
-                                        row))
+                        Column column = columns[j];
+                        String columnName = column.getColumnName();
+                        try
                         {
-                            // Execute and close previous statement
-                            if (statement != null)
+                            DataType dataType = column.getDataType();
+                            Object value = indexedTable.getValue(row,
+                                    columnIndexes[j]);
+
+                            if ("".equals(value) && !allowEmptyFields)
                             {
-                                statement.executeBatch();
-                                statement.clearBatch();
-                                statement.close();
+                                handleColumnHasNoValue(tableName,
+                                        columnName);
                             }
 
-                            ignoreMapping = getIgnoreMapping(table, row);
-                            operationData = getOperationData(metaData,
-                                    ignoreMapping, connection);
-                            statement = factory.createPreparedBatchStatement(
-                                    operationData.getSql(), connection);
-                        }
-
-                        // for each column
-                        Column[] columns = operationData.getColumns();
-                        for (int j = 0; j < columns.length; j++)
-                        {
-                            // Bind value only if not in ignore mapping
-                            if (!ignoreMapping.get(j))
+                            statement.addValue(value, dataType);
+                            if (commitByteInterval > 0)
                             {
-                                Column column = columns[j];
-                                String columnName = column.getColumnName();
-                                try
-                                {
-                                    DataType dataType = column.getDataType();
-                                    Object value =
-                                            table.getValue(row, columnName);
-
-                                    if ("".equals(value) && !allowEmptyFields)
-                                    {
-                                        handleColumnHasNoValue(tableName,
-                                                columnName);
-                                    }
-
-                                    statement.addValue(value, dataType);
-                                } catch (TypeCastException e)
-                                {
-                                    final String msg =
-                                            "Error casting value for table '"
-                                                    + tableName
-                                                    + "' and column '"
-                                                    + columnName + "'";
-                                    logger.error("execute: {}", msg);
-                                    throw new TypeCastException(msg, e);
-                                }
+                                pendingBytes += AutomaticPreparedBatchStatement
+                                        .estimateSize(value, dataType);
                             }
+                        } catch (TypeCastException e)
+                        {
+                            final String msg =
+                                    "Error casting value for table '"
+                                            + tableName
+                                            + "' and column '"
+                                            + columnName + "'";
+                            logger.error("execute: {}", msg);
+                            throw new TypeCastException(msg, e);
                         }
-                        statement.addBatch();
                     }
-                } catch (RowOutOfBoundsException e)
-                {
-                    // This exception occurs when records are exhausted
-                    // and we reach the end of the table. Ignore this error
+                }
+                statement.addBatch();
+                pendingRows++;
 
-                    // end of table
+                if (commitChunks && ((commitInterval > 0
+                        && pendingRows >= commitInterval)
+                        || (commitByteInterval > 0
+                                && pendingBytes >= commitByteInterval)))
+                {
+                    commit(connection, statement, operationName, tableName,
+                            pendingRows, commitProgress);
+                    pendingRows = 0;
+                    pendingBytes = 0;
                 }
+            }
 
-                statement.executeBatch();
-                statement.clearBatch();
-            } catch (SQLException e)
+            // All rows may have been committed before
+            if (statement != null)
             {
-                final String msg =
-                        "Exception processing table name='" + tableName + "'";
-                throw new DatabaseUnitException(msg, e);
-            } finally
+                if (commitChunks)
+                {
+                    commit(connection, statement, operationName, tableName,
+                            pendingRows, commitProgress);
+                }
+                else
+                {
+                    statement.executeBatch();
+                    statement.clearBatch();
+                }
+            }
+            if (commitChunks && commitProgress != null)
             {
+                commitProgress.tableCompleted(operationName, tableName);
+            }
+            completed = true;
+        } catch (SQLException e)
+        {
+            final String msg =
+                    "Exception processing table name='" + tableName + "'";
+            throw new DatabaseUnitException(msg, e);
+        } finally
+        {
+            try
+            {
+                if (pipelinedTable != null)
+                {
+                    pipelinedTable.close();
+                }
                 if (statement != null)
                 {
                     statement.close();
                 }
             }
+            finally
+            {
+                if (restoreAutoCommit)
+                {
+                    restoreAutoCommit(jdbcConnection, completed, tableName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Switches auto-commit on again after the rows of a table were committed
+     * in chunks. The rows of a failed table are rolled back first, since
+     * switching auto-commit on would commit them. For a failed table, errors
+     * here are only logged so that they do not hide the original exception.
+     */
+    private static void restoreAutoCommit(Connection jdbcConnection,
+            boolean completed, String tableName) throws SQLException
+    {
+        if (completed)
+        {
+            jdbcConnection.setAutoCommit(true);
+            return;
+        }
+
+        try
+        {
+            jdbcConnection.rollback();
+        }
+        catch (SQLException e)
+        {
+            // Auto-commit stays off, it would commit the failed rows
+            logger.error("Could not roll back the rows of table '" + tableName
+                    + "', auto-commit stays disabled", e);
+            return;
+        }
+        try
+        {
+            jdbcConnection.setAutoCommit(true);
+        }
+        catch (SQLException e)
+        {
+            logger.error("Could not enable auto-commit again after table '"
+                    + tableName + "'", e);
+        }
+    }
+
+    /**
+     * Returns the database types of the dataset columns, <code>null</code>
+     * for columns that do not exist in the database table and for columns
+     * whose string values the statement binds as they are.
+     */
+    private static DataType[] getDataTypes(ITableMetaData tableMetaData,
+            ITableMetaData databaseMetaData, BindPlan bindPlan)
+            throws DataSetException
+    {
+        Column[] columns = tableMetaData.getColumns();
+        Column[] databaseColumns = databaseMetaData.getColumns();
+        DataType[] dataTypes = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            try
+            {
+                int index = databaseMetaData.getColumnIndex(
+                        columns[i].getColumnName());
+                DataType dataType = databaseColumns[index].getDataType();
+                if (!bindPlan.isRawStringBound(dataType))
+                {
+                    dataTypes[i] = dataType;
+                }
+            }
+            catch (NoSuchColumnException e)
+            {
+                // Not bound by the operation
+            }
+        }
+        return dataTypes;
+    }
+
+    /**
+     * Executes the pending rows and commits them. Auto-commit is off while
+     * rows are committed in chunks.
+     */
+    private void commit(IDatabaseConnection connection,
+            IPreparedBatchStatement statement, String operationName,
+            String tableName, int rowCount, CommitProgress commitProgress)
+            throws SQLException
+    {
+        statement.executeBatch();
+        statement.clearBatch();
+
+        connection.getConnection().commit();
+        logger.debug("Committed {} rows of table '{}'",
+                String.valueOf(rowCount), tableName);
+
+        if (commitProgress != null && rowCount > 0)
+        {
+            commitProgress.addCommittedRows(operationName, tableName, rowCount);
         }
     }
 
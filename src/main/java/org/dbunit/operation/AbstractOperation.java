@@ -20,14 +20,19 @@
  */
 package org.dbunit.operation;
 
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.dbunit.DatabaseUnitException;
-import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.MetadataCache;
+import org.dbunit.database.search.ForeignKeyRelationshipEdge;
 import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.DefaultTableMetaData;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITableMetaData;
@@ -56,11 +61,64 @@ public abstract class AbstractOperation extends DatabaseOperation
     				new Object[] {prefix, name, connection});
     	}
 
-        String escapePattern = (String)connection.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        String escapePattern = connection.getConfig().getSnapshot().getEscapePattern();
         QualifiedTableName qualifiedTbleName = new QualifiedTableName(name, prefix, escapePattern);
         return qualifiedTbleName.getQualifiedName();
     }
 
+    /**
+     * Returns a condition matching any of <code>keyCount</code> primary key
+     * values, with one parameter per key column and key. A single column key
+     * gives <code>pk in (?, ?, ...)</code>, a composite key gives an
+     * <code>or</code> list of key conjunctions, which unlike row value
+     * constructors is understood by every database.
+     *
+     * @param primaryKeys the primary key columns
+     * @param keyCount the number of keys to match
+     * @param connection the database connection
+     */
+    String getKeyListCondition(Column[] primaryKeys, int keyCount,
+            IDatabaseConnection connection)
+    {
+        String[] keyNames = new String[primaryKeys.length];
+        for (int i = 0; i < primaryKeys.length; i++)
+        {
+            keyNames[i] = getQualifiedName(null,
+                    primaryKeys[i].getColumnName(), connection);
+        }
+
+        StringBuilder sqlBuffer = new StringBuilder(
+                keyCount * primaryKeys.length * 16);
+        if (keyNames.length == 1)
+        {
+            sqlBuffer.append(keyNames[0]);
+            sqlBuffer.append(" in (");
+            for (int row = 0; row < keyCount; row++)
+            {
+                sqlBuffer.append(row > 0 ? ", ?" : "?");
+            }
+            sqlBuffer.append(")");
+        }
+        else
+        {
+            for (int row = 0; row < keyCount; row++)
+            {
+                sqlBuffer.append(row > 0 ? " or (" : "(");
+                for (int i = 0; i < keyNames.length; i++)
+                {
+                    if (i > 0)
+                    {
+                        sqlBuffer.append(" and ");
+                    }
+                    sqlBuffer.append(keyNames[i]);
+                    sqlBuffer.append(" = ?");
+                }
+                sqlBuffer.append(")");
+            }
+        }
+        return sqlBuffer.toString();
+    }
+
     /**
      * Returns the metadata to use in this operation. It is retrieved
      * from the database connection using the information from the physical
@@ -96,4 +154,60 @@ public abstract class AbstractOperation extends DatabaseOperation
                 (Column[])columnList.toArray(new Column[0]),
                 tableMetaData.getPrimaryKeys());
     }
+
+    /**
+     * Returns true if the table has a foreign key to itself, in which case
+     * the order of its rows matters to the database. The foreign keys are
+     * taken from the configured {@link MetadataCache}, if it can provide
+     * them, and read from the database metadata otherwise.
+     */
+    static boolean isSelfReferencing(IDatabaseConnection connection,
+            String tableName) throws DataSetException, SQLException
+    {
+        MetadataCache metadataCache =
+                connection.getConfig().getSnapshot().getMetadataCache();
+        List importedKeys = metadataCache == null ? null
+                : metadataCache.getImportedKeys(connection, connection.getDatabase());
+        if (importedKeys != null)
+        {
+            String table = new QualifiedTableName(tableName, null).getTable();
+            for (Iterator i = importedKeys.iterator(); i.hasNext();)
+            {
+                ForeignKeyRelationshipEdge key = (ForeignKeyRelationshipEdge)i.next();
+                if (table.equalsIgnoreCase((String)key.getFrom())
+                        && table.equalsIgnoreCase((String)key.getTo()))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        ITableMetaData tableMetaData =
+                connection.createDataSet().getTableMetaData(tableName);
+        QualifiedTableName qualifiedTableName = new QualifiedTableName(
+                tableMetaData.getTableName(), connection.getDatabase());
+
+        DatabaseMetaData databaseMetaData =
+                connection.getConnection().getMetaData();
+        ResultSet resultSet = databaseMetaData.getImportedKeys(null,
+                qualifiedTableName.getDatabase(), qualifiedTableName.getTable());
+        try
+        {
+            while (resultSet.next())
+            {
+                // PKTABLE_NAME
+                if (qualifiedTableName.getTable().equalsIgnoreCase(
+                        resultSet.getString(3)))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally
+        {
+            resultSet.close();
+        }
+    }
 }
@@ -24,7 +24,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.dbunit.DatabaseUnitException;
-import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.database.statement.IBatchStatement;
 import org.dbunit.database.statement.IStatementFactory;
@@ -70,15 +69,24 @@ public class DeleteAllOperation extends AbstractOperation
         return "delete from ";
     }
 
+    /**
+     * Creates the statement executing the delete commands.
+     */
+    protected IBatchStatement createBatchStatement(IDatabaseConnection connection)
+            throws SQLException
+    {
+        IStatementFactory statementFactory =
+                connection.getConfig().getSnapshot().getStatementFactory();
+        return statementFactory.createBatchStatement(connection);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // DatabaseOperation class
 
     public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException{
         IDataSet databaseDataSet = connection.createDataSet();
 
-        DatabaseConfig databaseConfig = connection.getConfig();
-        IStatementFactory statementFactory = (IStatementFactory)databaseConfig.getProperty(DatabaseConfig.PROPERTY_STATEMENT_FACTORY);
-        IBatchStatement statement = statementFactory.createBatchStatement(connection);
+        IBatchStatement statement = createBatchStatement(connection);
         try
         {
             int count = 0;
@@ -24,21 +24,36 @@ package org.dbunit.operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
 import java.util.BitSet;
 
 import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.IPreparedBatchStatement;
+import org.dbunit.database.statement.IStatementFactory;
 import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableIterator;
 import org.dbunit.dataset.ITableMetaData;
 import org.dbunit.dataset.NoPrimaryKeyException;
+import org.dbunit.dataset.datatype.TypeCastException;
 
 /**
  * Deletes only the dataset contents from the database. This operation does not
  * delete the entire table contents but only data that are present in the
  * dataset.
+ * <p>
+ * When {@link DatabaseConfig#FEATURE_CHUNKED_DELETE} is enabled the rows are
+ * deleted with <code>delete from t where pk in (?, ?, ...)</code> statements
+ * covering {@link DatabaseConfig#PROPERTY_KEY_CHUNK_SIZE} rows each, instead
+ * of one statement execution per row. Tables and rows are still processed
+ * in reverse order. Tables having a foreign key to themselves are deleted
+ * row by row, since databases checking foreign keys per row, like MySQL,
+ * may reject a chunk containing both a parent and its child.
  *
  * @author Manuel Laflamme
  * @version $Revision$
@@ -57,6 +72,173 @@ public class DeleteOperation extends AbstractBatchOperation
         _reverseRowOrder = true;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // DatabaseOperation class
+
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+            throws DatabaseUnitException, SQLException
+    {
+        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        if (!config.isChunkedDelete())
+        {
+            super.execute(connection, dataSet);
+            return;
+        }
+
+        IStatementFactory factory = config.getStatementFactory();
+        int chunkSize = config.getKeyChunkSize();
+        boolean allowEmptyFields = config.isAllowEmptyFields();
+
+        // for each table
+        ITableIterator iterator = iterator(dataSet);
+        while (iterator.next())
+        {
+            ITable table = iterator.getTable();
+
+            String tableName = table.getTableMetaData().getTableName();
+            logger.trace("execute: processing table='{}'", tableName);
+
+            // Do not process empty table
+            if (isEmpty(table))
+            {
+                continue;
+            }
+
+            if (isSelfReferencing(connection, tableName))
+            {
+                logger.debug("Table '{}' references itself, deleting row by row",
+                        tableName);
+                executeTable(connection, table, factory, allowEmptyFields);
+                continue;
+            }
+
+            ITableMetaData metaData =
+                    getOperationMetaData(connection, table.getTableMetaData());
+            Column[] primaryKeys = metaData.getPrimaryKeys();
+            if (primaryKeys.length == 0)
+            {
+                throw new NoPrimaryKeyException(metaData.getTableName());
+            }
+
+            Object[] values = new Object[chunkSize * primaryKeys.length];
+            IPreparedBatchStatement statement = null;
+            try
+            {
+                int keyCount = 0;
+                for (int row = table.getRowCount() - 1; row >= 0; row--)
+                {
+                    for (int i = 0; i < primaryKeys.length; i++)
+                    {
+                        String columnName = primaryKeys[i].getColumnName();
+                        Object value = table.getValue(row, columnName);
+                        if ("".equals(value) && !allowEmptyFields)
+                        {
+                            handleColumnHasNoValue(tableName, columnName);
+                        }
+                        values[keyCount * primaryKeys.length + i] = value;
+                    }
+                    keyCount++;
+
+                    if (keyCount == chunkSize)
+                    {
+                        // Same statement for all full chunks
+                        if (statement == null)
+                        {
+                            statement = factory.createPreparedBatchStatement(
+                                    getChunkSql(metaData, chunkSize, connection),
+                                    connection);
+                        }
+                        addChunk(statement, primaryKeys, values, keyCount, tableName);
+                        keyCount = 0;
+                    }
+                }
+
+                if (statement != null)
+                {
+                    statement.executeBatch();
+                    statement.clearBatch();
+                }
+
+                // remaining rows
+                if (keyCount > 0)
+                {
+                    IPreparedBatchStatement lastStatement =
+                            factory.createPreparedBatchStatement(
+                                    getChunkSql(metaData, keyCount, connection),
+                                    connection);
+                    try
+                    {
+                        addChunk(lastStatement, primaryKeys, values, keyCount, tableName);
+                        lastStatement.executeBatch();
+                        lastStatement.clearBatch();
+                    }
+                    finally
+                    {
+                        lastStatement.close();
+                    }
+                }
+            }
+            catch (SQLException e)
+            {
+                final String msg =
+                        "Exception processing table name='" + tableName + "'";
+                throw new DatabaseUnitException(msg, e);
+            }
+            finally
+            {
+                if (statement != null)
+                {
+                    statement.close();
+                }
+            }
+        }
+    }
+
+    private void addChunk(IPreparedBatchStatement statement,
+            Column[] primaryKeys, Object[] values, int keyCount,
+            String tableName) throws TypeCastException, SQLException
+    {
+        int index = 0;
+        for (int row = 0; row < keyCount; row++)
+        {
+            for (int i = 0; i < primaryKeys.length; i++)
+            {
+                Column column = primaryKeys[i];
+                try
+                {
+                    statement.addValue(values[index++], column.getDataType());
+                }
+                catch (TypeCastException e)
+                {
+                    final String msg = "Error casting value for table '"
+                            + tableName + "' and column '"
+                            + column.getColumnName() + "'";
+                    logger.error("execute: {}", msg);
+                    throw new TypeCastException(msg, e);
+                }
+            }
+        }
+        statement.addBatch();
+    }
+
+    /**
+     * Returns the statement deleting the specified number of rows.
+     */
+    String getChunkSql(ITableMetaData metaData, int keyCount,
+            IDatabaseConnection connection) throws DataSetException
+    {
+        StringBuilder sqlBuffer = new StringBuilder(128);
+        sqlBuffer.append("delete from ");
+        sqlBuffer.append(getQualifiedName(connection.getDatabase(),
+                metaData.getTableName(), connection));
+        sqlBuffer.append(" where ");
+        sqlBuffer.append(getKeyListCondition(metaData.getPrimaryKeys(),
+                keyCount, connection));
+        return sqlBuffer.toString();
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // AbstractBatchOperation class
 
@@ -24,19 +24,39 @@ package org.dbunit.operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.IStatementFactory;
 import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
+import org.dbunit.dataset.IIndexedTable;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Inserts the dataset contents into the database. This operation assumes that
  * table data does not exist in the database and fails if this is not the case.
  * To prevent problems with foreign keys, tables must be sequenced appropriately
  * in dataset.
+ * <p>
+ * Rows that leave out different columns need different insert statements.
+ * When {@link DatabaseConfig#FEATURE_GROUP_BY_IGNORE_MAPPING} is enabled the
+ * rows of a table are grouped by the columns they leave out before they are
+ * inserted, so every distinct set of columns is sent with one batched
+ * statement. The rows keep their order within a group. Tables referencing
+ * themselves and tables that cannot be accessed randomly are inserted in
+ * dataset order.
  *
  * @author Manuel Laflamme
  * @version $Revision$
@@ -50,13 +70,96 @@ public class InsertOperation extends AbstractBatchOperation
      */
     private static final Logger logger = LoggerFactory.getLogger(InsertOperation.class);
 
-    InsertOperation()
+    protected InsertOperation()
     {
     }
 
     ////////////////////////////////////////////////////////////////////////////
     // AbstractBatchOperation class
 
+    void executeTable(IDatabaseConnection connection, ITable table,
+            IStatementFactory factory, boolean allowEmptyFields)
+            throws DatabaseUnitException, SQLException
+    {
+        if (connection.getConfig().getSnapshot().isGroupByIgnoreMapping())
+        {
+            table = groupByIgnoreMapping(connection, table);
+        }
+        super.executeTable(connection, table, factory, allowEmptyFields);
+    }
+
+    /**
+     * Returns a view of the table whose rows are ordered by ignore mapping,
+     * or the table itself if it cannot or need not be reordered.
+     */
+    ITable groupByIgnoreMapping(IDatabaseConnection connection, ITable table)
+            throws DatabaseUnitException, SQLException
+    {
+        int rowCount;
+        try
+        {
+            rowCount = table.getRowCount();
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // forward only table
+            return table;
+        }
+        if (rowCount < 2)
+        {
+            return table;
+        }
+
+        IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+        Map groups = new LinkedHashMap();
+        for (int row = 0; row < rowCount; row++)
+        {
+            BitSet ignoreMapping;
+            try
+            {
+                ignoreMapping = getIgnoreMapping(indexedTable, row);
+            }
+            catch (RowOutOfBoundsException e)
+            {
+                // row count not reliable, keep dataset order
+                return table;
+            }
+
+            List rows = (List)groups.get(ignoreMapping);
+            if (rows == null)
+            {
+                rows = new ArrayList();
+                groups.put(ignoreMapping, rows);
+            }
+            rows.add(Integer.valueOf(row));
+        }
+
+        // The foreign keys are only read if there is something to reorder
+        if (groups.size() < 2)
+        {
+            return table;
+        }
+        if (isSelfReferencing(connection, table.getTableMetaData().getTableName()))
+        {
+            return table;
+        }
+
+        int[] rowOrder = new int[rowCount];
+        int index = 0;
+        for (Iterator i = groups.values().iterator(); i.hasNext();)
+        {
+            List rows = (List)i.next();
+            for (int j = 0; j < rows.size(); j++)
+            {
+                rowOrder[index++] = ((Integer)rows.get(j)).intValue();
+            }
+        }
+
+        logger.debug("Grouped {} rows into {} ignore mappings",
+                String.valueOf(rowCount), String.valueOf(groups.size()));
+        return new ReorderedTable(table, rowOrder);
+    }
+
     public OperationData getOperationData(ITableMetaData metaData,
             BitSet ignoreMapping, IDatabaseConnection connection) throws DataSetException
     {
@@ -114,11 +217,12 @@ public class InsertOperation extends AbstractBatchOperation
 
         Column[] columns = table.getTableMetaData().getColumns();
 
+        IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
         BitSet ignoreMapping = new BitSet();
         for (int i = 0; i < columns.length; i++)
         {
             Column column = columns[i];
-            Object value = table.getValue(row, column.getColumnName());
+            Object value = indexedTable.getValue(row, i);
             if (value == ITable.NO_VALUE
                 || (value == null && column.isNotNullable() && column.hasDefaultValue()))
             {
@@ -138,11 +242,12 @@ public class InsertOperation extends AbstractBatchOperation
     	}
 
         Column[] columns = table.getTableMetaData().getColumns();
+        IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
 
         for (int i = 0; i < columns.length; i++)
         {
             boolean bit = ignoreMapping.get(i);
-            Object value = table.getValue(row, columns[i].getColumnName());
+            Object value = indexedTable.getValue(row, i);
             if ((bit && value != ITable.NO_VALUE) || (!bit && value == ITable.NO_VALUE))
             {
                 return false;
@@ -151,4 +256,52 @@ public class InsertOperation extends AbstractBatchOperation
 
         return true;
     }
+
+    /**
+     * Table view presenting the rows of another table in a given order.
+     */
+    private static class ReorderedTable implements IIndexedTable
+    {
+        private final IIndexedTable _table;
+        private final int[] _rowOrder;
+
+        ReorderedTable(ITable table, int[] rowOrder)
+        {
+            _table = DataSetUtils.getIndexedTable(table);
+            _rowOrder = rowOrder;
+        }
+
+        public ITableMetaData getTableMetaData()
+        {
+            return _table.getTableMetaData();
+        }
+
+        public int getRowCount()
+        {
+            return _rowOrder.length;
+        }
+
+        public Object getValue(int row, String column) throws DataSetException
+        {
+            if (row < 0 || row >= _rowOrder.length)
+            {
+                throw new RowOutOfBoundsException(row + " > " + _rowOrder.length);
+            }
+            return _table.getValue(_rowOrder[row], column);
+        }
+
+        public Object getValue(int row, int column) throws DataSetException
+        {
+            if (row < 0 || row >= _rowOrder.length)
+            {
+                throw new RowOutOfBoundsException(row + " > " + _rowOrder.length);
+            }
+            return _table.getValue(_rowOrder[row], column);
+        }
+
+        public boolean hasRow(int row)
+        {
+            return row >= 0 && row < _rowOrder.length;
+        }
+    }
 }
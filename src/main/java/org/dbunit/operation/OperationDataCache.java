@@ -0,0 +1,140 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.operation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Remembers the {@link OperationData} generated by a batch operation, so the
+ * SQL of a table is built only once per ignore mapping instead of on every
+ * execution. The operation metadata is created anew for each execution,
+ * therefore the entries are keyed by its content: the schema, the escape
+ * pattern, the table name, the columns including their data types, the
+ * primary keys and the ignore mapping.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+class OperationDataCache
+{
+    static final int MAX_ENTRIES = 1000;
+
+    private final Map _cache = new LinkedHashMap(16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the cached operation data or lets the operation generate it.
+     */
+    synchronized OperationData getOperationData(AbstractBatchOperation operation,
+            ITableMetaData metaData, BitSet ignoreMapping,
+            IDatabaseConnection connection) throws DataSetException
+    {
+        String escapePattern =
+                connection.getConfig().getSnapshot().getEscapePattern();
+        Key key = new Key(connection.getDatabase(), escapePattern,
+                metaData.getTableName(), metaData.getColumns(),
+                metaData.getPrimaryKeys(), ignoreMapping);
+
+        OperationData operationData = (OperationData)_cache.get(key);
+        if (operationData == null)
+        {
+            operationData = operation.getOperationData(metaData, ignoreMapping,
+                    connection);
+            _cache.put(key, operationData);
+        }
+        return operationData;
+    }
+
+    synchronized void clear()
+    {
+        _cache.clear();
+    }
+
+    private static class Key
+    {
+        private final String _schema;
+        private final String _escapePattern;
+        private final String _tableName;
+        private final Column[] _columns;
+        private final Column[] _primaryKeys;
+        private final BitSet _ignoreMapping;
+        private final int _hashCode;
+
+        Key(String schema, String escapePattern, String tableName,
+                Column[] columns, Column[] primaryKeys, BitSet ignoreMapping)
+        {
+            _schema = schema;
+            _escapePattern = escapePattern;
+            _tableName = tableName;
+            _columns = columns;
+            _primaryKeys = primaryKeys;
+            // the mapping may be reused by the caller
+            _ignoreMapping = (BitSet)ignoreMapping.clone();
+
+            int hashCode = tableName.hashCode();
+            hashCode = 31 * hashCode + (schema == null ? 0 : schema.hashCode());
+            hashCode = 31 * hashCode + Arrays.hashCode(columns);
+            hashCode = 31 * hashCode + _ignoreMapping.hashCode();
+            _hashCode = hashCode;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key)obj;
+            return _hashCode == other._hashCode
+                    && _tableName.equals(other._tableName)
+                    && equals(_schema, other._schema)
+                    && equals(_escapePattern, other._escapePattern)
+                    && _ignoreMapping.equals(other._ignoreMapping)
+                    && Arrays.equals(_columns, other._columns)
+                    && Arrays.equals(_primaryKeys, other._primaryKeys);
+        }
+
+        private static boolean equals(Object o1, Object o2)
+        {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.operation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.DatabaseSequenceFilter;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates an operation and executes it concurrently for independent tables.
+ * The dataset tables are grouped into foreign key dependency levels with
+ * {@link DatabaseSequenceFilter#getTableLevels(IDatabaseConnection, String[])}.
+ * All tables of one level are processed at the same time, each one on its
+ * own connection obtained from a {@link DataSource}, and a level starts only
+ * once the previous one has completed. Within a level the tables with the
+ * most rows are scheduled first.
+ * <p>
+ * Levels are processed lowest first for inserting operations and highest
+ * first for deleting operations, see {@link #cleanInsert(DataSource, String, int)}.
+ * Every table connection is committed after its table when auto commit is
+ * off, so the next level sees the rows. The dataset must allow random table
+ * access, streamed datasets are not supported.
+ * <p>
+ * The execution time of every table of the last execution is available
+ * through {@link #getTableTimings()}.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class ParallelOperation extends DatabaseOperation
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ParallelOperation.class);
+
+    private final DatabaseOperation _operation;
+    private final DataSource _dataSource;
+    private final String _schema;
+    private final int _threadCount;
+    private final boolean _reverseLevelOrder;
+
+    private Map _tableTimings = Collections.EMPTY_MAP;
+
+    /**
+     * Creates a parallel <code>DELETE_ALL</code> followed by a parallel
+     * <code>INSERT</code>.
+     *
+     * @param dataSource The data source providing the table connections
+     * @param schema The schema of the table connections, may be <code>null</code>
+     * @param threadCount The maximum number of tables processed at once
+     */
+    public static DatabaseOperation cleanInsert(DataSource dataSource,
+            String schema, int threadCount)
+    {
+        return new CompositeOperation(
+                new ParallelOperation(DatabaseOperation.DELETE_ALL,
+                        dataSource, schema, threadCount, true),
+                new ParallelOperation(DatabaseOperation.INSERT,
+                        dataSource, schema, threadCount, false));
+    }
+
+    /**
+     * @param operation The operation executed for each table
+     * @param dataSource The data source providing the table connections
+     * @param schema The schema of the table connections, may be <code>null</code>
+     * @param threadCount The maximum number of tables processed at once
+     * @param reverseLevelOrder <code>true</code> to process the dependent
+     * tables first, as required for deleting operations
+     */
+    public ParallelOperation(DatabaseOperation operation, DataSource dataSource,
+            String schema, int threadCount, boolean reverseLevelOrder)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException(
+                    "The thread count must be positive but is " + threadCount);
+        }
+        _operation = operation;
+        _dataSource = dataSource;
+        _schema = schema;
+        _threadCount = threadCount;
+        _reverseLevelOrder = reverseLevelOrder;
+    }
+
+    /**
+     * @return The execution time in milliseconds of each table processed by
+     * the last execution, in completion order
+     */
+    public Map getTableTimings()
+    {
+        return _tableTimings;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DatabaseOperation class
+
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+            throws DatabaseUnitException, SQLException
+    {
+        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+
+        String[][] levels = DatabaseSequenceFilter.getTableLevels(connection,
+                dataSet.getTableNames());
+        Map timings = Collections.synchronizedMap(new LinkedHashMap());
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(_threadCount, getMaxLevelSize(levels)));
+        try
+        {
+            for (int i = 0; i < levels.length; i++)
+            {
+                int level = _reverseLevelOrder ? levels.length - 1 - i : i;
+                executeLevel(executor, connection.getConfig(), dataSet,
+                        levels[level], timings);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            _tableTimings = Collections.unmodifiableMap(new LinkedHashMap(timings));
+        }
+
+        logger.info("Table timings in ms: {}", _tableTimings);
+    }
+
+    private void executeLevel(ExecutorService executor, DatabaseConfig config,
+            IDataSet dataSet, String[] tableNames, Map timings)
+            throws DatabaseUnitException, SQLException
+    {
+        List tables = new ArrayList(tableNames.length);
+        for (int i = 0; i < tableNames.length; i++)
+        {
+            tables.add(dataSet.getTable(tableNames[i]));
+        }
+
+        // Largest tables first, so they do not end up last in the level
+        Collections.sort(tables, new Comparator()
+        {
+            public int compare(Object o1, Object o2)
+            {
+                return ((ITable)o2).getRowCount() - ((ITable)o1).getRowCount();
+            }
+        });
+
+        List futures = new ArrayList(tables.size());
+        for (int i = 0; i < tables.size(); i++)
+        {
+            futures.add(executor.submit(
+                    new TableTask((ITable)tables.get(i), config, timings)));
+        }
+
+        // Wait for the whole level, then report the first failure
+        Throwable failure = null;
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                ((Future)futures.get(i)).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DatabaseUnitException("Interrupted while waiting for tables "
+                        + Arrays.asList(tableNames), e);
+            }
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (failure instanceof DatabaseUnitException)
+        {
+            throw (DatabaseUnitException)failure;
+        }
+        if (failure instanceof SQLException)
+        {
+            throw (SQLException)failure;
+        }
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+        if (failure != null)
+        {
+            throw new DatabaseUnitException(failure);
+        }
+    }
+
+    private static int getMaxLevelSize(String[][] levels)
+    {
+        int max = 1;
+        for (int i = 0; i < levels.length; i++)
+        {
+            max = Math.max(max, levels[i].length);
+        }
+        return max;
+    }
+
+    /**
+     * Copies all properties of the given configuration into the configuration
+     * of a table connection.
+     */
+    static void copyConfig(DatabaseConfig source, DatabaseConfig target)
+    {
+        DatabaseConfig.ConfigProperty[] properties = DatabaseConfig.ALL_PROPERTIES;
+        for (int i = 0; i < properties.length; i++)
+        {
+            String name = properties[i].getProperty();
+            target.setProperty(name, source.getProperty(name));
+        }
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_operation=").append(_operation);
+        sb.append(", _schema=").append(_schema);
+        sb.append(", _threadCount=").append(_threadCount);
+        sb.append(", _reverseLevelOrder=").append(_reverseLevelOrder);
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Executes the decorated operation for one table on its own connection.
+     */
+    private class TableTask implements Callable
+    {
+        private final ITable _table;
+        private final DatabaseConfig _config;
+        private final Map _timings;
+
+        TableTask(ITable table, DatabaseConfig config, Map timings)
+        {
+            _table = table;
+            _config = config;
+            _timings = timings;
+        }
+
+        public Object call() throws DatabaseUnitException, SQLException
+        {
+            String tableName = _table.getTableMetaData().getTableName();
+            long start = System.currentTimeMillis();
+
+            IDatabaseConnection connection =
+                    new DatabaseDataSourceConnection(_dataSource, _schema);
+            try
+            {
+                copyConfig(_config, connection.getConfig());
+                _operation.execute(connection, new DefaultDataSet(_table));
+
+                Connection jdbcConnection = connection.getConnection();
+                if (!jdbcConnection.getAutoCommit())
+                {
+                    jdbcConnection.commit();
+                }
+            }
+            catch (DataSetException e)
+            {
+                throw new DatabaseUnitException("Exception processing table name='"
+                        + tableName + "'", e);
+            }
+            finally
+            {
+                connection.close();
+            }
+
+            long time = System.currentTimeMillis() - start;
+            logger.debug("Processed table {} in {} ms", tableName, String.valueOf(time));
+            _timings.put(tableName, Long.valueOf(time));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.operation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
+import org.dbunit.dataset.IIndexedTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table view that reads the rows of another table in a worker thread, so
+ * reading and type casting the next rows overlaps with the execution of the
+ * current batch. The worker fills one of two preallocated row buffers while
+ * the calling thread consumes the other one. It blocks while no buffer is
+ * free, and errors of the worker are thrown on the calling thread when it
+ * reaches the failed row.
+ * <p>
+ * The rows must be accessed in ascending order starting at the start row.
+ * Call {@link #close()} when done to stop the worker.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+class PipelinedTable implements IIndexedTable
+{
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedTable.class);
+
+    static final int BUFFER_COUNT = 2;
+
+    private final ITable _table;
+    private final IIndexedTable _indexedTable;
+    private final DataType[] _dataTypes;
+    private final int _startRow;
+    private final BlockingQueue _freeBuffers = new ArrayBlockingQueue(BUFFER_COUNT);
+    private final BlockingQueue _fullBuffers = new ArrayBlockingQueue(BUFFER_COUNT);
+    private final Thread _worker;
+
+    /** The buffer consumed by the calling thread */
+    private RowBuffer _current;
+
+    /**
+     * @param table The table to read
+     * @param dataTypes The types the values of each column are cast to by the
+     * worker, <code>null</code> for values to be passed as they are
+     * @param startRow The first row to read
+     * @param bufferRows The number of rows per buffer
+     */
+    PipelinedTable(ITable table, DataType[] dataTypes, int startRow,
+            int bufferRows)
+    {
+        _table = table;
+        _indexedTable = DataSetUtils.getIndexedTable(table);
+        _dataTypes = dataTypes;
+        _startRow = startRow;
+
+        int rows = Math.max(bufferRows, 1);
+        for (int i = 0; i < BUFFER_COUNT; i++)
+        {
+            _freeBuffers.add(new RowBuffer(rows, dataTypes.length));
+        }
+
+        String tableName = table.getTableMetaData().getTableName();
+        _worker = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                readRows();
+            }
+        }, "dbunit-pipeline-" + tableName);
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+
+    /**
+     * Worker loop filling the free buffers until the end of the table.
+     */
+    private void readRows()
+    {
+        int row = _startRow;
+        try
+        {
+            while (true)
+            {
+                RowBuffer buffer = (RowBuffer)_freeBuffers.take();
+                buffer._start = row;
+                buffer._size = 0;
+                try
+                {
+                    while (buffer._size < buffer._rows.length)
+                    {
+                        if (!_indexedTable.hasRow(row))
+                        {
+                            buffer._last = true;
+                            break;
+                        }
+                        Object[] values = buffer._rows[buffer._size];
+                        for (int column = 0; column < values.length; column++)
+                        {
+                            values[column] = cast(column,
+                                    _indexedTable.getValue(row, column));
+                        }
+                        buffer._size++;
+                        row++;
+                    }
+                }
+                catch (Throwable e)
+                {
+                    buffer._last = true;
+                    buffer._error = e;
+                }
+
+                _fullBuffers.put(buffer);
+                if (buffer._last)
+                {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            logger.debug("Reading rows interrupted at row {}", String.valueOf(row));
+        }
+    }
+
+    /**
+     * Casts a value to the type of its column. Missing and empty values and
+     * values that cannot be cast are passed as they are, so the statement
+     * reports them as without pipelining.
+     */
+    private Object cast(int column, Object value)
+    {
+        DataType dataType = _dataTypes[column];
+        if (dataType == null || value == null || value == ITable.NO_VALUE
+                || "".equals(value))
+        {
+            return value;
+        }
+
+        try
+        {
+            return dataType.typeCast(value);
+        }
+        catch (TypeCastException e)
+        {
+            return value;
+        }
+    }
+
+    /**
+     * Returns the buffer containing the row or <code>null</code> at the end
+     * of the table.
+     */
+    private RowBuffer getBuffer(int row) throws DataSetException
+    {
+        if (row < (_current == null ? _startRow : _current._start))
+        {
+            throw new UnsupportedOperationException("Cannot go backward!");
+        }
+
+        while (_current == null || row >= _current._start + _current._size)
+        {
+            if (_current != null)
+            {
+                if (_current._error != null)
+                {
+                    Throwable error = _current._error;
+                    if (error instanceof RuntimeException)
+                    {
+                        throw (RuntimeException)error;
+                    }
+                    if (error instanceof Error)
+                    {
+                        throw (Error)error;
+                    }
+                    if (error instanceof DataSetException)
+                    {
+                        throw (DataSetException)error;
+                    }
+                    throw new DataSetException("Reading row "
+                            + (_current._start + _current._size) + " failed", error);
+                }
+                if (_current._last)
+                {
+                    return null;
+                }
+                _freeBuffers.add(_current);
+                _current = null;
+            }
+
+            try
+            {
+                _current = (RowBuffer)_fullBuffers.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DataSetException("Interrupted while waiting for row " + row, e);
+            }
+        }
+        return _current;
+    }
+
+    /**
+     * Stops the worker thread and waits for it.
+     */
+    void close()
+    {
+        _worker.interrupt();
+        try
+        {
+            _worker.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // ITable interface
+
+    public ITableMetaData getTableMetaData()
+    {
+        return _table.getTableMetaData();
+    }
+
+    public int getRowCount()
+    {
+        return _table.getRowCount();
+    }
+
+    public Object getValue(int row, String column) throws DataSetException
+    {
+        return getValue(row, getTableMetaData().getColumnIndex(column));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // IIndexedTable interface
+
+    public Object getValue(int row, int column) throws DataSetException
+    {
+        RowBuffer buffer = getBuffer(row);
+        if (buffer == null)
+        {
+            throw new RowOutOfBoundsException(row + " > "
+                    + (_current._start + _current._size - 1));
+        }
+        return buffer._rows[row - buffer._start][column];
+    }
+
+    public boolean hasRow(int row) throws DataSetException
+    {
+        return getBuffer(row) != null;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName()).append("[");
+        sb.append("_table=").append(_table);
+        sb.append(", _startRow=").append(_startRow);
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Rows read ahead by the worker.
+     */
+    private static class RowBuffer
+    {
+        private final Object[][] _rows;
+        private int _start;
+        private int _size;
+        private boolean _last;
+        private Throwable _error;
+
+        RowBuffer(int rows, int columns)
+        {
+            _rows = new Object[rows][columns];
+        }
+    }
+}
@@ -25,29 +25,59 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfigSnapshot;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.BindPlan;
 import org.dbunit.database.statement.IPreparedBatchStatement;
-import org.dbunit.database.statement.SimplePreparedStatement;
+import org.dbunit.database.statement.IStatementFactory;
 import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DataSetUtils;
+import org.dbunit.dataset.DefaultTable;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.IIndexedTable;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableIterator;
 import org.dbunit.dataset.ITableMetaData;
 import org.dbunit.dataset.NoPrimaryKeyException;
-import org.dbunit.dataset.RowOutOfBoundsException;
-import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
 
+import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This operation literally refreshes dataset contents into the database. This
  * means that data of existing rows is updated and non-existing row get
  * inserted. Any rows which exist in the database but not in dataset stay
  * unaffected.
+ * <p>
+ * Rows are processed in chunks of {@link DatabaseConfig#PROPERTY_KEY_CHUNK_SIZE}
+ * rows. The rows of a chunk are first updated in one batch. The rows whose
+ * update count is 0 do not exist and are then inserted in one batch, so the
+ * database decides which keys match, according to its collations. If the
+ * driver reports no update count per row, that chunk is updated again row by
+ * row and the following chunks are only updated row by row.
+ * <p>
+ * Tables consisting of primary key columns only are probed with one
+ * <code>select pk from t where pk in (...)</code> per chunk. If the database
+ * returns keys that differ from every key of the chunk, for example by case,
+ * the unmatched rows of the chunk are checked with a
+ * <code>select COUNT(*)</code> per row.
+ * <p>
+ * Rows of a chunk repeating the key of an earlier row of the same chunk are
+ * updated after the inserts. Keys that the database considers equal but
+ * that differ in the dataset, such as <code>'abc'</code> and
+ * <code>'ABC'</code> under a case insensitive collation, must not both be
+ * missing in the same chunk.
  *
  * @author Manuel Laflamme
  * @version $Revision$
@@ -82,7 +112,11 @@ public class RefreshOperation extends AbstractOperation
             throws DatabaseUnitException, SQLException
     {
         logger.debug("execute(connection={}, dataSet) - start", connection);
-        
+
+        DatabaseConfigSnapshot config = connection.getConfig().getSnapshot();
+        IStatementFactory factory = config.getStatementFactory();
+        int chunkSize = config.getKeyChunkSize();
+
         // for each table
         ITableIterator iterator = dataSet.iterator();
         while (iterator.next())
@@ -100,28 +134,36 @@ public class RefreshOperation extends AbstractOperation
 
             ITableMetaData metaData = getOperationMetaData(connection,
                     table.getTableMetaData());
-            RowOperation updateRowOperation = createUpdateOperation(connection,
-                    metaData);
-            RowOperation insertRowOperation = new InsertRowOperation(connection,
+            TableRefresh tableRefresh = new TableRefresh(connection, factory,
                     metaData);
 
             try
             {
-                // refresh all rows
-                for (int i = 0; ; i++)
+                // The rows of a chunk are copied, forward only tables
+                // cannot be read twice
+                Column[] columns = table.getTableMetaData().getColumns();
+                IIndexedTable indexedTable = DataSetUtils.getIndexedTable(table);
+                DefaultTable chunk = new DefaultTable(table.getTableMetaData());
+                for (int i = 0; indexedTable.hasRow(i); i++)
                 {
-                    if (!updateRowOperation.execute(table, i))
+                    Object[] values = new Object[columns.length];
+                    for (int j = 0; j < columns.length; j++)
                     {
-                        insertRowOperation.execute(table, i);
+                        values[j] = indexedTable.getValue(i, j);
+                    }
+                    chunk.addRow(values);
+
+                    if (chunk.getRowCount() == chunkSize)
+                    {
+                        tableRefresh.execute(chunk);
+                        chunk = new DefaultTable(table.getTableMetaData());
                     }
                 }
-            }
-            catch (RowOutOfBoundsException e)
-            {
-            	// This exception occurs when records are exhausted
-            	// and we reach the end of the table.  Ignore this error.
 
-                // end of table
+                if (chunk.getRowCount() > 0)
+                {
+                    tableRefresh.execute(chunk);
+                }
             }
             catch (SQLException e)
             {
@@ -132,248 +174,460 @@ public class RefreshOperation extends AbstractOperation
             finally
             {
                 // cleanup
-                updateRowOperation.close();
-                insertRowOperation.close();
+                tableRefresh.close();
             }
         }
 
     }
 
-    private RowOperation createUpdateOperation(IDatabaseConnection connection,
-            ITableMetaData metaData)
-            throws DataSetException, SQLException
-    {
-        logger.debug("createUpdateOperation(connection={}, metaData={}) - start", connection, metaData);
-
-        // update only if columns are not all primary keys
-        if (metaData.getColumns().length > metaData.getPrimaryKeys().length)
-        {
-            return new UpdateRowOperation(connection, metaData);
-        }
-
-        // otherwise, operation only verify if row exist
-        return new RowExistOperation(connection,  metaData);
-    }
-
     /**
-     * This class represents a operation executed on a single table row.
+     * Refreshes the rows of one table, one chunk at a time.
      */
-    class RowOperation
+    private class TableRefresh
     {
 
         /**
          * Logger for this class
          */
-        private final Logger logger = LoggerFactory.getLogger(RowOperation.class);
+        private final Logger logger = LoggerFactory.getLogger(TableRefresh.class);
+
+        private final IDatabaseConnection _connection;
+        private final IStatementFactory _factory;
+        private final ITableMetaData _metaData;
+        private final Column[] _primaryKeys;
+        private final BindPlan _bindPlan;
+
+        /** <code>null</code> if all columns are primary keys */
+        private OperationData _updateData;
+        private PreparedStatement _updateStatement;
+
+        /** <code>false</code> once the driver reported no update count per row */
+        private boolean _batchUpdateCounts = true;
+
+        /** Existence probe for <code>_probeKeyCount</code> keys, used if all
+         * columns are primary keys */
+        private PreparedStatement _probeStatement;
+        private int _probeKeyCount;
 
-        protected IPreparedBatchStatement _statement;
-        protected OperationData _operationData;
-        protected BitSet _ignoreMapping;
+        /** Existence check of a single key, used if the probe is ambiguous */
+        private PreparedStatement _countStatement;
+
+        private OperationData _insertData;
+        private BitSet _insertIgnoreMapping;
+        private IPreparedBatchStatement _insertStatement;
+
+        public TableRefresh(IDatabaseConnection connection,
+                IStatementFactory factory, ITableMetaData metaData)
+                throws DataSetException
+        {
+            _connection = connection;
+            _factory = factory;
+            _metaData = metaData;
+            _bindPlan = new BindPlan(connection.getConfig().getSnapshot()
+                    .getRawStringBinding());
+
+            // cannot construct where clause if no primary key
+            _primaryKeys = metaData.getPrimaryKeys();
+            if (_primaryKeys.length == 0)
+            {
+                throw new NoPrimaryKeyException(metaData.getTableName());
+            }
+
+            // update only if columns are not all primary keys
+            if (metaData.getColumns().length > _primaryKeys.length)
+            {
+                _updateData = _updateOperation.getOperationData(metaData,
+                        null, connection);
+            }
+        }
 
         /**
-         * Execute this operation on the sepcified table row.
-         * @return <code>true</code> if operation have been executed on the row.
+         * Refreshes all rows of the specified chunk.
          */
-        public boolean execute(ITable table, int row)
-                throws DataSetException, SQLException
+        public void execute(ITable chunk) throws DataSetException, SQLException
         {
-            logger.debug("execute(table={}, row={}) - start", table, String.valueOf(row));
+            int rowCount = chunk.getRowCount();
+            logger.debug("execute(rowCount={}) - start", String.valueOf(rowCount));
 
-            Column[] columns = _operationData.getColumns();
-            for (int i = 0; i < columns.length; i++)
+            // update existing rows first, the database tells which exist
+            boolean[] exists = _updateData != null ? update(chunk) : selectExisting(chunk);
+
+            // then insert the others. Rows repeating the key of a row
+            // inserted by this chunk are updated afterwards
+            Set insertedKeys = new HashSet();
+            List repeatedRows = new ArrayList();
+            for (int row = 0; row < rowCount; row++)
             {
-                // Bind value only if not in ignore mapping
-                if (_ignoreMapping == null || !_ignoreMapping.get(i))
+                if (!exists[row])
                 {
-                    Object value = table.getValue(row, columns[i].getColumnName());
-                    _statement.addValue(value, columns[i].getDataType());
+                    if (insertedKeys.add(getKey(chunk, row)))
+                    {
+                        addInsertRow(chunk, row);
+                    }
+                    else
+                    {
+                        repeatedRows.add(Integer.valueOf(row));
+                    }
                 }
             }
-            _statement.addBatch();
-            int result = _statement.executeBatch();
-            _statement.clearBatch();
+            if (_insertStatement != null)
+            {
+                _insertStatement.executeBatch();
+                _insertStatement.clearBatch();
+            }
 
-            return result == 1;
+            if (_updateData != null && !repeatedRows.isEmpty())
+            {
+                for (int i = 0; i < repeatedRows.size(); i++)
+                {
+                    bindUpdate(chunk, ((Integer)repeatedRows.get(i)).intValue());
+                    _updateStatement.addBatch();
+                }
+                _updateStatement.executeBatch();
+            }
         }
 
         /**
-         * Cleanup this operation state.
+         * Updates the rows of the chunk in one batch.
+         *
+         * @return Whether each row matched a row of the database
          */
-        public void close() throws SQLException
+        private boolean[] update(ITable chunk) throws DataSetException, SQLException
         {
-            logger.debug("close() - start");
+            int rowCount = chunk.getRowCount();
+            if (_updateStatement == null)
+            {
+                _updateStatement = _connection.getConnection().prepareStatement(
+                        _updateData.getSql());
+            }
+            if (!_batchUpdateCounts)
+            {
+                return updateRowByRow(chunk);
+            }
 
-            if (_statement != null)
+            for (int row = 0; row < rowCount; row++)
             {
-                _statement.close();
+                bindUpdate(chunk, row);
+                _updateStatement.addBatch();
             }
-        }
-    }
+            int[] updateCounts = _updateStatement.executeBatch();
 
-    /**
-     * Insert row operation.
-     */
-    private class InsertRowOperation extends RowOperation
-    {
+            boolean[] updated = new boolean[rowCount];
+            boolean countsKnown = updateCounts.length == rowCount;
+            for (int row = 0; countsKnown && row < rowCount; row++)
+            {
+                countsKnown = updateCounts[row] >= 0;
+                updated[row] = updateCounts[row] > 0;
+            }
+            if (!countsKnown)
+            {
+                // The driver does not report the count of each row, update
+                // this chunk again one by one, which leaves the rows
+                // unchanged, and skip the batch for the next chunks
+                logger.debug("No update count per row, updating row by row");
+                _batchUpdateCounts = false;
+                return updateRowByRow(chunk);
+            }
+            return updated;
+        }
 
         /**
-         * Logger for this class
+         * Updates the rows of the chunk one by one.
+         *
+         * @return Whether each row matched a row of the database
          */
-        private final Logger logger = LoggerFactory.getLogger(InsertRowOperation.class);
-
-        private IDatabaseConnection _connection;
-        private ITableMetaData _metaData;
-
-        public InsertRowOperation(IDatabaseConnection connection,
-                ITableMetaData metaData)
+        private boolean[] updateRowByRow(ITable chunk)
                 throws DataSetException, SQLException
         {
-            _connection = connection;
-            _metaData = metaData;
+            int rowCount = chunk.getRowCount();
+            boolean[] updated = new boolean[rowCount];
+            for (int row = 0; row < rowCount; row++)
+            {
+                bindUpdate(chunk, row);
+                updated[row] = _updateStatement.executeUpdate() > 0;
+            }
+            return updated;
         }
 
-        public boolean execute(ITable table, int row)
+        private void bindUpdate(ITable chunk, int row)
                 throws DataSetException, SQLException
         {
-            logger.debug("execute(table={}, row={}) - start", table, String.valueOf(row));
+            Column[] columns = _updateData.getColumns();
+            for (int i = 0; i < columns.length; i++)
+            {
+                Object value = chunk.getValue(row, columns[i].getColumnName());
+                _bindPlan.bind(_updateStatement, i + 1, value, columns[i].getDataType());
+            }
+        }
 
-            // If current row has a different ignore value mapping than
-            // previous one, we generate a new statement
-            if (_ignoreMapping == null ||
-                    !_insertOperation.equalsIgnoreMapping(_ignoreMapping, table, row))
+        /**
+         * Checks the existence of each row of the chunk with one probe, for
+         * tables that have primary key columns only.
+         *
+         * @return Whether each row exists in the database
+         */
+        private boolean[] selectExisting(ITable chunk)
+                throws DataSetException, SQLException
+        {
+            int rowCount = chunk.getRowCount();
+            if (_probeStatement == null || _probeKeyCount != rowCount)
             {
-                // Execute and close previous statement
-                if (_statement != null)
+                if (_probeStatement != null)
                 {
-                    _statement.close();
+                    _probeStatement.close();
+                    _probeStatement = null;
                 }
-
-                _ignoreMapping = _insertOperation.getIgnoreMapping(table, row);
-                _operationData = _insertOperation.getOperationData(_metaData,
-                        _ignoreMapping, _connection);
-                _statement = new SimplePreparedStatement(_operationData.getSql(),
-                        _connection.getConnection());
+                _probeStatement = _connection.getConnection().prepareStatement(
+                        getProbeSql(rowCount));
+                _probeKeyCount = rowCount;
             }
 
-            return super.execute(table, row);
-        }
+            int index = 1;
+            for (int row = 0; row < rowCount; row++)
+            {
+                for (int i = 0; i < _primaryKeys.length; i++)
+                {
+                    Object value = chunk.getValue(row, _primaryKeys[i].getColumnName());
+                    _bindPlan.bind(_probeStatement, index++, value,
+                            _primaryKeys[i].getDataType());
+                }
+            }
 
-    }
+            Set foundKeys = new HashSet();
+            ResultSet resultSet = _probeStatement.executeQuery();
+            try
+            {
+                while (resultSet.next())
+                {
+                    Object[] values = new Object[_primaryKeys.length];
+                    for (int i = 0; i < _primaryKeys.length; i++)
+                    {
+                        values[i] = resultSet.getObject(i + 1);
+                    }
+                    foundKeys.add(new Key(values, _primaryKeys));
+                }
+            }
+            finally
+            {
+                resultSet.close();
+            }
 
-    /**
-     * Update row operation.
-     */
-    private class UpdateRowOperation extends RowOperation
-    {
-        PreparedStatement _countStatement;
+            boolean[] exists = new boolean[rowCount];
+            Set matchedKeys = new HashSet();
+            for (int row = 0; row < rowCount; row++)
+            {
+                Key key = getKey(chunk, row);
+                if (foundKeys.contains(key))
+                {
+                    exists[row] = true;
+                    matchedKeys.add(key);
+                }
+            }
 
-        public UpdateRowOperation(IDatabaseConnection connection,
-                ITableMetaData metaData)
-                throws DataSetException, SQLException
-        {
-            // setup update statement
-            _operationData = _updateOperation.getOperationData(
-                    metaData, null, connection);
-            _statement = new SimplePreparedStatement(_operationData.getSql(),
-                    connection.getConnection());
+            // The database matched keys that differ in the dataset, let it
+            // decide for each of the remaining rows
+            if (matchedKeys.size() < foundKeys.size())
+            {
+                for (int row = 0; row < rowCount; row++)
+                {
+                    if (!exists[row])
+                    {
+                        exists[row] = countRow(chunk, row);
+                    }
+                }
+            }
+            return exists;
         }
-    }
-
-    /**
-     * This operation verify if a row exists in the database.
-     */
-    private class RowExistOperation extends RowOperation
-    {
 
         /**
-         * Logger for this class
+         * @return Whether the key of the row exists in the database
          */
-        private final Logger logger = LoggerFactory.getLogger(RowExistOperation.class);
-
-        PreparedStatement _countStatement;
-
-        public RowExistOperation(IDatabaseConnection connection,
-                ITableMetaData metaData)
+        private boolean countRow(ITable chunk, int row)
                 throws DataSetException, SQLException
         {
-            // setup select count statement
-            _operationData = getSelectCountData(metaData, connection);
-            _countStatement = connection.getConnection().prepareStatement(
-                    _operationData.getSql());
-        }
+            if (_countStatement == null)
+            {
+                _countStatement = _connection.getConnection().prepareStatement(
+                        getSelectCountSql());
+            }
 
-        private OperationData getSelectCountData(
-                ITableMetaData metaData, IDatabaseConnection connection) throws DataSetException
-        {
-            logger.debug("getSelectCountData(metaData={}, connection={}) - start", metaData, connection);
+            for (int i = 0; i < _primaryKeys.length; i++)
+            {
+                Object value = chunk.getValue(row, _primaryKeys[i].getColumnName());
+                _bindPlan.bind(_countStatement, i + 1, value,
+                        _primaryKeys[i].getDataType());
+            }
 
-            Column[] primaryKeys = metaData.getPrimaryKeys();
+            ResultSet resultSet = _countStatement.executeQuery();
+            try
+            {
+                resultSet.next();
+                return resultSet.getInt(1) > 0;
+            }
+            finally
+            {
+                resultSet.close();
+            }
+        }
 
-            // cannot construct where clause if no primary key
-            if (primaryKeys.length == 0)
+        /**
+         * Returns <code>select pk from t where pk in (?, ...)</code> for the
+         * given number of keys.
+         */
+        private String getProbeSql(int keyCount)
+        {
+            StringBuilder sqlBuffer = new StringBuilder(128);
+            sqlBuffer.append("select ");
+            for (int i = 0; i < _primaryKeys.length; i++)
             {
-                throw new NoPrimaryKeyException(metaData.getTableName());
+                if (i > 0)
+                {
+                    sqlBuffer.append(", ");
+                }
+                sqlBuffer.append(getQualifiedName(null,
+                        _primaryKeys[i].getColumnName(), _connection));
             }
+            sqlBuffer.append(" from ");
+            sqlBuffer.append(getQualifiedName(_connection.getDatabase(),
+                    _metaData.getTableName(), _connection));
+            sqlBuffer.append(" where ");
+            sqlBuffer.append(getKeyListCondition(_primaryKeys, keyCount, _connection));
+            return sqlBuffer.toString();
+        }
 
-            // select count
+        /**
+         * Returns <code>select COUNT(*) from t where pk = ?</code>.
+         */
+        private String getSelectCountSql()
+        {
             StringBuilder sqlBuffer = new StringBuilder(128);
             sqlBuffer.append("select COUNT(*) from ");
-            sqlBuffer.append(getQualifiedName(connection.getDatabase(), metaData.getTableName(), connection));
+            sqlBuffer.append(getQualifiedName(_connection.getDatabase(),
+                    _metaData.getTableName(), _connection));
 
             // where
             sqlBuffer.append(" where ");
-            for (int i = 0; i < primaryKeys.length; i++)
+            for (int i = 0; i < _primaryKeys.length; i++)
             {
-                Column column = primaryKeys[i];
-
                 if (i > 0)
                 {
                     sqlBuffer.append(" and ");
                 }
-                sqlBuffer.append(getQualifiedName(null, column.getColumnName(), connection));
+                sqlBuffer.append(getQualifiedName(null,
+                        _primaryKeys[i].getColumnName(), _connection));
                 sqlBuffer.append(" = ?");
             }
-
-            return new OperationData(sqlBuffer.toString(), primaryKeys);
+            return sqlBuffer.toString();
         }
 
-        ////////////////////////////////////////////////////////////////////////
-        // RowOperation class
+        private Key getKey(ITable chunk, int row) throws DataSetException
+        {
+            Object[] values = new Object[_primaryKeys.length];
+            for (int i = 0; i < _primaryKeys.length; i++)
+            {
+                values[i] = chunk.getValue(row, _primaryKeys[i].getColumnName());
+            }
+            return new Key(values, _primaryKeys);
+        }
 
-        /**
-         * Verify if the specified table row exists in the database.
-         * @return <code>true</code> if row exists.
-         */
-        public boolean execute(ITable table, int row)
+        private void addInsertRow(ITable chunk, int row)
                 throws DataSetException, SQLException
         {
-            logger.debug("execute(table={}, row={}) - start", table, String.valueOf(row));
+            // If current row has a different ignore value mapping than
+            // previous one, we generate a new statement
+            if (_insertIgnoreMapping == null ||
+                    !_insertOperation.equalsIgnoreMapping(_insertIgnoreMapping, chunk, row))
+            {
+                // Execute and close previous statement
+                if (_insertStatement != null)
+                {
+                    _insertStatement.executeBatch();
+                    _insertStatement.clearBatch();
+                    _insertStatement.close();
+                }
 
-            Column[] columns = _operationData.getColumns();
+                _insertIgnoreMapping = _insertOperation.getIgnoreMapping(chunk, row);
+                _insertData = _insertOperation.getOperationData(_metaData,
+                        _insertIgnoreMapping, _connection);
+                _insertStatement = _factory.createPreparedBatchStatement(
+                        _insertData.getSql(), _connection);
+            }
+
+            Column[] columns = _insertData.getColumns();
             for (int i = 0; i < columns.length; i++)
             {
-                Object value = table.getValue(row, columns[i].getColumnName());
-                DataType dataType = columns[i].getDataType();
-                dataType.setSqlValue(value, i + 1, _countStatement);
+                // Bind value only if not in ignore mapping
+                if (!_insertIgnoreMapping.get(i))
+                {
+                    Object value = chunk.getValue(row, columns[i].getColumnName());
+                    _insertStatement.addValue(value, columns[i].getDataType());
+                }
             }
+            _insertStatement.addBatch();
+        }
 
-            ResultSet resultSet = _countStatement.executeQuery();
-            try
+        /**
+         * Cleanup this operation state.
+         */
+        public void close() throws SQLException
+        {
+            logger.debug("close() - start");
+
+            if (_probeStatement != null)
             {
-                resultSet.next();
-                return resultSet.getInt(1) > 0;
+                _probeStatement.close();
             }
-            finally
+            if (_countStatement != null)
             {
-                resultSet.close();
+                _countStatement.close();
+            }
+            if (_insertStatement != null)
+            {
+                _insertStatement.close();
+            }
+            if (_updateStatement != null)
+            {
+                _updateStatement.close();
             }
         }
+    }
 
-        public void close() throws SQLException
+    /**
+     * Primary key values of a dataset row, used to find rows repeating a key
+     * within a chunk.
+     */
+    private static class Key
+    {
+        private final Object[] _values;
+
+        Key(Object[] rawValues, Column[] primaryKeys) throws TypeCastException
         {
-            logger.debug("close() - start");
+            _values = new Object[rawValues.length];
+            for (int i = 0; i < rawValues.length; i++)
+            {
+                Object value = primaryKeys[i].getDataType().typeCast(rawValues[i]);
+                if (value instanceof BigDecimal)
+                {
+                    // Same number with different scale must be equal
+                    BigDecimal number = (BigDecimal)value;
+                    value = number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+                }
+                _values[i] = value;
+            }
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            return Arrays.deepEquals(_values, ((Key)obj)._values);
+        }
 
-            _countStatement.close();
+        public int hashCode()
+        {
+            return Arrays.deepHashCode(_values);
         }
     }
 
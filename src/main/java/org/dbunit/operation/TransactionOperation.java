@@ -33,6 +33,12 @@ import java.sql.SQLException;
 
 /**
  * Decorates an operation and executes within the context of a transaction.
+ * <p>
+ * If {@link org.dbunit.database.DatabaseConfig#PROPERTY_COMMIT_INTERVAL} or
+ * {@link org.dbunit.database.DatabaseConfig#PROPERTY_COMMIT_BYTE_INTERVAL} is
+ * set, the batch operations commit in chunks within this transaction. A
+ * failure then only rolls back the rows since the last commit, see
+ * {@link org.dbunit.database.CommitProgress} to resume from there.
  *
  * @author Manuel Laflamme
  * @version $Revision$
@@ -24,10 +24,9 @@ package org.dbunit.operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.dbunit.DatabaseUnitException;
-import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
-import org.dbunit.dataset.IDataSet;
+import org.dbunit.database.statement.IBatchStatement;
+import org.dbunit.database.statement.IStatementFactory;
 
 import java.sql.SQLException;
 
@@ -67,25 +66,55 @@ public class TruncateTableOperation extends DeleteAllOperation
         return "truncate table ";
     }
 
-    ////////////////////////////////////////////////////////////////////////////
-    // DatabaseOperation class
+    /**
+     * Executes the truncate commands one by one instead of in a batch,
+     * to make it work with MS SQL Server. The statement still comes from the
+     * connection's statement factory.
+     */
+    protected IBatchStatement createBatchStatement(IDatabaseConnection connection)
+            throws SQLException
+    {
+        logger.debug("createBatchStatement(connection={}) - start", connection);
 
-    public void execute(IDatabaseConnection connection, IDataSet dataSet)
-            throws DatabaseUnitException, SQLException
+        IStatementFactory statementFactory = connection.getStatementFactory();
+        return new ImmediateStatement(statementFactory.createBatchStatement(connection));
+    }
+
+    /**
+     * Executes each command as soon as it is added.
+     */
+    private static class ImmediateStatement implements IBatchStatement
     {
-        logger.debug("execute(connection={}, dataSet={}) - start", connection, dataSet);
+        private final IBatchStatement _statement;
+        private int _result;
+
+        ImmediateStatement(IBatchStatement statement)
+        {
+            _statement = statement;
+        }
+
+        public void addBatch(String sql) throws SQLException
+        {
+            _statement.addBatch(sql);
+            _result += _statement.executeBatch();
+            _statement.clearBatch();
+        }
 
-        // Patch to make it work with MS SQL Server
-        DatabaseConfig config = connection.getConfig();
-        boolean oldValue = config.getFeature(DatabaseConfig.FEATURE_BATCHED_STATEMENTS);
-        try
+        public int executeBatch() throws SQLException
         {
-            config.setFeature(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, false);
-            super.execute(connection, dataSet);
+            int result = _result;
+            _result = 0;
+            return result;
         }
-        finally
+
+        public void clearBatch() throws SQLException
+        {
+            _statement.clearBatch();
+        }
+
+        public void close() throws SQLException
         {
-            config.setFeature(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, oldValue);
+            _statement.close();
         }
     }
 }
@@ -391,6 +391,35 @@ public class SQLHelper {
             logger.debug(msg, tableName, columnName, e);
         }
 
+        return createColumn(tableName, columnName, sqlType, sqlTypeName,
+                nullable, remarks, columnDefaultValue, isAutoIncrement,
+                dataTypeFactory, datatypeWarning);
+    }
+
+    /**
+     * Utility method to create a {@link Column} object from column metadata
+     * read from any source, for example the <code>INFORMATION_SCHEMA</code>.
+     *
+     * @param tableName          The name of the table the column belongs to
+     * @param columnName         The name of the column
+     * @param sqlType            The JDBC type from {@link java.sql.Types}
+     * @param sqlTypeName        The database specific type name
+     * @param nullable           The nullability as in {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * @param remarks            The comment describing the column
+     * @param columnDefaultValue The default value of the column
+     * @param isAutoIncrement    <code>YES</code>, <code>NO</code> or an empty string
+     * @param dataTypeFactory    The factory used to lookup the {@link DataType} for this column
+     * @param datatypeWarning    Whether or not a warning should be printed if the column could not
+     *                           be created because of an unknown datatype.
+     * @return The {@link Column} or <code>null</code> if the column could not be initialized because of an
+     * unknown datatype.
+     * @throws DataTypeException
+     * @since 2.7.5
+     */
+    public static final Column createColumn(String tableName, String columnName,
+                                            int sqlType, String sqlTypeName, int nullable, String remarks,
+                                            String columnDefaultValue, String isAutoIncrement,
+                                            IDataTypeFactory dataTypeFactory, boolean datatypeWarning) throws DataTypeException {
         // Convert SQL type to DataType
         DataType dataType =
                 dataTypeFactory.createDataType(sqlType, sqlTypeName, tableName, columnName);
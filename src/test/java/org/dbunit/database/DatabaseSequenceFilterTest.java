@@ -0,0 +1,105 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the dependency levels of {@link DatabaseSequenceFilter} against an
+ * in-memory HSQLDB schema.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class DatabaseSequenceFilterTest extends TestCase
+{
+    private Connection _jdbcConnection;
+    private IDatabaseConnection _connection;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Class.forName("org.hsqldb.jdbcDriver");
+        _jdbcConnection = DriverManager.getConnection(
+                "jdbc:hsqldb:mem:sequencefilter", "sa", "");
+        Statement statement = _jdbcConnection.createStatement();
+        try
+        {
+            statement.execute("CREATE TABLE PARENT (ID INT PRIMARY KEY)");
+            statement.execute("CREATE TABLE CHILD (ID INT PRIMARY KEY,"
+                    + " PARENT_ID INT, FOREIGN KEY (PARENT_ID) REFERENCES PARENT (ID))");
+            statement.execute("CREATE TABLE GRANDCHILD (ID INT PRIMARY KEY,"
+                    + " CHILD_ID INT, PARENT_ID INT,"
+                    + " FOREIGN KEY (CHILD_ID) REFERENCES CHILD (ID),"
+                    + " FOREIGN KEY (PARENT_ID) REFERENCES PARENT (ID))");
+            statement.execute("CREATE TABLE SINGLE (ID INT PRIMARY KEY)");
+        }
+        finally
+        {
+            statement.close();
+        }
+        _connection = new DatabaseConnection(_jdbcConnection);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        Statement statement = _jdbcConnection.createStatement();
+        try
+        {
+            statement.execute("SHUTDOWN");
+        }
+        finally
+        {
+            statement.close();
+            _jdbcConnection.close();
+        }
+        super.tearDown();
+    }
+
+    public void testGetTableLevelsParentsFirst() throws Exception
+    {
+        String[][] levels = DatabaseSequenceFilter.getTableLevels(_connection,
+                new String[] {"GRANDCHILD", "CHILD", "SINGLE", "PARENT"});
+
+        assertEquals(3, levels.length);
+        assertEquals(Arrays.asList(new String[] {"SINGLE", "PARENT"}),
+                Arrays.asList(levels[0]));
+        assertEquals(Arrays.asList(new String[] {"CHILD"}), Arrays.asList(levels[1]));
+        assertEquals(Arrays.asList(new String[] {"GRANDCHILD"}), Arrays.asList(levels[2]));
+    }
+
+    public void testGetTableLevelsIgnoresTablesNotGiven() throws Exception
+    {
+        String[][] levels = DatabaseSequenceFilter.getTableLevels(_connection,
+                new String[] {"GRANDCHILD", "PARENT"});
+
+        assertEquals(2, levels.length);
+        assertEquals(Arrays.asList(new String[] {"PARENT"}), Arrays.asList(levels[0]));
+        assertEquals(Arrays.asList(new String[] {"GRANDCHILD"}), Arrays.asList(levels[1]));
+    }
+}
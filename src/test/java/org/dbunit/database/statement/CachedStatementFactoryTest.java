@@ -0,0 +1,187 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Checks that {@link CachedStatementFactory} hands out usable statements
+ * after a failed use, on an in-memory HSQLDB database.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class CachedStatementFactoryTest extends TestCase
+{
+    private static final String INSERT_SQL = "INSERT INTO T (A, B) VALUES (?, ?)";
+
+    private Connection _jdbcConnection;
+    private IDatabaseConnection _connection;
+    private CachedStatementFactory _factory;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Class.forName("org.hsqldb.jdbcDriver");
+        _jdbcConnection = DriverManager.getConnection(
+                "jdbc:hsqldb:mem:statementcache", "sa", "");
+        execute("CREATE TABLE T (A INT, B INT)");
+        _connection = new DatabaseConnection(_jdbcConnection);
+        _connection.getConfig().setProperty(
+                DatabaseConfig.FEATURE_BATCHED_STATEMENTS, Boolean.TRUE);
+        _factory = new CachedStatementFactory(new PreparedStatementFactory(), 10);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        _factory.clear();
+        execute("SHUTDOWN");
+        _jdbcConnection.close();
+        super.tearDown();
+    }
+
+    public void testReuseAfterTypeCastFailure() throws Exception
+    {
+        IPreparedBatchStatement statement =
+                _factory.createPreparedBatchStatement(INSERT_SQL, _connection);
+        try
+        {
+            statement.addValue(Integer.valueOf(1), DataType.INTEGER);
+            statement.addValue("not a number", DataType.INTEGER);
+            fail("Should not cast the value");
+        }
+        catch (TypeCastException expected)
+        {
+        }
+        finally
+        {
+            statement.close();
+        }
+
+        statement = _factory.createPreparedBatchStatement(INSERT_SQL, _connection);
+        try
+        {
+            statement.addValue(Integer.valueOf(2), DataType.INTEGER);
+            statement.addValue(Integer.valueOf(3), DataType.INTEGER);
+            statement.addBatch();
+            assertEquals(1, statement.executeBatch());
+        }
+        finally
+        {
+            statement.close();
+        }
+
+        assertEquals("2,3;", selectAll());
+        assertEquals("failed statement is not reused", 0, _factory.getHitCount());
+    }
+
+    public void testReuseAfterSuccess() throws Exception
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            IPreparedBatchStatement statement =
+                    _factory.createPreparedBatchStatement(INSERT_SQL, _connection);
+            try
+            {
+                statement.addValue(Integer.valueOf(i), DataType.INTEGER);
+                statement.addValue(Integer.valueOf(i), DataType.INTEGER);
+                statement.addBatch();
+                assertEquals("count of this use only", 1, statement.executeBatch());
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+
+        assertEquals("0,0;1,1;", selectAll());
+        assertEquals(1, _factory.getHitCount());
+        assertEquals(1, _factory.getMissCount());
+    }
+
+    public void testClearBatchResetsParameterIndex() throws Exception
+    {
+        PreparedBatchStatement statement =
+                new PreparedBatchStatement(INSERT_SQL, _jdbcConnection);
+        try
+        {
+            statement.addValue(Integer.valueOf(1), DataType.INTEGER);
+            statement.clearBatch();
+            statement.addValue(Integer.valueOf(4), DataType.INTEGER);
+            statement.addValue(Integer.valueOf(5), DataType.INTEGER);
+            statement.addBatch();
+            assertEquals(1, statement.executeBatch());
+        }
+        finally
+        {
+            statement.close();
+        }
+
+        assertEquals("4,5;", selectAll());
+    }
+
+    private void execute(String sql) throws Exception
+    {
+        Statement statement = _jdbcConnection.createStatement();
+        try
+        {
+            statement.execute(sql);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private String selectAll() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        Statement statement = _jdbcConnection.createStatement();
+        try
+        {
+            ResultSet resultSet = statement.executeQuery("SELECT A, B FROM T ORDER BY A");
+            while (resultSet.next())
+            {
+                sb.append(resultSet.getInt(1)).append(",");
+                sb.append(resultSet.getInt(2)).append(";");
+            }
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+        return sb.toString();
+    }
+}
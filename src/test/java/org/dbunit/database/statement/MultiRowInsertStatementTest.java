@@ -0,0 +1,61 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.database.statement;
+
+import junit.framework.TestCase;
+
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Tests {@link MultiRowInsertStatement}.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class MultiRowInsertStatementTest extends TestCase
+{
+    public void testAddValueCastsValue() throws Exception
+    {
+        MultiRowInsertStatement statement = new MultiRowInsertStatement(
+                "INSERT INTO T (A, B) VALUES ", "(?, ?)", "", 2, 2, null,
+                new BindPlan());
+        try
+        {
+            statement.addValue("1", DataType.INTEGER);
+            // Rejected here, not when the full chunk is bound
+            try
+            {
+                statement.addValue("not a number", DataType.INTEGER);
+                fail("Expected a TypeCastException");
+            }
+            catch (TypeCastException expected)
+            {
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.dataset.datatype;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link TimestampDataType#parseTimestamp(String)} gives the same
+ * results as the general regex and <code>BigInteger</code> based parsing,
+ * on random values in several time zones.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class TimestampDataTypeTest extends TestCase
+{
+    private static final String[] TIME_ZONES = {
+        "UTC",
+        "Europe/Berlin",
+        "America/New_York",
+        "Asia/Kolkata",
+        "Australia/Lord_Howe",
+        "America/Sao_Paulo"
+    };
+
+    private static final int VALUES_PER_TIME_ZONE = 20000;
+
+    private static final BigInteger ONE_BILLION = new BigInteger("1000000000");
+    private static final Pattern TIMEZONE_REGEX = Pattern.compile("(.*)(?:\\W([+-][0-2][0-9][0-5][0-9]))");
+
+    private TimeZone _defaultTimeZone;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _defaultTimeZone = TimeZone.getDefault();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        TimeZone.setDefault(_defaultTimeZone);
+        super.tearDown();
+    }
+
+    public void testParseTimestampMatchesGeneralParsing() throws Exception
+    {
+        Random random = new Random(20081017L);
+        for (int i = 0; i < TIME_ZONES.length; i++)
+        {
+            TimeZone.setDefault(TimeZone.getTimeZone(TIME_ZONES[i]));
+
+            int parsed = 0;
+            int parsedZoned = 0;
+            int parsedPreEpoch = 0;
+            for (int j = 0; j < VALUES_PER_TIME_ZONE; j++)
+            {
+                String value = randomTimestamp(random);
+                Timestamp expected;
+                try
+                {
+                    expected = parseReference(value);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Zoned values before the epoch may give negative nanos
+                    assertNull(value + " in " + TIME_ZONES[i],
+                            TimestampDataType.parseTimestamp(value));
+                    continue;
+                }
+
+                Timestamp actual = TimestampDataType.parseTimestamp(value);
+                if (actual != null)
+                {
+                    assertEquals(value + " in " + TIME_ZONES[i], expected, actual);
+                    assertEquals(value + " in " + TIME_ZONES[i],
+                            expected.getNanos(), actual.getNanos());
+                    parsed++;
+                    if (value.indexOf('+') >= 0 || value.lastIndexOf('-') > 7)
+                    {
+                        parsedZoned++;
+                    }
+                    if (actual.getTime() < 0)
+                    {
+                        parsedPreEpoch++;
+                    }
+                }
+                assertEquals(value + " in " + TIME_ZONES[i], expected,
+                        DataType.TIMESTAMP.typeCast(value));
+            }
+
+            // The fast path must cover the common cases, not fall back always
+            assertTrue(TIME_ZONES[i] + ": " + parsed, parsed > VALUES_PER_TIME_ZONE / 2);
+            assertTrue(TIME_ZONES[i] + ": " + parsedZoned, parsedZoned > 0);
+            assertTrue(TIME_ZONES[i] + ": " + parsedPreEpoch, parsedPreEpoch > 0);
+        }
+    }
+
+    public void testParseTimestampLeavesOtherFormats()
+    {
+        assertNull(TimestampDataType.parseTimestamp("2008-1-31"));
+        assertNull(TimestampDataType.parseTimestamp("2008-01-31T12:00:00"));
+        assertNull(TimestampDataType.parseTimestamp("2008-02-30"));
+        assertNull(TimestampDataType.parseTimestamp("2008-01-31 24:00:00"));
+        assertNull(TimestampDataType.parseTimestamp("2008-01-31 12:00:00."));
+        assertNull(TimestampDataType.parseTimestamp("2008-01-31 12:00:00.0123456789"));
+        assertNull(TimestampDataType.parseTimestamp("1899-12-31 12:00:00"));
+    }
+
+    /**
+     * Returns a random timestamp string in one of the formats
+     * {@link TimestampDataType#parseTimestamp(String)} handles, from 1900 to
+     * 2100, with and without zone suffix and fractional seconds.
+     */
+    private static String randomTimestamp(Random random)
+    {
+        StringBuilder buffer = new StringBuilder(40);
+        int year = 1900 + random.nextInt(201);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        append(buffer, year, 4);
+        buffer.append('-');
+        append(buffer, month, 2);
+        buffer.append('-');
+        append(buffer, day, 2);
+
+        if (random.nextInt(4) > 0)
+        {
+            buffer.append(' ');
+            append(buffer, random.nextInt(24), 2);
+            buffer.append(':');
+            append(buffer, random.nextInt(60), 2);
+            buffer.append(':');
+            append(buffer, random.nextInt(60), 2);
+
+            if (random.nextBoolean())
+            {
+                int precision = 1 + random.nextInt(9);
+                buffer.append('.');
+                for (int i = 0; i < precision; i++)
+                {
+                    buffer.append((char)('0' + random.nextInt(10)));
+                }
+            }
+        }
+
+        if (random.nextBoolean())
+        {
+            buffer.append(' ');
+            buffer.append(random.nextBoolean() ? '+' : '-');
+            append(buffer, random.nextInt(15), 2);
+            append(buffer, random.nextInt(4) * 15, 2);
+        }
+        return buffer.toString();
+    }
+
+    private static void append(StringBuilder buffer, int value, int digits)
+    {
+        String string = String.valueOf(value);
+        for (int i = string.length(); i < digits; i++)
+        {
+            buffer.append('0');
+        }
+        buffer.append(string);
+    }
+
+    /**
+     * The general parsing of {@link TimestampDataType#typeCast(Object)}
+     * before the fast path was added, kept here as the reference.
+     */
+    private static Timestamp parseReference(String stringValue)
+    {
+        String zoneValue = null;
+
+        Matcher tzMatcher = TIMEZONE_REGEX.matcher(stringValue);
+        if (tzMatcher.matches() && tzMatcher.group(2) != null)
+        {
+            stringValue = tzMatcher.group(1);
+            zoneValue = tzMatcher.group(2);
+        }
+
+        Timestamp ts = null;
+        if (stringValue.length() == 10)
+        {
+            try
+            {
+                long time = java.sql.Date.valueOf(stringValue).getTime();
+                ts = new java.sql.Timestamp(time);
+            } catch (IllegalArgumentException e)
+            {
+                // Was not a java.sql.Date, let Timestamp handle this value
+            }
+        }
+        if (ts == null)
+        {
+            ts = java.sql.Timestamp.valueOf(stringValue);
+        }
+
+        // Apply zone if any
+        if (zoneValue != null)
+        {
+            long tsTime = ts.getTime();
+
+            TimeZone localTZ = java.util.TimeZone.getDefault();
+            int offset = localTZ.getOffset(tsTime);
+            BigInteger localTZOffset = BigInteger.valueOf(offset);
+            BigInteger time = BigInteger.valueOf(tsTime / 1000 * 1000).add(localTZOffset)
+                    .multiply(ONE_BILLION).add(BigInteger.valueOf(ts.getNanos()));
+            int hours = Integer.parseInt(zoneValue.substring(1, 3));
+            int minutes = Integer.parseInt(zoneValue.substring(3, 5));
+            BigInteger offsetAsSeconds = BigInteger.valueOf((hours * 3600) + (minutes * 60));
+            BigInteger offsetAsNanos = offsetAsSeconds.multiply(BigInteger.valueOf(1000)).multiply(ONE_BILLION);
+            if (zoneValue.charAt(0) == '+')
+            {
+                time = time.subtract(offsetAsNanos);
+            } else
+            {
+                time = time.add(offsetAsNanos);
+            }
+            BigInteger[] components = time.divideAndRemainder(ONE_BILLION);
+            ts = new Timestamp(components[0].longValue());
+            ts.setNanos(components[1].intValue());
+        }
+
+        return ts;
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ *
+ * The DbUnit Database Testing Framework
+ * Copyright (C)2002-2008, DbUnit.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package org.dbunit.ext.mysql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Runs {@link LoadDataOperation} against a recording JDBC stub, so no MySQL
+ * server is needed.
+ *
+ * @author Last changed by: $Author$
+ * @version $Revision$ $Date$
+ * @since 2.7.5
+ */
+public class LoadDataOperationTest extends TestCase
+{
+    private static final String LOAD_PREFIX =
+        "LOAD DATA LOCAL INFILE 'dbunit.tsv' INTO TABLE ";
+
+    private static final String LOAD_OPTIONS = " CHARACTER SET utf8mb4"
+        + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+        + " LINES TERMINATED BY '\\n'";
+
+    private RecordingStatement _statement;
+    private RecordingOperation _fallback;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _statement = new RecordingStatement();
+        _fallback = new RecordingOperation();
+    }
+
+    public void testLoadData() throws Exception
+    {
+        DefaultTable table = new DefaultTable(createMetaData("TEST"));
+        table.addRow(new Object[] {"1", "a\tb\\c", "2008-01-02 03:04:05.6", "2008-01-02"});
+        table.addRow(new Object[] {"2", null, null, null});
+
+        new LoadDataOperation(_fallback).execute(createConnection(
+                new ITable[] {table}), new DefaultDataSet(table));
+
+        assertEquals(0, _fallback._tableNames.size());
+        assertEquals(2, _statement._sql.size());
+        assertEquals("probe", LOAD_PREFIX + "TEST", _statement._sql.get(0));
+        assertEquals("probe stream", "", _statement._streams.get(0));
+        assertEquals(LOAD_PREFIX + "TEST" + LOAD_OPTIONS
+                + " (ID, NAME, CREATED, DAY, @dbunit_defaults)",
+                _statement._sql.get(1));
+        assertEquals("1\ta\\tb\\\\c\t2008-01-02 03:04:05.600000\t2008-01-02\t0000\n"
+                + "2\t\\N\t\\N\t\\N\t0000\n",
+                _statement._streams.get(1));
+    }
+
+    public void testLoadDataWithDefaults() throws Exception
+    {
+        Column[] columns = new Column[] {
+            new Column("ID", DataType.NUMERIC, Column.NO_NULLS),
+            new Column("NAME", DataType.VARCHAR, "VARCHAR", Column.NO_NULLS, "x"),
+            new Column("CREATED", DataType.TIMESTAMP),
+        };
+        DefaultTable table = new DefaultTable(new DefaultTableMetaData("TEST", columns));
+        table.addRow(new Object[] {"1", "a", ITable.NO_VALUE});
+        table.addRow(new Object[] {"2", null, ITable.NO_VALUE});
+
+        new LoadDataOperation(_fallback).execute(createConnection(
+                new ITable[] {table}), new DefaultDataSet(table));
+
+        assertEquals(LOAD_PREFIX + "TEST" + LOAD_OPTIONS
+                + " (ID, @dbunit_c1, @dbunit_skip, @dbunit_defaults)"
+                + " SET NAME = IF(SUBSTRING(@dbunit_defaults, 2, 1) = '1',"
+                + " DEFAULT(NAME), @dbunit_c1)",
+                _statement._sql.get(1));
+        assertEquals("1\ta\t\\N\t001\n2\t\\N\t\\N\t011\n",
+                _statement._streams.get(1));
+    }
+
+    public void testLoadDataFailsOnSkippedRows() throws Exception
+    {
+        _statement._skippedRows = 1;
+        DefaultTable table = new DefaultTable(createMetaData("TEST"));
+        table.addRow(new Object[] {"1", "a", null, null});
+        table.addRow(new Object[] {"1", "b", null, null});
+
+        try
+        {
+            new LoadDataOperation(_fallback).execute(createConnection(
+                    new ITable[] {table}), new DefaultDataSet(table));
+            fail("Should not accept a partial load");
+        }
+        catch (DatabaseUnitException expected)
+        {
+            assertEquals("Loaded 1 of 2 rows into table 'TEST'", expected.getMessage());
+        }
+    }
+
+    public void testLoadDataFailsOnWarnings() throws Exception
+    {
+        _statement._warning = new SQLWarning(
+                "Data truncated for column 'NAME' at row 1", "01000", 1265);
+        DefaultTable table = new DefaultTable(createMetaData("TEST"));
+        table.addRow(new Object[] {"1", "a", null, null});
+
+        try
+        {
+            new LoadDataOperation(_fallback).execute(createConnection(
+                    new ITable[] {table}), new DefaultDataSet(table));
+            fail("Should not accept a load with warnings");
+        }
+        catch (DatabaseUnitException expected)
+        {
+            assertEquals("Loaded 1 of 1 rows into table 'TEST': "
+                    + "Data truncated for column 'NAME' at row 1",
+                    expected.getMessage());
+        }
+    }
+
+    public void testFallbackWhenClientRejectsLocalInfile() throws Exception
+    {
+        _statement._rejectLocalInfile = true;
+        DefaultTable table1 = new DefaultTable(createMetaData("TEST1"));
+        table1.addRow(new Object[] {"1", "a", null, null});
+        DefaultTable table2 = new DefaultTable(createMetaData("TEST2"));
+        table2.addRow(new Object[] {"2", "b", null, null});
+
+        new LoadDataOperation(_fallback).execute(createConnection(
+                new ITable[] {table1, table2}), new DefaultDataSet(table1, table2));
+
+        assertEquals("only the probe is sent", 1, _statement._sql.size());
+        assertEquals(LOAD_PREFIX + "TEST1", _statement._sql.get(0));
+        assertEquals(2, _fallback._tableNames.size());
+        assertEquals("TEST1", _fallback._tableNames.get(0));
+        assertEquals("TEST2", _fallback._tableNames.get(1));
+    }
+
+    public void testFallbackWhenServerDisablesLocalInfile() throws Exception
+    {
+        _statement._serverLocalInfile = false;
+        DefaultTable table = new DefaultTable(createMetaData("TEST"));
+        table.addRow(new Object[] {"1", "a", null, null});
+
+        new LoadDataOperation(_fallback).execute(createConnection(
+                new ITable[] {table}), new DefaultDataSet(table));
+
+        assertEquals(0, _statement._sql.size());
+        assertEquals(1, _fallback._tableNames.size());
+    }
+
+    public void testIsLocalInfileRejected() throws Exception
+    {
+        assertTrue(LoadDataOperation.isLocalInfileRejected(
+                new SQLException("any", "42000", 3948)));
+        assertTrue(LoadDataOperation.isLocalInfileRejected(
+                new SQLException("any", "42000", 1148)));
+        assertTrue(LoadDataOperation.isLocalInfileRejected(new SQLException(
+                "Server asked for stream in response to LOAD DATA LOCAL INFILE"
+                + " but functionality is not enabled at client by setting"
+                + " allowLoadLocalInfile=true.")));
+        assertFalse(LoadDataOperation.isLocalInfileRejected(
+                new SQLException("Table 'TEST' doesn't exist", "42S02", 1146)));
+    }
+
+    private static ITableMetaData createMetaData(String tableName)
+    {
+        Column[] columns = new Column[] {
+            new Column("ID", DataType.NUMERIC, Column.NO_NULLS),
+            new Column("NAME", DataType.VARCHAR, Column.NULLABLE),
+            new Column("CREATED", DataType.TIMESTAMP, Column.NULLABLE),
+            new Column("DAY", DataType.DATE, Column.NULLABLE),
+        };
+        return new DefaultTableMetaData(tableName, columns);
+    }
+
+    private IDatabaseConnection createConnection(ITable[] tables) throws Exception
+    {
+        final IDataSet databaseDataSet = new DefaultDataSet(tables);
+        final DatabaseConfig config = new DatabaseConfig();
+        final Connection jdbcConnection = (Connection)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[] {Connection.class},
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("createStatement"))
+                        {
+                            return _statement.createProxy();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (IDatabaseConnection)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[] {IDatabaseConnection.class},
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        String name = method.getName();
+                        if (name.equals("getConnection"))
+                        {
+                            return jdbcConnection;
+                        }
+                        if (name.equals("createDataSet"))
+                        {
+                            return databaseDataSet;
+                        }
+                        if (name.equals("getConfig"))
+                        {
+                            return config;
+                        }
+                        if (name.equals("getDatabase") || name.equals("getSchema"))
+                        {
+                            return null;
+                        }
+                        if (name.equals("toString"))
+                        {
+                            return "stub connection";
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    /**
+     * The statement interface of the stub, exposing the stream hook the same
+     * way as the MySQL driver does.
+     */
+    public interface LocalInfileStatement extends Statement
+    {
+        public void setLocalInfileInputStream(InputStream inputStream);
+    }
+
+    /**
+     * Records the executed statements and the local infile stream sent with
+     * each of them.
+     */
+    private static class RecordingStatement
+    {
+        private final List _sql = new ArrayList();
+        private final List _streams = new ArrayList();
+        private boolean _serverLocalInfile = true;
+        private boolean _rejectLocalInfile;
+        private int _skippedRows;
+        private SQLWarning _warning;
+        private InputStream _inputStream;
+        private int _updateCount = -1;
+        private SQLWarning _lastWarning;
+
+        Statement createProxy()
+        {
+            return (Statement)Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class[] {LocalInfileStatement.class},
+                    new InvocationHandler()
+                    {
+                        public Object invoke(Object proxy, Method method, Object[] args)
+                                throws Throwable
+                        {
+                            String name = method.getName();
+                            if (name.equals("setLocalInfileInputStream"))
+                            {
+                                _inputStream = (InputStream)args[0];
+                                return null;
+                            }
+                            if (name.equals("executeQuery"))
+                            {
+                                assertEquals("SELECT @@local_infile", args[0]);
+                                return createResultSet(_serverLocalInfile);
+                            }
+                            if (name.equals("execute"))
+                            {
+                                return Boolean.valueOf(execute((String)args[0]));
+                            }
+                            if (name.equals("getUpdateCount"))
+                            {
+                                return Integer.valueOf(_updateCount);
+                            }
+                            if (name.equals("getWarnings"))
+                            {
+                                return _lastWarning;
+                            }
+                            if (name.equals("clearWarnings"))
+                            {
+                                _lastWarning = null;
+                                return null;
+                            }
+                            if (name.equals("close"))
+                            {
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(name);
+                        }
+                    });
+        }
+
+        private boolean execute(String sql) throws SQLException, IOException
+        {
+            String stream = readFully(_inputStream);
+            _sql.add(sql);
+            _streams.add(stream);
+            _inputStream = null;
+            _updateCount = stream.split("\n", -1).length - 1 - _skippedRows;
+            _lastWarning = _warning;
+            if (_rejectLocalInfile)
+            {
+                throw new SQLException("Loading local data is disabled; this must"
+                        + " be enabled on both the client and server sides",
+                        "42000", 3948);
+            }
+            return false;
+        }
+
+        private static String readFully(InputStream inputStream) throws IOException
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private static ResultSet createResultSet(final boolean value)
+        {
+            return (ResultSet)Proxy.newProxyInstance(
+                    RecordingStatement.class.getClassLoader(), new Class[] {ResultSet.class},
+                    new InvocationHandler()
+                    {
+                        private boolean _next = true;
+
+                        public Object invoke(Object proxy, Method method, Object[] args)
+                        {
+                            String name = method.getName();
+                            if (name.equals("next"))
+                            {
+                                boolean next = _next;
+                                _next = false;
+                                return Boolean.valueOf(next);
+                            }
+                            if (name.equals("getBoolean"))
+                            {
+                                return Boolean.valueOf(value);
+                            }
+                            if (name.equals("close"))
+                            {
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(name);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Fallback operation recording the tables it receives.
+     */
+    private static class RecordingOperation extends DatabaseOperation
+    {
+        private final List _tableNames = new ArrayList();
+
+        public void execute(IDatabaseConnection connection, IDataSet dataSet)
+                throws DatabaseUnitException, SQLException
+        {
+            ITableIterator iterator = dataSet.iterator();
+            while (iterator.next())
+            {
+                _tableNames.add(iterator.getTableMetaData().getTableName());
+            }
+        }
+    }
+}